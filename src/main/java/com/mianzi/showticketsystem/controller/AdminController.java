@@ -1,14 +1,26 @@
 package com.mianzi.showticketsystem.controller;
 
+import com.mianzi.showticketsystem.filter.RequestRateLimiter;
 import com.mianzi.showticketsystem.model.dto.ApiResponse;
 import com.mianzi.showticketsystem.model.dto.LoginResponse;
+import com.mianzi.showticketsystem.model.dto.SeatLayout;
 import com.mianzi.showticketsystem.model.entity.Order;
 import com.mianzi.showticketsystem.model.entity.PageResult;
 import com.mianzi.showticketsystem.model.entity.Show;
 import com.mianzi.showticketsystem.model.entity.User;
+import com.mianzi.showticketsystem.service.HomeSnapshotService;
+import com.mianzi.showticketsystem.service.HotShowService;
+import com.mianzi.showticketsystem.service.OnSaleService;
 import com.mianzi.showticketsystem.service.OrderService;
+import com.mianzi.showticketsystem.service.PaymentService;
+import com.mianzi.showticketsystem.service.RestockService;
+import com.mianzi.showticketsystem.service.SeatService;
+import com.mianzi.showticketsystem.service.ShowSearchService;
 import com.mianzi.showticketsystem.service.ShowService;
+import com.mianzi.showticketsystem.service.ShowSuggestService;
+import com.mianzi.showticketsystem.service.StockService;
 import com.mianzi.showticketsystem.service.UserService;
+import com.mianzi.showticketsystem.service.WaitingRoomService;
 import com.mianzi.showticketsystem.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -33,9 +45,42 @@ public class AdminController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private RequestRateLimiter requestRateLimiter;
+
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private OnSaleService onSaleService;
+
+    @Autowired
+    private HotShowService hotShowService;
+
+    @Autowired
+    private RestockService restockService;
+
+    @Autowired
+    private HomeSnapshotService homeSnapshotService;
+
+    @Autowired
+    private ShowSearchService showSearchService;
+
+    @Autowired
+    private ShowSuggestService showSuggestService;
+
     /**
      * 管理端 - 登录
      * 请求路径: POST /api/admin/login
@@ -216,6 +261,41 @@ public class AdminController {
         }
     }
 
+    /**
+     * 管理端 - 把演出库存拆分到多个分桶（用于热门演出，减少抢票时的行锁竞争）
+     * 请求路径: PUT /api/admin/shows/{id}/stock-buckets
+     * @param count 分桶数量（2~64）
+     */
+    @PutMapping("/shows/{id}/stock-buckets")
+    public ApiResponse splitStockBuckets(@PathVariable Long id, @RequestParam Integer count) {
+        if (count == null || count < 2 || count > 64) {
+            return ApiResponse.failure("拆分失败！分桶数量只允许 2~64。");
+        }
+        boolean success = stockService.splitIntoBuckets(id, count);
+        if (success) {
+            return ApiResponse.success("演出库存已拆分为 " + count + " 个分桶！");
+        } else {
+            return ApiResponse.failure("拆分失败！演出不存在、已下架或已经拆分过。");
+        }
+    }
+
+    /**
+     * 管理端 - 设置演出的座位布局（对号入座）
+     * 请求路径: PUT /api/admin/shows/{id}/seat-map
+     * 请求体: {"sections": [{"name": "内场A区", "tierId": 1, "rows": [20, 22, 24]}, ...]}
+     * 分区按选座优先顺序排列，rows 为每排的座位数，座位总数必须等于演出的总票数；
+     * 多场次的演出所有场次共用这个布局，座位总数必须等于每个场次的票数，每个场次的座位分别售卖
+     */
+    @PutMapping("/shows/{id}/seat-map")
+    public ApiResponse saveSeatMap(@PathVariable Long id, @RequestBody SeatLayout layout) {
+        boolean success = seatService.saveSeatLayout(id, layout);
+        if (success) {
+            return ApiResponse.success("座位图设置成功！");
+        } else {
+            return ApiResponse.failure("设置失败！演出不存在、布局不合法、座位总数与总票数（多场次的演出为每个场次的票数）不一致或已有座位售出。");
+        }
+    }
+
     // ==================== 订单管理 ====================
 
     /**
@@ -264,5 +344,151 @@ public class AdminController {
             return ApiResponse.failure("更新失败！");
         }
     }
-}
 
+    // ==================== 系统监控 ====================
+
+    /**
+     * 管理端 - 查询超时关单统计（累计关闭数量、最近一次关闭数量、每秒关闭行数）
+     * 请求路径: GET /api/admin/metrics/order-close
+     */
+    @GetMapping("/metrics/order-close")
+    public ApiResponse getOrderCloseMetrics() {
+        return ApiResponse.success("查询成功", paymentService.getCloseMetrics());
+    }
+
+    /**
+     * 管理端 - 查询库存统计（内存库存的演出数、待同步的变化量、同步时发现的超卖次数和超卖票数）
+     * 请求路径: GET /api/admin/metrics/stock
+     */
+    @GetMapping("/metrics/stock")
+    public ApiResponse getStockMetrics() {
+        return ApiResponse.success("查询成功", stockService.getMetrics());
+    }
+
+    /**
+     * 管理端 - 查询演出缓存统计（详情、首页列表和条件查询缓存的数量、命中率、合并的加载、后台刷新、容量淘汰和过期次数）
+     * 请求路径: GET /api/admin/metrics/show-cache
+     */
+    @GetMapping("/metrics/show-cache")
+    public ApiResponse getShowCacheMetrics() {
+        return ApiResponse.success("查询成功", showService.getCacheStats());
+    }
+
+    /**
+     * 管理端 - 查询首页快照统计（快照数量、命中和未命中次数、全量重建和单个快照重算次数）
+     * 请求路径: GET /api/admin/metrics/home-snapshot
+     */
+    @GetMapping("/metrics/home-snapshot")
+    public ApiResponse getHomeSnapshotMetrics() {
+        return ApiResponse.success("查询成功", homeSnapshotService.getMetrics());
+    }
+
+    /**
+     * 管理端 - 重建演出搜索索引（直接修改数据库中的演出后调用）
+     * 请求路径: POST /api/admin/search-index/rebuild
+     */
+    @PostMapping("/search-index/rebuild")
+    public ApiResponse rebuildSearchIndex() {
+        showSearchService.rebuild();
+        return ApiResponse.success("重建完成", showSearchService.getMetrics());
+    }
+
+    /**
+     * 管理端 - 查询演出搜索索引统计（演出数、二元词数、查询次数、重建次数和耗时）
+     * 请求路径: GET /api/admin/metrics/search-index
+     */
+    @GetMapping("/metrics/search-index")
+    public ApiResponse getSearchIndexMetrics() {
+        return ApiResponse.success("查询成功", showSearchService.getMetrics());
+    }
+
+    /**
+     * 管理端 - 查询搜索联想统计（演出数、前缀树节点数、增量表大小、查询次数和平均耗时、重建和合并次数）
+     * 请求路径: GET /api/admin/metrics/suggest
+     */
+    @GetMapping("/metrics/suggest")
+    public ApiResponse getSuggestMetrics() {
+        return ApiResponse.success("查询成功", showSuggestService.getMetrics());
+    }
+
+    /**
+     * 管理端 - 查询库存合并返还统计（队列中的订单数、累计返还订单数、累计执行的返还库存 UPDATE 数）
+     * 请求路径: GET /api/admin/metrics/restock
+     */
+    @GetMapping("/metrics/restock")
+    public ApiResponse getRestockMetrics() {
+        return ApiResponse.success("查询成功", restockService.getMetrics());
+    }
+
+    /**
+     * 管理端 - 查询限流统计（各接口各维度被限流的请求数、当前令牌桶数量）
+     * 请求路径: GET /api/admin/metrics/rate-limit
+     */
+    @GetMapping("/metrics/rate-limit")
+    public ApiResponse getRateLimitMetrics() {
+        return ApiResponse.success("查询成功", requestRateLimiter.getMetrics());
+    }
+
+    /**
+     * 管理端 - 查询等候室统计（排队人数、累计放行人数、下单吞吐量、当前放行速度）
+     * 请求路径: GET /api/admin/metrics/waiting-room
+     */
+    @GetMapping("/metrics/waiting-room")
+    public ApiResponse getWaitingRoomMetrics() {
+        return ApiResponse.success("查询成功", waitingRoomService.getMetrics());
+    }
+
+    /**
+     * 管理端 - 立即预热演出的下单路径（缓存、内存库存、连接池、演练下单），通常由定时开售任务在开售前自动执行
+     * 请求路径: POST /api/admin/show/prewarm?showId=...
+     */
+    @PostMapping("/show/prewarm")
+    public ApiResponse prewarmShow(@RequestParam Long showId) {
+        if (onSaleService.prewarm(showId)) {
+            return ApiResponse.success("预热完成。");
+        }
+        return ApiResponse.failure("预热失败！演出不存在或已下架。");
+    }
+
+    /**
+     * 管理端 - 查询定时开售统计（等待开售的演出数、累计预热和开票次数、最近一次开票的延迟）
+     * 请求路径: GET /api/admin/metrics/on-sale
+     */
+    @GetMapping("/metrics/on-sale")
+    public ApiResponse getOnSaleMetrics() {
+        return ApiResponse.success("查询成功", onSaleService.getMetrics());
+    }
+
+    /**
+     * 管理端 - 手动提升为热门演出（库存走内存账本，不会因为访问量下降被自动降级）
+     * 请求路径: POST /api/admin/hot-show/promote?showId=...
+     */
+    @PostMapping("/hot-show/promote")
+    public ApiResponse promoteHotShow(@RequestParam Long showId) {
+        if (hotShowService.promote(showId)) {
+            return ApiResponse.success("已提升为热门演出。");
+        }
+        return ApiResponse.failure("提升失败！演出不存在、已经是热门演出或热门演出数量已达上限。");
+    }
+
+    /**
+     * 管理端 - 把热门演出降级为普通演出
+     * 请求路径: POST /api/admin/hot-show/demote?showId=...
+     */
+    @PostMapping("/hot-show/demote")
+    public ApiResponse demoteHotShow(@RequestParam Long showId) {
+        if (hotShowService.demote(showId)) {
+            return ApiResponse.success("已降级为普通演出。");
+        }
+        return ApiResponse.failure("降级失败！该演出不是热门演出。");
+    }
+
+    /**
+     * 管理端 - 查询热门演出统计（当前热门演出及最近一个窗口的访问次数、累计提升和降级次数）
+     * 请求路径: GET /api/admin/metrics/hot-show
+     */
+    @GetMapping("/metrics/hot-show")
+    public ApiResponse getHotShowMetrics() {
+        return ApiResponse.success("查询成功", hotShowService.getMetrics());
+    }
+}
@@ -1,10 +1,19 @@
 package com.mianzi.showticketsystem.controller;
 
 import com.mianzi.showticketsystem.model.dto.ApiResponse;
+import com.mianzi.showticketsystem.model.dto.OrderTicket;
+import com.mianzi.showticketsystem.model.dto.QueueStatus;
+import com.mianzi.showticketsystem.model.entity.BallotEntry;
 import com.mianzi.showticketsystem.model.entity.Order;
 import com.mianzi.showticketsystem.model.entity.PageResult;
+import com.mianzi.showticketsystem.service.BallotService;
+import com.mianzi.showticketsystem.service.OrderIdempotencyService;
+import com.mianzi.showticketsystem.service.OrderPipelineService;
 import com.mianzi.showticketsystem.service.OrderService;
+import com.mianzi.showticketsystem.service.SeatService;
+import com.mianzi.showticketsystem.service.WaitingRoomService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -12,6 +21,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 //定义了该控制器类中所有接口的统一根路径
@@ -23,28 +33,244 @@ public class OrderController {
     //而不需要手动去 new OrderServiceImpl()
     private OrderService orderService;
 
+    @Autowired
+    private OrderPipelineService orderPipelineService;
+
+    @Autowired
+    private OrderIdempotencyService orderIdempotencyService;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private BallotService ballotService;
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    // 幂等键最大长度（与订单表 idempotency_key 字段长度一致）
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+    // 长轮询最长等待时间（毫秒）
+    private static final long MAX_POLL_WAIT_MILLIS = 30000;
+
+    // 等候室未放行时的提示
+    private static final String NOT_ADMITTED_MESSAGE = "下单失败：当前排队人数较多，请先通过 /api/order/queue/join 进入等候室，放行后再下单。";
+
     // --------------------------------------------------------------------------
     // --- 用户端接口 (依赖 URL 参数: userId) ---
     // --------------------------------------------------------------------------
 
     /**
      * 1. 预订票务 (抢票)
-     * URL 参数：showId, quantity
+     * URL 参数：showId, quantity, sessionId（多场次的演出必填，场次ID见 /api/show/sessions）, tierId（有票档的演出必填，票档ID见 /api/show/tiers）
+     * 请求头：Idempotency-Key（可选，最长64个字符），同一用户使用相同的幂等键重复提交时只会创建一个订单，重复请求返回同一个订单
+     * 请求头：Queue-Token（开启等候室时必填，必须是已放行的排队凭证）
      * userId从JWT Token中获取
-     * @return 如果订单创建成功，返回 {"order": {订单详情JSON对象}}；如果失败，返回 {"order": null}
+     * @return 如果订单创建成功，返回 {"order": {订单详情JSON对象}}；如果失败，返回 {"order": null}；
+     *         开启等候室且排队凭证未放行时返回 403 和 {"order": null, "message": "..."}
      */
     @PostMapping("/create")
-    public ResponseEntity<Map<String, Object>> createOrder(@RequestParam Long showId,
-                                                            @RequestParam Integer quantity,
-                                                            HttpServletRequest request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> createOrder(
+            @RequestParam Long showId,
+            @RequestParam Integer quantity,
+            @RequestParam(required = false) Long sessionId,
+            @RequestParam(required = false) Long tierId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = "Queue-Token", required = false) String queueToken,
+            HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("userId");
+        if (userId != null && !isAdmitted(queueToken, userId, showId)) {
+            return CompletableFuture.completedFuture(notAdmitted("order"));
+        }
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("order", null);
+            result.put("message", "下单失败：Idempotency-Key 不能为空且长度不能超过" + MAX_IDEMPOTENCY_KEY_LENGTH + "个字符。");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(result));
+        }
+        // 开启组提交时，请求和同一时间窗口内的其他请求合并成一批写入数据库；未开启时直接同步下单
+        CompletableFuture<Order> future = userId == null
+                ? CompletableFuture.completedFuture(null)
+                : orderIdempotencyService.createOrder(userId, showId, sessionId, tierId, quantity, idempotencyKey);
+        if (userId != null) {
+            // 处理完成的下单请求数用于测量下单吞吐量，等候室据此调整放行速度
+            future.whenComplete((order, ex) -> waitingRoomService.recordCompletion());
+        }
+        return future.thenApply(order -> {
+            // 使用 Map 包装，确保即使 order 为 null 也返回有效的 JSON 对象
+            Map<String, Object> result = new HashMap<>();
+            result.put("order", order);
+            return ResponseEntity.ok(result);
+        });
+    }
+
+    /**
+     * 1.1 异步预订票务 (抢票高峰期使用)
+     * URL 参数：showId, quantity, sessionId（多场次的演出必填）, tierId（有票档的演出必填）
+     * userId从JWT Token中获取
+     * 请求头：Queue-Token（开启等候室时必填，必须是已放行的排队凭证）
+     * 请求进入排队队列后立即返回 requestId，不占用数据库连接，之后通过 /api/order/async/status 查询结果
+     * @return 排队成功返回 {"requestId": "...", "message": "..."}；排队失败返回 {"requestId": null, "message": "..."}
+     */
+    @PostMapping("/async/create")
+    public ResponseEntity<Map<String, Object>> createOrderAsync(@RequestParam Long showId,
+                                                                 @RequestParam Integer quantity,
+                                                                 @RequestParam(required = false) Long sessionId,
+                                                                 @RequestParam(required = false) Long tierId,
+                                                                 @RequestHeader(value = "Queue-Token", required = false) String queueToken,
+                                                                 HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("userId");
+        Map<String, Object> result = new HashMap<>();
+        if (userId == null) {
+            result.put("requestId", null);
+            result.put("message", "下单失败：请先登录。");
+            return ResponseEntity.ok(result);
+        }
+        if (!isAdmitted(queueToken, userId, showId)) {
+            return notAdmitted("requestId");
+        }
+        if (!orderPipelineService.isEnabled()) {
+            result.put("requestId", null);
+            result.put("message", "异步下单未开启，请使用 /api/order/create。");
+            return ResponseEntity.ok(result);
+        }
+
+        OrderTicket ticket = orderPipelineService.submit(userId, showId, sessionId, tierId, quantity);
+        if (ticket != null) {
+            ticket.getFuture().whenComplete((t, ex) -> waitingRoomService.recordCompletion());
+        }
+        result.put("requestId", ticket != null ? ticket.getRequestId() : null);
+        result.put("message", ticket != null ? "已进入排队，请稍后查询结果。" : "当前排队人数过多，请稍后重试。");
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 1.2 查询异步下单结果（支持长轮询）
+     * URL 参数：requestId, waitMs（可选，最长等待毫秒数，默认0表示立即返回，最大30000）
+     * userId从JWT Token中获取
+     * @return {"ticket": {排队凭证JSON对象}}，status 为 0 表示处理中、1 表示成功（order 字段为订单）、2 表示失败；
+     *         requestId 不存在或不属于当前用户时返回 {"ticket": null}
+     */
+    @GetMapping("/async/status")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getAsyncOrderStatus(
+            @RequestParam String requestId,
+            @RequestParam(defaultValue = "0") long waitMs,
+            HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("userId");
+        long waitMillis = Math.min(Math.max(waitMs, 0), MAX_POLL_WAIT_MILLIS);
+        CompletableFuture<OrderTicket> future = userId == null
+                ? CompletableFuture.completedFuture(null)
+                : orderPipelineService.awaitTicket(requestId, userId, waitMillis);
+        return future.thenApply(ticket -> {
+            // 使用 Map 包装，确保即使 ticket 为 null 也返回有效的 JSON 对象
+            Map<String, Object> result = new HashMap<>();
+            result.put("ticket", ticket);
+            return ResponseEntity.ok(result);
+        });
+    }
+
+    /**
+     * 1.3 选座下单 (对号入座的演出)
+     * URL 参数：showId, sessionId（有场次的演出必填，座位按场次分别售卖）, seatNos（可选，用户选择的座位编号，逗号分隔）, count（不选座时自动选择的座位数）, tierId（有票档的演出必填，自动选座时只在该票档的座位中选择）
+     * 请求头：Queue-Token（开启等候室时必填，必须是已放行的排队凭证）
+     * userId从JWT Token中获取
+     * @return 成功返回 {"order": {订单详情JSON对象}, "seats": [座位列表]}；失败返回 {"order": null, "seats": null}
+     */
+    @PostMapping("/seats/create")
+    public ResponseEntity<Map<String, Object>> createSeatOrder(@RequestParam Long showId,
+                                                                @RequestParam(required = false) Long sessionId,
+                                                                @RequestParam(required = false) List<Integer> seatNos,
+                                                                @RequestParam(required = false) Integer count,
+                                                                @RequestParam(required = false) Long tierId,
+                                                                @RequestHeader(value = "Queue-Token", required = false) String queueToken,
+                                                                HttpServletRequest request) {
         Long userId = (Long) request.getAttribute("userId");
+        if (userId != null && !isAdmitted(queueToken, userId, showId)) {
+            return notAdmitted("order");
+        }
         Order order = null;
         if (userId != null) {
-            order = orderService.createOrder(userId, showId, quantity);
+            order = orderService.createSeatOrder(userId, showId, sessionId, seatNos, count, tierId);
+            waitingRoomService.recordCompletion();
         }
-        // 使用 Map 包装，确保即使 order 为 null 也返回有效的 JSON 对象
         Map<String, Object> result = new HashMap<>();
         result.put("order", order);
+        result.put("seats", order != null ? seatService.getOrderSeats(order.getId()) : null);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 1.4 进入等候室 (开售高峰期开启等候室时，下单前先排队)
+     * URL 参数：showId
+     * userId从JWT Token中获取
+     * 同一用户重复进入同一演出的等候室时保持原来的排队号；之后通过 /api/order/queue/status 查询排队进度，
+     * admitted 为 true 后在下单请求的 Queue-Token 请求头中带上排队凭证
+     * @return {"queue": {token, showId, position（前面还有多少人）, admitted, estimatedWaitSeconds}}；
+     *         未开启等候室时返回 {"queue": null, "message": "..."}
+     */
+    @PostMapping("/queue/join")
+    public ResponseEntity<Map<String, Object>> joinQueue(@RequestParam Long showId, HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("userId");
+        Map<String, Object> result = new HashMap<>();
+        if (!waitingRoomService.isEnabled()) {
+            result.put("queue", null);
+            result.put("message", "等候室未开启，可以直接下单。");
+            return ResponseEntity.ok(result);
+        }
+        result.put("queue", userId != null ? waitingRoomService.join(userId, showId) : null);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 1.5 查询排队进度
+     * 请求头：Queue-Token（或 URL 参数 token）
+     * userId从JWT Token中获取
+     * @return {"queue": {token, showId, position, admitted, estimatedWaitSeconds}}；凭证无效、已过期或不属于当前用户时返回 {"queue": null}
+     */
+    @GetMapping("/queue/status")
+    public ResponseEntity<Map<String, Object>> getQueueStatus(
+            @RequestHeader(value = "Queue-Token", required = false) String queueToken,
+            @RequestParam(required = false) String token,
+            HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("userId");
+        QueueStatus status = waitingRoomService.getStatus(queueToken != null ? queueToken : token, userId);
+        Map<String, Object> result = new HashMap<>();
+        result.put("queue", status);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 1.6 报名抽签 (抽签购票模式的演出)
+     * URL 参数：showId, quantity, sessionId（多场次的演出必填）, tierId（有票档的演出必填）
+     * userId从JWT Token中获取
+     * 报名截止后统一抽签，中签用户会收到邮件，并自动生成待支付订单；同一演出重复报名返回第一次的报名记录
+     * @return 报名成功返回 {"entry": {报名记录}}；演出不是抽签模式、不在报名时间内或参数不合法时返回 {"entry": null}
+     */
+    @PostMapping("/ballot/enter")
+    public ResponseEntity<Map<String, Object>> enterBallot(@RequestParam Long showId,
+                                                           @RequestParam Integer quantity,
+                                                           @RequestParam(required = false) Long sessionId,
+                                                           @RequestParam(required = false) Long tierId,
+                                                           HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("userId");
+        BallotEntry entry = userId != null ? ballotService.enter(userId, showId, sessionId, tierId, quantity) : null;
+        Map<String, Object> result = new HashMap<>();
+        result.put("entry", entry);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 1.7 查询抽签结果
+     * URL 参数：showId
+     * userId从JWT Token中获取
+     * @return {"entry": {报名记录}}，status 为 0 待抽签、1 中签（orderId 为待支付订单）、2 未中签；未报名时返回 {"entry": null}
+     */
+    @GetMapping("/ballot/entry")
+    public ResponseEntity<Map<String, Object>> getBallotEntry(@RequestParam Long showId, HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("userId");
+        Map<String, Object> result = new HashMap<>();
+        result.put("entry", userId != null ? ballotService.getEntry(userId, showId) : null);
         return ResponseEntity.ok(result);
     }
 
@@ -52,7 +278,7 @@ public class OrderController {
      * 2. 查询订单详情
      * URL 参数：orderId
      * userId从JWT Token中获取
-     * @return 如果订单存在，返回 {"order": {订单详情JSON对象}}；如果不存在，返回 {"order": null}
+     * @return 如果订单存在，返回 {"order": {订单详情JSON对象}, "seats": [座位列表]}；如果不存在，返回 {"order": null}
      */
     @GetMapping("/details")
     public ResponseEntity<Map<String, Object>> getOrderDetails(@RequestParam Long orderId, HttpServletRequest request) {
@@ -64,6 +290,8 @@ public class OrderController {
         // 使用 Map 包装，确保即使 order 为 null 也返回有效的 JSON 对象
         Map<String, Object> result = new HashMap<>();
         result.put("order", order);
+        // 对号入座的订单同时返回座位（非对号入座的订单为空列表）
+        result.put("seats", order != null ? seatService.getOrderSeats(orderId) : null);
         return ResponseEntity.ok(result);
     }
 
@@ -185,4 +413,18 @@ public class OrderController {
             return String.format("更新失败！订单 ID: %d 不存在或操作失败。", orderId);
         }
     }
+
+    /**
+     * 未开启等候室时不需要排队凭证；开启时必须持有该演出已放行的排队凭证
+     */
+    private boolean isAdmitted(String queueToken, Long userId, Long showId) {
+        return !waitingRoomService.isEnabled() || waitingRoomService.isAdmitted(queueToken, userId, showId);
+    }
+
+    private ResponseEntity<Map<String, Object>> notAdmitted(String key) {
+        Map<String, Object> result = new HashMap<>();
+        result.put(key, null);
+        result.put("message", NOT_ADMITTED_MESSAGE);
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(result);
+    }
 }
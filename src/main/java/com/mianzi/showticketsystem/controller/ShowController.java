@@ -2,7 +2,12 @@ package com.mianzi.showticketsystem.controller;
 
 import com.mianzi.showticketsystem.model.entity.PageResult;
 import com.mianzi.showticketsystem.model.entity.Show;
+import com.mianzi.showticketsystem.service.HotShowService;
+import com.mianzi.showticketsystem.service.SeatService;
+import com.mianzi.showticketsystem.service.ShowSessionService;
 import com.mianzi.showticketsystem.service.ShowService;
+import com.mianzi.showticketsystem.service.ShowSuggestService;
+import com.mianzi.showticketsystem.service.ShowTierService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -21,6 +26,21 @@ public class ShowController {
     @Autowired
     private ShowService showService;
 
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private ShowTierService showTierService;
+
+    @Autowired
+    private ShowSessionService showSessionService;
+
+    @Autowired
+    private HotShowService hotShowService;
+
+    @Autowired
+    private ShowSuggestService showSuggestService;
+
     /**
      * 发布新的演出活动 (只有管理员可以操作)
      * 请求路径: POST /api/show/publish
@@ -31,6 +51,12 @@ public class ShowController {
      * @param endTime 结束时间
      * @param totalTickets 总票数
      * @param price 票价
+     * @param sessionInfo 场次JSON（可选），格式为 [{"name","startTime","endTime","totalTickets"}]，各场次票数之和必须等于总票数
+     * @param ticketTier 票档JSON（可选），格式为 [{"name","price","totalTickets"}]，各票档票数之和必须等于总票数
+     * @param maxPerUser 每个用户最多购买的票数（可选，不传或0表示不限购）
+     * @param saleStartTime 开售时间（可选，设置后到点自动开票，开售前不能下单）
+     * @param ballotStartTime 抽签报名开始时间（可选）
+     * @param ballotEndTime 抽签报名截止时间（可选，设置后演出为抽签购票模式，不能直接下单）
      * @return 发布结果信息
      */
     @PostMapping("/publish")
@@ -45,11 +71,18 @@ public class ShowController {
             @RequestParam java.math.BigDecimal price,
             @RequestParam(required = false) String sessionInfo,
             @RequestParam(required = false) String ticketTier,
-            @RequestParam(required = false) Integer isOnSale)
+            @RequestParam(required = false) Integer isOnSale,
+            @RequestParam(required = false) Integer maxPerUser,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime saleStartTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime ballotStartTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime ballotEndTime)
     {
         if (name == null || name.isEmpty() || totalTickets == null || totalTickets <= 0) {
             return "发布失败：名称或总票数不能为空。";
         }
+        if (ballotStartTime != null && (ballotEndTime == null || !ballotStartTime.isBefore(ballotEndTime))) {
+            return "发布失败：抽签报名开始时间必须早于截止时间。";
+        }
 
         //创建 Show 实体对象
         Show show = new Show()
@@ -63,7 +96,11 @@ public class ShowController {
                 .setPrice(price)
                 .setSessionInfo(sessionInfo)
                 .setTicketTier(ticketTier)
-                .setIsOnSale(isOnSale);
+                .setIsOnSale(isOnSale)
+                .setMaxPerUser(maxPerUser)
+                .setSaleStartTime(saleStartTime)
+                .setBallotStartTime(ballotStartTime)
+                .setBallotEndTime(ballotEndTime);
 
         //调用 Service 层
         boolean success = showService.publishShow(show);
@@ -91,6 +128,8 @@ public class ShowController {
      * 请求路径: GET /api/show/home
      * @param region 地区（可选，默认北京）
      * @param category 分类（可选）
+     * @param startFrom 开始时间下限（可选，多场次的演出只要有一个场次在范围内即可）
+     * @param startTo 开始时间上限（可选，不包含）
      * @param limit 限制数量（可选，默认20）
      * @param request HTTP请求（用于获取用户IP，这里简化处理）
      * @return 演出列表
@@ -98,22 +137,62 @@ public class ShowController {
     @GetMapping("/home")
     public List<Show> getHomeShows(@RequestParam(required = false) String region,
                                     @RequestParam(required = false) String category,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startFrom,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTo,
                                     @RequestParam(required = false) Integer limit,
                                     HttpServletRequest request) {
         // 如果已登录，可以根据用户IP返回对应地区（这里简化处理，使用传入的region参数）
         // 如果未指定region，默认返回北京地区
-        return showService.getHomeShows(region, category, limit);
+        return showService.getHomeShows(region, category, startFrom, startTo, limit);
     }
 
     /**
-     * 搜索演出（匹配演出名或场馆名）
+     * 搜索演出（匹配演出名、场馆、分类或地区，按相关度排序）
      * 请求路径: GET /api/show/search
      * @param keyword 关键词
+     * @param startFrom 开始时间下限（可选）
+     * @param startTo 开始时间上限（可选，不包含）
      * @return 演出列表
      */
     @GetMapping("/search")
-    public List<Show> searchShows(@RequestParam String keyword) {
-        return showService.searchShows(keyword);
+    public List<Show> searchShows(@RequestParam String keyword,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startFrom,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTo) {
+        return showService.searchShows(keyword, startFrom, startTo);
+    }
+
+    /**
+     * 搜索联想（用户输入时调用，按前缀匹配演出名称、场馆及其拼音首字母，不查询数据库）
+     * 请求路径: GET /api/show/suggest
+     * @param prefix 用户已经输入的内容
+     * @param limit 返回数量（可选，默认10）
+     * @return {"suggestions": [{showId, name, venue, startTime}]}，按开始时间的远近和已售票数排序
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<Map<String, Object>> suggest(@RequestParam String prefix,
+                                                       @RequestParam(defaultValue = "10") int limit) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("suggestions", showSuggestService.suggest(prefix, limit));
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 分页搜索演出（匹配演出名、场馆、分类或地区，按相关度排序）
+     * 请求路径: GET /api/show/search/page
+     * @param keyword 关键词（多个词用空格分隔，每个词都要匹配）
+     * @param startFrom 开始时间下限（可选）
+     * @param startTo 开始时间上限（可选，不包含）
+     * @param pageNum 当前页码
+     * @param pageSize 每页数量
+     * @return 分页结果
+     */
+    @GetMapping("/search/page")
+    public PageResult<Show> searchShowsByPage(@RequestParam String keyword,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startFrom,
+                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTo,
+                                              @RequestParam(defaultValue = "1") int pageNum,
+                                              @RequestParam(defaultValue = "10") int pageSize) {
+        return showService.searchShows(keyword, startFrom, startTo, pageNum, pageSize);
     }
 
     /**
@@ -121,6 +200,8 @@ public class ShowController {
      * 请求路径: GET /api/show/query
      * @param region 城市
      * @param category 分类
+     * @param startFrom 开始时间下限（可选）
+     * @param startTo 开始时间上限（可选，不包含）
      * @param pageNum 当前页码
      * @param pageSize 每页数量
      * @return 分页结果
@@ -128,9 +209,11 @@ public class ShowController {
     @GetMapping("/query")
     public PageResult<Show> findShowsByConditions(@RequestParam(required = false) String region,
                                                    @RequestParam(required = false) String category,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startFrom,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTo,
                                                    @RequestParam(defaultValue = "1") int pageNum,
                                                    @RequestParam(defaultValue = "10") int pageSize) {
-        return showService.findShowsByConditions(region, category, pageNum, pageSize);
+        return showService.findShowsByConditions(region, category, startFrom, startTo, pageNum, pageSize);
     }
 
     /**
@@ -142,6 +225,8 @@ public class ShowController {
      */
     @GetMapping("/details")
     public ResponseEntity<Map<String, Object>> getShowDetails(@RequestParam Long showId) {
+        // 统计演出的详情访问次数，用于识别热门演出
+        hotShowService.record(showId);
         Show show = showService.getShowById(showId);
         // 使用 Map 包装，确保即使 show 为 null 也返回有效的 JSON 对象
         Map<String, Object> result = new HashMap<>();
@@ -149,6 +234,49 @@ public class ShowController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * 查询演出的座位图 (用户端，对号入座的演出)
+     * 请求路径: GET /api/show/seat-map
+     * @param showId 演出ID
+     * @param sessionId 场次ID（有场次的演出必填，每个场次的已售座位不同）
+     * @return {"seatMap": {layout, sessionId, totalSeats, availableSeats, soldBitmap}}，
+     *         soldBitmap 为 Base64 编码的位图（第 i 个座位对应第 i/8 个字节的第 i%8 位，1 表示已售出）；
+     *         演出没有座位图或场次不匹配时返回 {"seatMap": null}
+     */
+    @GetMapping("/seat-map")
+    public ResponseEntity<Map<String, Object>> getSeatMap(@RequestParam Long showId,
+                                                          @RequestParam(required = false) Long sessionId) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("seatMap", seatService.getSeatMap(showId, sessionId));
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 查询演出的票档及各票档的剩余库存 (用户端)
+     * 请求路径: GET /api/show/tiers
+     * @param showId 演出ID
+     * @return {"tiers": [{id, name, price, totalTickets, availableTickets}]}，演出没有划分票档时返回空列表
+     */
+    @GetMapping("/tiers")
+    public ResponseEntity<Map<String, Object>> getShowTiers(@RequestParam Long showId) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("tiers", showTierService.getTiersWithStock(showId));
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 查询演出的场次及各场次的剩余库存 (用户端)
+     * 请求路径: GET /api/show/sessions
+     * @param showId 演出ID
+     * @return {"sessions": [{id, name, startTime, endTime, totalTickets, availableTickets}]}，演出没有多场次时返回空列表
+     */
+    @GetMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> getShowSessions(@RequestParam Long showId) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("sessions", showSessionService.getSessionsWithStock(showId));
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * 管理端 - 更新演出信息
      * 请求路径: PUT /api/show/update
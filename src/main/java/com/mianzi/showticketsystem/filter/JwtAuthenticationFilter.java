@@ -24,6 +24,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private RequestRateLimiter requestRateLimiter;
+
     // 不需要Token验证的路径
     private static final List<String> EXCLUDE_PATHS = Arrays.asList(
             "/api/user/register-or-login",
@@ -31,6 +34,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             "/api/admin/login",
             "/api/show/home",
             "/api/show/search",
+            "/api/show/suggest",     // 搜索联想每输入一个字符请求一次，匿名用户也可以使用，不消耗登录用户的限流令牌
             "/api/show/conditions",
             "/api/payment/notify"  // 支付回调接口由支付宝服务器调用，不需要JWT验证
     );
@@ -47,7 +51,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // 从请求头中获取Token
+        // 从请求头中获取Token（只接受登录Token，排队凭证用单独的密钥签名，验证不通过）
         String token = getTokenFromRequest(request);
         
         if (token == null || !jwtUtil.validateToken(token)) {
@@ -71,6 +75,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         request.setAttribute("userId", userId);
         request.setAttribute("role", role);
 
+        // 限流：按用户、客户端IP和演出ID检查令牌桶，超过限制时返回429
+        long retryAfterMillis = requestRateLimiter.tryAcquire(requestPath, userId, request.getRemoteAddr(),
+                request.getParameter("showId"));
+        if (retryAfterMillis > 0) {
+            response.setStatus(429);
+            response.setHeader("Retry-After", String.valueOf((retryAfterMillis + 999) / 1000));
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().write("{\"error\":\"请求过于频繁，请稍后重试\"}");
+            return;
+        }
+
         // 对于管理员接口，检查是否为管理员（排除登录接口）
         if (requestPath.startsWith("/api/admin/") && !requestPath.equals("/api/admin/login")) {
             if (role == null || role != 2) {
@@ -0,0 +1,251 @@
+package com.mianzi.showticketsystem.filter;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求限流器（令牌桶）
+ * 按接口路径配置限流规则，每条规则可以分别按用户ID、客户端IP、演出ID限流，每个 (规则, 维度, 值) 一个令牌桶。
+ *
+ * 令牌桶用"理论到达时间"（GCRA）表示：每个桶只有一个 AtomicLong，取令牌就是一次 CAS，不需要加锁；
+ * 理论到达时间早于当前时间的桶已经装满令牌，与新建的桶没有区别，定时清理时直接删除，因此内存只与最近活跃的 key 数量有关，
+ * 并且有 max-buckets 上限。
+ *
+ * 规则配置格式：路径前缀:维度=每秒令牌数/桶容量,...;路径前缀:...
+ * 例如 /api/order/create:user=2/5,ip=10/20,show=500/1000
+ */
+@Component
+public class RequestRateLimiter {
+
+    /**
+     * 限流维度
+     */
+    public enum Dimension {
+        USER, IP, SHOW
+    }
+
+    // 是否开启限流
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    // 限流规则
+    @Value("${rate-limit.rules:}")
+    private String rulesConfig;
+
+    // 最多同时保存的令牌桶数量
+    @Value("${rate-limit.max-buckets:100000}")
+    private int maxBuckets;
+
+    private List<Rule> rules = new ArrayList<>();
+
+    // 令牌桶：规则路径|维度|值 -> 令牌桶
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    // 被限流的请求数：规则路径|维度 -> 次数
+    private final Map<String, LongAdder> throttledCounters = new ConcurrentHashMap<>();
+
+    // 令牌桶数量达到上限、未能限流而直接放行的请求数
+    private final LongAdder overflowRequests = new LongAdder();
+
+    // 是否有线程正在清理令牌桶（桶数量达到上限时只让一个线程清理）
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    /**
+     * 一条限流规则
+     */
+    private static class Rule {
+        final String pathPrefix;
+        final Map<Dimension, long[]> limits = new EnumMap<>(Dimension.class); // 维度 -> {每秒令牌数, 桶容量}
+
+        Rule(String pathPrefix) {
+            this.pathPrefix = pathPrefix;
+        }
+    }
+
+    /**
+     * 令牌桶（GCRA）：tat 为下一个请求的理论到达时间（纳秒），
+     * 允许请求的条件是 tat 不超过"当前时间 + 桶容量对应的时长"
+     */
+    private static class TokenBucket {
+        final AtomicLong tat;
+        final long intervalNanos;
+        final long capacityNanos;
+
+        TokenBucket(long ratePerSecond, long capacity, long now) {
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+            this.capacityNanos = intervalNanos * capacity;
+            this.tat = new AtomicLong(now);
+        }
+
+        /**
+         * 取一个令牌
+         * @return 0 表示成功；大于0表示失败，值为需要等待的纳秒数
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + intervalNanos;
+                long waitNanos = next - now - capacityNanos;
+                if (waitNanos > 0) {
+                    return waitNanos;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * 桶中令牌已经装满（长时间没有请求），可以删除
+         */
+        boolean isIdle(long now) {
+            return tat.get() <= now;
+        }
+    }
+
+    /**
+     * 解析限流规则
+     */
+    @PostConstruct
+    public void init() {
+        List<Rule> parsed = new ArrayList<>();
+        if (StringUtils.hasText(rulesConfig)) {
+            for (String ruleText : rulesConfig.split(";")) {
+                if (!StringUtils.hasText(ruleText)) {
+                    continue;
+                }
+                int colon = ruleText.indexOf(':');
+                if (colon <= 0) {
+                    throw new IllegalArgumentException("限流规则格式错误: " + ruleText);
+                }
+                Rule rule = new Rule(ruleText.substring(0, colon).trim());
+                for (String limitText : ruleText.substring(colon + 1).split(",")) {
+                    String[] parts = limitText.trim().split("[=/]");
+                    if (parts.length != 3) {
+                        throw new IllegalArgumentException("限流规则格式错误: " + ruleText);
+                    }
+                    long rate = Long.parseLong(parts[1].trim());
+                    long capacity = Long.parseLong(parts[2].trim());
+                    if (rate <= 0 || capacity <= 0) {
+                        throw new IllegalArgumentException("限流速率和桶容量必须大于0: " + ruleText);
+                    }
+                    rule.limits.put(Dimension.valueOf(parts[0].trim().toUpperCase()), new long[]{rate, capacity});
+                }
+                parsed.add(rule);
+            }
+        }
+        rules = parsed;
+    }
+
+    /**
+     * 检查请求是否超过限流
+     * @param path 请求路径
+     * @param userId 用户ID
+     * @param clientIp 客户端IP
+     * @param showId 演出ID（请求中没有时为null）
+     * @return 0 表示放行；大于0表示被限流，值为建议的重试等待时间（毫秒）
+     */
+    public long tryAcquire(String path, Long userId, String clientIp, String showId) {
+        if (!enabled) {
+            return 0;
+        }
+        Rule rule = findRule(path);
+        if (rule == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        // 先检查单个用户和IP的限制，最后检查演出的总限制，避免被个别用户的请求占用演出的令牌
+        long waitNanos = acquire(rule, Dimension.USER, userId == null ? null : userId.toString(), now);
+        if (waitNanos == 0) {
+            waitNanos = acquire(rule, Dimension.IP, clientIp, now);
+        }
+        if (waitNanos == 0) {
+            waitNanos = acquire(rule, Dimension.SHOW, showId, now);
+        }
+        return waitNanos == 0 ? 0 : Math.max(TimeUnit.NANOSECONDS.toMillis(waitNanos), 1);
+    }
+
+    /**
+     * 查询限流统计数据
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Long> throttled = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : throttledCounters.entrySet()) {
+            throttled.put(entry.getKey(), entry.getValue().sum());
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("bucketCount", buckets.size());
+        metrics.put("maxBuckets", maxBuckets);
+        metrics.put("throttledRequests", throttled);
+        metrics.put("overflowRequests", overflowRequests.sum());
+        return metrics;
+    }
+
+    /**
+     * 定时删除已经装满令牌的桶（每分钟一次）
+     */
+    @Scheduled(fixedRate = 60000)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        // 删除与取令牌并发时，最多让一个请求从被删除的桶中多取一个令牌，可以接受
+        buckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+
+    private Rule findRule(String path) {
+        for (Rule rule : rules) {
+            if (path.equals(rule.pathPrefix) || path.startsWith(rule.pathPrefix + "/")) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从对应的令牌桶中取一个令牌
+     */
+    private long acquire(Rule rule, Dimension dimension, String value, long now) {
+        long[] limit = rule.limits.get(dimension);
+        if (limit == null || value == null) {
+            return 0;
+        }
+        String key = rule.pathPrefix + "|" + dimension + "|" + value;
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxBuckets) {
+                if (evicting.compareAndSet(false, true)) {
+                    try {
+                        evictIdleBuckets();
+                    } finally {
+                        evicting.set(false);
+                    }
+                }
+                if (buckets.size() >= maxBuckets) {
+                    // 活跃的 key 太多时不再创建新桶，直接放行，保证内存有上限
+                    overflowRequests.increment();
+                    return 0;
+                }
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(limit[0], limit[1], now));
+        }
+        long waitNanos = bucket.tryAcquire(now);
+        if (waitNanos > 0) {
+            throttledCounters.computeIfAbsent(rule.pathPrefix + "|" + dimension, k -> new LongAdder()).increment();
+        }
+        return waitNanos;
+    }
+}
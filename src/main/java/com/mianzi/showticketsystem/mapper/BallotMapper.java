@@ -0,0 +1,50 @@
+package com.mianzi.showticketsystem.mapper;
+
+import com.mianzi.showticketsystem.model.entity.BallotEntry;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 抽签报名数据访问接口
+ */
+@Mapper
+public interface BallotMapper {
+
+    /**
+     * 插入报名记录，同一用户同一演出已经报名过时忽略（由唯一索引 (show_id, user_id) 去重）
+     * @param entry 报名记录
+     * @return 影响的行数（1 表示新报名，0 表示已经报名过）
+     */
+    int insertIgnore(BallotEntry entry);
+
+    /**
+     * 查询用户在某个演出的报名记录
+     * @param showId 演出ID
+     * @param userId 用户ID
+     * @return 报名记录，未报名时返回 null
+     */
+    BallotEntry getByShowIdAndUserId(@Param("showId") Long showId, @Param("userId") Long userId);
+
+    /**
+     * 查询演出所有待抽签的报名记录（只查询抽签需要的字段）
+     * @param showId 演出ID
+     * @return 报名记录列表
+     */
+    List<BallotEntry> findPendingByShowId(@Param("showId") Long showId);
+
+    /**
+     * 批量把报名记录标记为中签，并记录创建的订单ID
+     * @param entries 中签的报名记录（id 和 orderId）
+     * @return 影响的行数
+     */
+    int markWon(@Param("entries") List<BallotEntry> entries);
+
+    /**
+     * 把演出剩余的待抽签报名记录全部标记为未中签
+     * @param showId 演出ID
+     * @return 影响的行数
+     */
+    int markPendingLost(@Param("showId") Long showId);
+}
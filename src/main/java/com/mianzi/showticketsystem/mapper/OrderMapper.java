@@ -22,6 +22,13 @@ public interface OrderMapper {
      */
     int insert(Order order);
 
+    /**
+     * 批量插入订单记录（一条多行 INSERT 语句），插入后回填每个订单的主键ID
+     * @param orders 订单列表
+     * @return 影响的行数
+     */
+    int insertBatch(List<Order> orders);
+
     /**
      * 根据订单ID和用户ID查询订单详情
      * @param id 订单ID
@@ -30,6 +37,14 @@ public interface OrderMapper {
      */
     Order getByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
 
+    /**
+     * 根据用户ID和幂等键查询订单
+     * @param userId 用户ID
+     * @param idempotencyKey 幂等键
+     * @return 订单实体对象，不存在时返回 null
+     */
+    Order getByUserIdAndIdempotencyKey(@Param("userId") Long userId, @Param("idempotencyKey") String idempotencyKey);
+
     /**
      * 根据订单ID查询订单详情（用于管理端）
      * @param id 订单ID
@@ -174,4 +189,73 @@ public interface OrderMapper {
      * @return 订单列表
      */
     List<Order> findPendingOrdersBefore(@Param("beforeTime") java.time.LocalDateTime beforeTime);
+
+    /**
+     * 按 (order_time, id) 游标分页查询待支付订单（键集分页，每页都走 (status, order_time, id) 索引，不使用 OFFSET）
+     * @param beforeTime 时间点（查询此时间之前的订单）
+     * @param lastOrderTime 上一页最后一个订单的下单时间（第一页传 null）
+     * @param lastId 上一页最后一个订单的ID（第一页传 null）
+     * @param limit 每页数量
+     * @return 订单列表（按下单时间、ID升序）
+     */
+    List<Order> findPendingOrdersAfter(@Param("beforeTime") java.time.LocalDateTime beforeTime,
+                                       @Param("lastOrderTime") java.time.LocalDateTime lastOrderTime,
+                                       @Param("lastId") Long lastId,
+                                       @Param("limit") Integer limit);
+
+    /**
+     * 锁定指定ID中仍是待支付状态的订单（用于批量关单，支付渠道确认未支付之后执行）
+     * 使用 FOR UPDATE SKIP LOCKED：正在被支付/取消的订单会被跳过，不会阻塞关单任务
+     * @param ids 订单ID列表
+     * @return 订单列表（只包含 id、user_id、show_id、session_id、tier_id、out_trade_no、quantity）
+     */
+    List<Order> lockPendingOrdersByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 批量更新订单状态，仅更新当前状态等于期望状态的订单
+     * @param ids 订单ID列表
+     * @param newStatus 新状态
+     * @param expectedStatus 期望的旧状态
+     * @return 影响的行数
+     */
+    int updateStatusByIds(@Param("ids") List<Long> ids,
+                          @Param("newStatus") Integer newStatus,
+                          @Param("expectedStatus") Integer expectedStatus);
+
+    /**
+     * 标记订单的库存待返还（在取消/关闭订单的事务中调用）
+     * @param ids 订单ID列表
+     * @return 影响的行数
+     */
+    int markStockPending(@Param("ids") List<Long> ids);
+
+    /**
+     * 锁定库存仍待返还的订单（只查询ID、演出、场次、票档和数量）
+     * @param ids 订单ID列表
+     * @return 库存仍待返还的订单
+     */
+    List<Order> lockStockPendingOrders(@Param("ids") List<Long> ids);
+
+    /**
+     * 标记订单的库存已返还
+     * @param ids 订单ID列表
+     * @return 影响的行数
+     */
+    int markStockReturned(@Param("ids") List<Long> ids);
+
+    /**
+     * 按ID分页查询已取消/已关闭但库存还没返还的订单ID
+     * @param afterId 上一页最后一个订单ID（第一页传0）
+     * @param limit 每页数量
+     * @return 订单ID列表（按ID升序）
+     */
+    List<Long> findStockPendingOrderIds(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 统计用户在某个演出已购买（待支付和已支付）的票数
+     * @param showId 演出ID
+     * @param userId 用户ID
+     * @return 已购买的票数
+     */
+    int sumPurchasedQuantity(@Param("showId") Long showId, @Param("userId") Long userId);
 }
@@ -0,0 +1,72 @@
+package com.mianzi.showticketsystem.mapper;
+
+import com.mianzi.showticketsystem.model.entity.OrderSeat;
+import com.mianzi.showticketsystem.model.entity.ShowSeatMap;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 座位图和订单座位的数据访问接口
+ */
+@Mapper
+public interface SeatMapper {
+
+    /**
+     * 查询演出的座位图
+     * @param showId 演出ID
+     * @return 座位图，演出没有座位图时返回 null
+     */
+    ShowSeatMap getSeatMap(@Param("showId") Long showId);
+
+    /**
+     * 保存演出的座位图（已存在时覆盖）
+     * @param seatMap 座位图
+     * @return 影响的行数
+     */
+    int saveSeatMap(ShowSeatMap seatMap);
+
+    /**
+     * 删除演出的座位图
+     * @param showId 演出ID
+     * @return 影响的行数
+     */
+    int deleteSeatMap(@Param("showId") Long showId);
+
+    /**
+     * 查询演出某个场次已售出（已分配给订单）的座位编号
+     * @param showId 演出ID
+     * @param sessionId 场次ID（没有场次的演出为 0）
+     * @return 座位编号列表
+     */
+    List<Integer> findSoldSeatNos(@Param("showId") Long showId, @Param("sessionId") Long sessionId);
+
+    /**
+     * 统计演出（所有场次）已售出的座位数
+     * @param showId 演出ID
+     * @return 座位数
+     */
+    int countSoldSeats(@Param("showId") Long showId);
+
+    /**
+     * 批量插入订单座位（show_id + session_id + seat_no 唯一，同一场次的同一座位不会分配给两个订单）
+     * @param seats 订单座位列表
+     * @return 插入的行数
+     */
+    int insertOrderSeats(@Param("seats") List<OrderSeat> seats);
+
+    /**
+     * 查询订单的座位
+     * @param orderIds 订单ID列表
+     * @return 订单座位列表
+     */
+    List<OrderSeat> findByOrderIds(@Param("orderIds") List<Long> orderIds);
+
+    /**
+     * 删除订单的座位（订单取消或超时关闭时释放座位）
+     * @param orderIds 订单ID列表
+     * @return 影响的行数
+     */
+    int deleteByOrderIds(@Param("orderIds") List<Long> orderIds);
+}
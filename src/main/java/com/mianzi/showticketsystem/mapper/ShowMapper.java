@@ -3,7 +3,9 @@ package com.mianzi.showticketsystem.mapper;
 import com.mianzi.showticketsystem.model.entity.Show;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -30,6 +32,14 @@ public interface ShowMapper {
      */
     int updateStock(@Param("showId") Long showId, @Param("quantity") Integer quantity); // <-- 新增这行
 
+    /**
+     * 减少指定演出的库存，库存不足时扣到 0 为止（内存库存同步时已经卖出的票不能丢弃）
+     * @param showId 演出ID
+     * @param quantity 减少的数量
+     * @return 影响的行数
+     */
+    int deductStockClamped(@Param("showId") Long showId, @Param("quantity") Integer quantity);
+
     /**
      * 根据ID查询演出详情
      * @param id 演出ID
@@ -45,6 +55,20 @@ public interface ShowMapper {
      */
     int addStock(@Param("showId") Long showId, @Param("quantity") Integer quantity);
 
+    /**
+     * 查询演出当前的可用库存（用于初始化内存库存账本）
+     * @param showId 演出ID
+     * @return 可用票数，如果演出不存在或已下架则返回 null
+     */
+    Integer getAvailableTickets(@Param("showId") Long showId);
+
+    /**
+     * 在事务中锁定演出行并查询 show 表中记录的可用票数（不含分桶，用于把库存拆分到分桶表）
+     * @param showId 演出ID
+     * @return 可用票数，如果演出不存在或已下架则返回 null
+     */
+    Integer lockAvailableTickets(@Param("showId") Long showId);
+
     /**
      * 更新演出信息
      * @param show 包含新信息的演出对象
@@ -52,6 +76,38 @@ public interface ShowMapper {
      */
     int update(Show show);
 
+    /**
+     * 查询开售时间在 before 之前、还没有开票的演出
+     * @param before 开售时间上限（包含）
+     * @return 演出ID列表（按开售时间排序）
+     */
+    List<Long> findShowsToOpen(@Param("before") LocalDateTime before);
+
+    /**
+     * 开票（只有当前未开票时才更新，多个实例同时开票时只有一个能成功）
+     * @param showId 演出ID
+     * @return 影响的行数 (1 表示成功)
+     */
+    int openSale(@Param("showId") Long showId);
+
+    /**
+     * 查询抽签报名已经截止、还没有抽签的演出
+     * @param now 当前时间
+     * @return 演出ID列表（按报名截止时间排序）
+     */
+    List<Long> findBallotShowsToDraw(@Param("now") LocalDateTime now);
+
+    /**
+     * 更新演出的抽签状态（只有当前状态等于 oldStatus 时才更新，多个实例同时抽签时只有一个能成功）
+     * @param showId 演出ID
+     * @param oldStatus 当前状态
+     * @param newStatus 新状态
+     * @return 影响的行数 (1 表示成功)
+     */
+    int updateBallotStatus(@Param("showId") Long showId,
+                           @Param("oldStatus") Integer oldStatus,
+                           @Param("newStatus") Integer newStatus);
+
     /**
      * 删除演出信息 (通常是逻辑删除，这里我们实现物理删除以简化)
      * @param id 演出ID
@@ -63,30 +119,82 @@ public interface ShowMapper {
      * 根据地区和分类查询演出列表（首页使用）
      * @param region 地区（可选，如果为null则查询所有地区）
      * @param category 分类（可选，如果为null则查询所有分类）
+     * @param startFrom 开始时间下限（可选，包含；演出或任一场次在范围内即可）
+     * @param startTo 开始时间上限（可选，不包含）
      * @param limit 限制数量
      * @return 演出列表
      */
     List<Show> findByRegionAndCategory(@Param("region") String region,
                                        @Param("category") String category,
+                                       @Param("startFrom") LocalDateTime startFrom,
+                                       @Param("startTo") LocalDateTime startTo,
                                        @Param("limit") Integer limit);
 
+    /**
+     * 查询有即将开始的演出（演出或任一场次的开始时间不早于 now）的地区和分类组合（首页快照全量重建使用）
+     * @param now 当前时间
+     * @return 演出列表（只有 region 和 category 字段）
+     */
+    List<Show> findUpcomingRegionCategories(@Param("now") LocalDateTime now);
+
     /**
      * 搜索演出（匹配演出名或场馆名）
      * @param keyword 关键词
+     * @param startFrom 开始时间下限（可选，包含；演出或任一场次在范围内即可）
+     * @param startTo 开始时间上限（可选，不包含）
      * @return 演出列表
      */
-    List<Show> searchShows(@Param("keyword") String keyword);
+    List<Show> searchShows(@Param("keyword") String keyword,
+                           @Param("startFrom") LocalDateTime startFrom,
+                           @Param("startTo") LocalDateTime startTo);
+
+    /**
+     * 流式读取所有上架演出的搜索字段（id、名称、场馆、地区、分类、开始和结束时间），用于建立搜索索引
+     * 需要在事务中使用，读取完之前不能关闭连接
+     * @return 按ID排序的演出游标
+     */
+    Cursor<Show> streamSearchDocuments();
+
+    /**
+     * 流式读取所有还没有结束的上架演出的联想字段（id、名称、场馆、开始和结束时间、总票数、可用票数），用于建立联想前缀树
+     * 需要在事务中使用，读取完之前不能关闭连接
+     * @param now 当前时间（结束时间或开始时间早于此时的演出不读取）
+     * @return 按ID排序的演出游标
+     */
+    Cursor<Show> streamSuggestDocuments(@Param("now") LocalDateTime now);
+
+    /**
+     * 根据ID批量查询上架的演出
+     * @param ids 演出ID列表（不能为空）
+     * @return 演出列表（顺序不确定，不存在或已下架的演出不返回）
+     */
+    List<Show> findByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 在给定的演出中查询开始时间在范围内的演出（演出或任一场次在范围内即可）
+     * @param ids 演出ID列表（不能为空）
+     * @param startFrom 开始时间下限（可选，包含）
+     * @param startTo 开始时间上限（可选，不包含）
+     * @return 演出ID列表
+     */
+    List<Long> findIdsInStartTimeRange(@Param("ids") List<Long> ids,
+                                       @Param("startFrom") LocalDateTime startFrom,
+                                       @Param("startTo") LocalDateTime startTo);
 
     /**
      * 条件查询演出（分页）
      * @param region 城市（可选）
      * @param category 分类（可选）
+     * @param startFrom 开始时间下限（可选，包含；演出或任一场次在范围内即可）
+     * @param startTo 开始时间上限（可选，不包含）
      * @param offset 偏移量
      * @param limit 每页数量
      * @return 演出列表
      */
     List<Show> findShowsByConditions(@Param("region") String region,
                                      @Param("category") String category,
+                                     @Param("startFrom") LocalDateTime startFrom,
+                                     @Param("startTo") LocalDateTime startTo,
                                      @Param("offset") Integer offset,
                                      @Param("limit") Integer limit);
 
@@ -94,10 +202,14 @@ public interface ShowMapper {
      * 统计条件查询的演出总数
      * @param region 城市（可选）
      * @param category 分类（可选）
+     * @param startFrom 开始时间下限（可选，包含）
+     * @param startTo 开始时间上限（可选，不包含）
      * @return 总数
      */
     long countShowsByConditions(@Param("region") String region,
-                                @Param("category") String category);
+                                @Param("category") String category,
+                                @Param("startFrom") LocalDateTime startFrom,
+                                @Param("startTo") LocalDateTime startTo);
 
     /**
      * 管理端 - 分页查询演出列表（条件查询）
@@ -0,0 +1,53 @@
+package com.mianzi.showticketsystem.mapper;
+
+import com.mianzi.showticketsystem.model.entity.ShowSession;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 演出场次数据访问接口
+ */
+@Mapper
+public interface ShowSessionMapper {
+
+    /**
+     * 批量插入场次
+     * @param sessions 场次列表
+     * @return 插入的行数
+     */
+    int insertSessions(@Param("sessions") List<ShowSession> sessions);
+
+    /**
+     * 查询演出的所有场次（按开始时间）
+     * @param showId 演出ID
+     * @return 场次列表
+     */
+    List<ShowSession> findByShowId(@Param("showId") Long showId);
+
+    /**
+     * 原子性扣减场次库存（库存不足或演出已下架时不更新）
+     * @param showId 演出ID
+     * @param sessionId 场次ID
+     * @param quantity 扣减数量
+     * @return 影响的行数（1 表示成功）
+     */
+    int deductStock(@Param("showId") Long showId, @Param("sessionId") Long sessionId, @Param("quantity") int quantity);
+
+    /**
+     * 返还场次库存
+     * @param showId 演出ID
+     * @param sessionId 场次ID
+     * @param quantity 返还数量
+     * @return 影响的行数
+     */
+    int addStock(@Param("showId") Long showId, @Param("sessionId") Long sessionId, @Param("quantity") int quantity);
+
+    /**
+     * 删除演出的所有场次
+     * @param showId 演出ID
+     * @return 影响的行数
+     */
+    int deleteByShowId(@Param("showId") Long showId);
+}
@@ -0,0 +1,53 @@
+package com.mianzi.showticketsystem.mapper;
+
+import com.mianzi.showticketsystem.model.entity.ShowTier;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 演出票档数据访问接口
+ */
+@Mapper
+public interface ShowTierMapper {
+
+    /**
+     * 批量插入票档
+     * @param tiers 票档列表
+     * @return 插入的行数
+     */
+    int insertTiers(@Param("tiers") List<ShowTier> tiers);
+
+    /**
+     * 查询演出的所有票档（按排序）
+     * @param showId 演出ID
+     * @return 票档列表
+     */
+    List<ShowTier> findByShowId(@Param("showId") Long showId);
+
+    /**
+     * 原子性扣减票档库存（库存不足时不更新）
+     * @param showId 演出ID
+     * @param tierId 票档ID
+     * @param quantity 扣减数量
+     * @return 影响的行数（1 表示成功）
+     */
+    int deductStock(@Param("showId") Long showId, @Param("tierId") Long tierId, @Param("quantity") int quantity);
+
+    /**
+     * 返还票档库存
+     * @param showId 演出ID
+     * @param tierId 票档ID
+     * @param quantity 返还数量
+     * @return 影响的行数
+     */
+    int addStock(@Param("showId") Long showId, @Param("tierId") Long tierId, @Param("quantity") int quantity);
+
+    /**
+     * 删除演出的所有票档
+     * @param showId 演出ID
+     * @return 影响的行数
+     */
+    int deleteByShowId(@Param("showId") Long showId);
+}
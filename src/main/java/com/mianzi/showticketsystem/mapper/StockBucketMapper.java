@@ -0,0 +1,83 @@
+package com.mianzi.showticketsystem.mapper;
+
+import com.mianzi.showticketsystem.model.entity.StockBucket;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 演出库存分桶数据访问接口
+ */
+@Mapper
+public interface StockBucketMapper {
+
+    /**
+     * 批量插入演出的库存分桶，分桶编号为列表下标
+     * @param showId 演出ID
+     * @param amounts 每个分桶的初始票数
+     * @return 影响的行数
+     */
+    int insertBuckets(@Param("showId") Long showId, @Param("amounts") List<Integer> amounts);
+
+    /**
+     * 统计演出的分桶数量
+     * @param showId 演出ID
+     * @return 分桶数量，0 表示该演出未分桶
+     */
+    int countBuckets(@Param("showId") Long showId);
+
+    /**
+     * 查询演出的所有分桶
+     * @param showId 演出ID
+     * @return 分桶列表（按分桶编号排序）
+     */
+    List<StockBucket> findByShowId(@Param("showId") Long showId);
+
+    /**
+     * 在事务中锁定演出的所有分桶（提升到内存库存时等待正在扣减分桶的事务结束）
+     * @param showId 演出ID
+     * @return 分桶列表（按分桶编号排序）
+     */
+    List<StockBucket> lockByShowId(@Param("showId") Long showId);
+
+    /**
+     * 在事务中锁定演出的一个分桶
+     * @param showId 演出ID
+     * @param bucketNo 分桶编号
+     * @param nowait 为 true 时分桶已被其他事务锁住立即失败（抛出 PessimisticLockingFailureException），不等待
+     * @return 分桶；不存在时返回 null
+     */
+    StockBucket lockBucket(@Param("showId") Long showId,
+                           @Param("bucketNo") Integer bucketNo,
+                           @Param("nowait") boolean nowait);
+
+    /**
+     * 原子性地减少指定分桶的库存
+     * @param showId 演出ID
+     * @param bucketNo 分桶编号
+     * @param quantity 减少的数量
+     * @return 影响的行数 (1表示成功，0表示该分桶库存不足)
+     */
+    int deductStock(@Param("showId") Long showId,
+                    @Param("bucketNo") Integer bucketNo,
+                    @Param("quantity") Integer quantity);
+
+    /**
+     * 增加指定分桶的库存
+     * @param showId 演出ID
+     * @param bucketNo 分桶编号
+     * @param quantity 增加的数量
+     * @return 影响的行数
+     */
+    int addStock(@Param("showId") Long showId,
+                 @Param("bucketNo") Integer bucketNo,
+                 @Param("quantity") Integer quantity);
+
+    /**
+     * 删除演出的所有分桶
+     * @param showId 演出ID
+     * @return 影响的行数
+     */
+    int deleteByShowId(@Param("showId") Long showId);
+}
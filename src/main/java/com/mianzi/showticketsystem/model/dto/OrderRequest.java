@@ -0,0 +1,25 @@
+package com.mianzi.showticketsystem.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 下单请求DTO
+ * 用于批量下单时传递每个用户的购买请求
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderRequest {
+    private Long userId; // 购票用户ID
+    private Long showId; // 演出ID
+    private Long sessionId; // 场次ID（无场次的演出为空）
+    private Long tierId; // 票档ID（无票档的演出为空）
+    private Integer quantity; // 购买数量
+    private String idempotencyKey; // 幂等键（可选）
+
+    public OrderRequest(Long userId, Long showId, Integer quantity) {
+        this(userId, showId, null, null, quantity, null);
+    }
+}
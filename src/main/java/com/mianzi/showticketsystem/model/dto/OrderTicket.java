@@ -0,0 +1,49 @@
+package com.mianzi.showticketsystem.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mianzi.showticketsystem.model.entity.Order;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步下单凭证DTO
+ * 异步下单接口立即返回 requestId，客户端再用 requestId 查询处理结果
+ */
+@Data
+@Accessors(chain = true)
+public class OrderTicket {
+
+    public static final int STATUS_PENDING = 0; // 排队处理中
+    public static final int STATUS_SUCCESS = 1; // 下单成功
+    public static final int STATUS_FAILED = 2;  // 下单失败（库存不足、演出不存在等）
+
+    private String requestId; // 请求ID
+    private Long userId; // 购票用户ID
+    private Long showId; // 演出ID
+    private Long sessionId; // 场次ID（无场次的演出为空）
+    private Long tierId; // 票档ID（无票档的演出为空）
+    private Integer quantity; // 购买数量
+    private volatile Integer status; // 处理状态 (0: 处理中, 1: 成功, 2: 失败)
+    private volatile Order order; // 下单成功时的订单
+    private volatile String message; // 结果说明
+    private LocalDateTime createTime; // 提交时间
+    private volatile LocalDateTime finishTime; // 处理完成时间
+
+    // 处理完成时触发，用于长轮询等待结果
+    @JsonIgnore
+    private final CompletableFuture<OrderTicket> future = new CompletableFuture<>();
+
+    /**
+     * 标记处理完成并唤醒等待结果的请求
+     */
+    public void complete(Order order, String message) {
+        this.order = order;
+        this.status = order != null ? STATUS_SUCCESS : STATUS_FAILED;
+        this.message = message;
+        this.finishTime = LocalDateTime.now();
+        future.complete(this);
+    }
+}
@@ -0,0 +1,18 @@
+package com.mianzi.showticketsystem.model.dto;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 等候室排队状态DTO
+ * 排队凭证中记录了用户的排队号，放行进度只保存在内存中，查询排队位置是 O(1) 的
+ */
+@Data
+@Accessors(chain = true)
+public class QueueStatus {
+    private String token; // 排队凭证（签名的JWT，下单时放在 Queue-Token 请求头中）
+    private Long showId; // 演出ID
+    private Long position; // 前面还有多少人（0 表示已放行）
+    private Boolean admitted; // 是否已放行（可以下单）
+    private Long estimatedWaitSeconds; // 预计等待时间（秒）
+}
@@ -0,0 +1,26 @@
+package com.mianzi.showticketsystem.model.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 座位布局DTO
+ * 分区按选座优先顺序排列（例如内场在前、看台在后），每个分区内的排按离舞台由近到远排列；
+ * 座位编号按分区、排、排内座位的顺序从0开始连续编号
+ */
+@Data
+public class SeatLayout {
+
+    private List<Section> sections; // 分区列表
+
+    /**
+     * 座位分区
+     */
+    @Data
+    public static class Section {
+        private String name; // 分区名称（如：内场A区、看台101区）
+        private Integer tierId; // 所属票档ID（可选，对应 show_tier 表的票档ID）
+        private List<Integer> rows; // 每排的座位数
+    }
+}
@@ -0,0 +1,18 @@
+package com.mianzi.showticketsystem.model.dto;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+/**
+ * 搜索联想结果DTO
+ */
+@Data
+@Accessors(chain = true)
+public class ShowSuggestion {
+    private Long showId; // 演出ID
+    private String name; // 演出名称
+    private String venue; // 场馆
+    private LocalDateTime startTime; // 开始时间
+}
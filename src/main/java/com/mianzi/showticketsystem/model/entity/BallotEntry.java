@@ -0,0 +1,30 @@
+package com.mianzi.showticketsystem.model.entity;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+/**
+ * 抽签报名实体类
+ * 抽签购票模式的演出在报名期间只记录用户的购买意向，每个用户每个演出只能报名一次
+ */
+@Data
+@Accessors(chain = true)
+public class BallotEntry {
+
+    public static final int STATUS_PENDING = 0; // 待抽签
+    public static final int STATUS_WON = 1;     // 中签（已创建待支付订单）
+    public static final int STATUS_LOST = 2;    // 未中签
+
+    private Long id; // 主键ID
+    private Long showId; // 演出ID
+    private Long userId; // 用户ID
+    private Long sessionId; // 场次ID（无场次的演出为空）
+    private Long tierId; // 票档ID（无票档的演出为空）
+    private Integer quantity; // 购买数量
+    private Integer status; // 抽签状态 (0: 待抽签, 1: 中签, 2: 未中签)
+    private Long orderId; // 中签后创建的订单ID
+    private LocalDateTime createTime; // 报名时间
+    private LocalDateTime updateTime; // 更新时间
+}
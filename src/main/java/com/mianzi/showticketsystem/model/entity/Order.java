@@ -15,8 +15,11 @@ public class Order {
     private Long id; // 主键ID
     private Long userId; // 用户ID
     private Long showId; // 演出ID
+    private Long sessionId; // 场次ID（无场次的演出为空）
+    private Long tierId; // 票档ID（无票档的演出为空）
     private String outTradeNo; // 商户订单号（用于支付，唯一标识）
     private String alipayTradeNo; // 支付宝交易号
+    private String idempotencyKey; // 下单幂等键（同一用户同一幂等键只会创建一个订单）
     private Integer quantity; // 购买数量
     private BigDecimal totalPrice; // 订单总金额
     private Integer status; // 订单状态 (1: 待支付, 2: 已支付, 3: 已取消, 4: 已退款)
@@ -0,0 +1,24 @@
+package com.mianzi.showticketsystem.model.entity;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+/**
+ * 订单座位实体类（订单分配到的每个座位一条记录）
+ */
+@Data
+@Accessors(chain = true)
+public class OrderSeat {
+
+    private Long id; // 主键ID
+    private Long orderId; // 订单ID
+    private Long showId; // 演出ID
+    private Long sessionId; // 场次ID（无场次的演出为空）
+    private Integer seatNo; // 座位编号（按布局顺序从0开始）
+    private String sectionName; // 分区名称
+    private Integer rowNo; // 排号（分区内从1开始）
+    private Integer seatInRow; // 座位号（排内从1开始）
+    private LocalDateTime createTime; // 创建时间
+}
@@ -24,6 +24,11 @@ public class Show {
     private String sessionInfo; // 场次信息（JSON格式，存储多场次信息）
     private String ticketTier; // 票档信息（JSON格式，存储不同价格档位）
     private Integer isOnSale; // 是否已开票（1:已开票, 0:未开票）
+    private LocalDateTime saleStartTime; // 开售时间（不为空时到点自动开票，开售前不能下单）
+    private Integer maxPerUser; // 每个用户最多购买的票数（0或为空表示不限购）
+    private LocalDateTime ballotStartTime; // 抽签报名开始时间（为空表示发布后即可报名）
+    private LocalDateTime ballotEndTime; // 抽签报名截止时间（不为空表示抽签购票模式，不能直接下单）
+    private Integer ballotStatus; // 抽签状态 (0: 未抽签, 1: 抽签中, 2: 已抽签)
     private Integer status; // 演出状态 (1: 正常/可售, 0: 已取消/结束)
     private LocalDateTime createTime; // 创建时间
     private LocalDateTime updateTime; // 更新时间
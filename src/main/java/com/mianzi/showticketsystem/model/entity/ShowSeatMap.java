@@ -0,0 +1,20 @@
+package com.mianzi.showticketsystem.model.entity;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+/**
+ * 演出座位图实体类
+ */
+@Data
+@Accessors(chain = true)
+public class ShowSeatMap {
+
+    private Long showId; // 演出ID
+    private String layout; // 座位布局（JSON格式，对应 SeatLayout）
+    private Integer totalSeats; // 座位总数
+    private LocalDateTime createTime; // 创建时间
+    private LocalDateTime updateTime; // 更新时间
+}
@@ -0,0 +1,27 @@
+package com.mianzi.showticketsystem.model.entity;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+/**
+ * 演出场次实体类
+ * 演出的 sessionInfo JSON（例如 [{"name":"6月1日 19:30","startTime":"2026-06-01T19:30:00","endTime":"2026-06-01T22:00:00","totalTickets":5000}, ...]）
+ * 在发布时拆分为场次记录，每个场次有自己的开始时间和库存
+ */
+@Data
+@Accessors(chain = true)
+public class ShowSession {
+
+    private Long id; // 主键ID
+    private Long showId; // 演出ID
+    private String name; // 场次名称
+    private LocalDateTime startTime; // 场次开始时间
+    private LocalDateTime endTime; // 场次结束时间
+    private Integer totalTickets; // 总票数
+    private Integer availableTickets; // 可用票数 (库存)
+    private Integer sortOrder; // 排序（按开始时间）
+    private LocalDateTime createTime; // 创建时间
+    private LocalDateTime updateTime; // 更新时间
+}
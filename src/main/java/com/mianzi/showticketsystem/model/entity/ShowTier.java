@@ -0,0 +1,26 @@
+package com.mianzi.showticketsystem.model.entity;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 演出票档实体类
+ * 演出的 ticketTier JSON（例如 [{"name":"VIP","price":1280,"totalTickets":200}, ...]）在发布时拆分为票档记录
+ */
+@Data
+@Accessors(chain = true)
+public class ShowTier {
+
+    private Long id; // 主键ID
+    private Long showId; // 演出ID
+    private String name; // 票档名称
+    private BigDecimal price; // 票价
+    private Integer totalTickets; // 总票数
+    private Integer availableTickets; // 可用票数 (库存)
+    private Integer sortOrder; // 排序（与 ticketTier JSON 中的顺序一致）
+    private LocalDateTime createTime; // 创建时间
+    private LocalDateTime updateTime; // 更新时间
+}
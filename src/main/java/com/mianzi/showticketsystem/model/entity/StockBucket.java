@@ -0,0 +1,19 @@
+package com.mianzi.showticketsystem.model.entity;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import java.time.LocalDateTime;
+
+/**
+ * 演出库存分桶实体类 (对应数据库表 show_stock_bucket)
+ * 一个演出的可用库存被拆分成 N 个分桶，演出的可用票数等于所有分桶之和
+ */
+@Data
+@Accessors(chain = true)
+public class StockBucket {
+
+    private Long showId; // 演出ID
+    private Integer bucketNo; // 分桶编号（从0开始）
+    private Integer availableTickets; // 该分桶中的可用票数
+    private LocalDateTime updateTime; // 更新时间
+}
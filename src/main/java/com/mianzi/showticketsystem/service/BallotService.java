@@ -0,0 +1,44 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.entity.BallotEntry;
+
+/**
+ * 抽签购票业务逻辑接口
+ * 超大热度的演出使用抽签购票：报名期间用户只登记购买意向（追加一行，按用户去重），
+ * 报名截止后由抽签任务打乱报名顺序、分配库存并分批创建待支付订单，中签用户收到邮件通知。
+ * 开售瞬间的并发抢购变成了一次离线的批处理
+ */
+public interface BallotService {
+
+    /**
+     * 报名抽签
+     * 同一用户同一演出只能报名一次，重复报名返回第一次的报名记录
+     * @param userId 用户ID
+     * @param showId 演出ID
+     * @param sessionId 场次ID（无场次的演出为 null）
+     * @param tierId 票档ID（无票档的演出为 null）
+     * @param quantity 购买数量
+     * @return 报名记录；演出不是抽签模式、不在报名时间内或参数不合法时返回 null
+     */
+    BallotEntry enter(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity);
+
+    /**
+     * 查询用户在某个演出的报名记录（包含抽签结果和中签订单ID）
+     * @param userId 用户ID
+     * @param showId 演出ID
+     * @return 报名记录，未报名时返回 null
+     */
+    BallotEntry getEntry(Long userId, Long showId);
+
+    /**
+     * 定时任务：对报名已截止、还没有抽签的演出进行抽签
+     */
+    void drawDueBallots();
+
+    /**
+     * 对某个演出进行抽签
+     * @param showId 演出ID
+     * @return 中签人数；演出已经在抽签或已抽签时返回 -1
+     */
+    int drawBallot(Long showId);
+}
@@ -0,0 +1,281 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.BallotMapper;
+import com.mianzi.showticketsystem.mapper.ShowMapper;
+import com.mianzi.showticketsystem.mapper.UserMapper;
+import com.mianzi.showticketsystem.model.dto.OrderRequest;
+import com.mianzi.showticketsystem.model.entity.BallotEntry;
+import com.mianzi.showticketsystem.model.entity.Order;
+import com.mianzi.showticketsystem.model.entity.Show;
+import com.mianzi.showticketsystem.model.entity.ShowSession;
+import com.mianzi.showticketsystem.model.entity.ShowTier;
+import com.mianzi.showticketsystem.model.entity.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BallotService 接口的实现类
+ *
+ * 抽签过程：
+ * 1. 把演出的抽签状态从"未抽签"改为"抽签中"（条件更新，多实例只有一个能抽签）
+ * 2. 读取全部待抽签的报名记录，用 SecureRandom 打乱顺序
+ * 3. 按打乱后的顺序在内存中分配库存（票档库存、场次库存或演出库存），数量不够的报名不中签
+ * 4. 中签的报名每 draw-chunk-size 个一批，通过组提交创建订单（每批一个事务），然后标记中签并发送邮件
+ * 5. 剩余的报名全部标记为未中签，抽签状态改为"已抽签"
+ *
+ * 抽签中途失败时演出停留在"抽签中"状态，已中签的报名和订单保持不变；
+ * 管理员把演出的 ballotStatus 改回 0 后，下一次定时任务会对剩余的待抽签报名继续抽签
+ */
+@Service
+public class BallotServiceImpl implements BallotService {
+
+    private static final int BALLOT_NOT_DRAWN = 0;
+    private static final int BALLOT_DRAWING = 1;
+    private static final int BALLOT_DRAWN = 2;
+
+    @Autowired
+    private BallotMapper ballotMapper;
+
+    @Autowired
+    private ShowMapper showMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private ShowService showService;
+
+    @Autowired
+    private ShowTierService showTierService;
+
+    @Autowired
+    private ShowSessionService showSessionService;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 每批创建的中签订单数
+    @Value("${ballot.draw-chunk-size:500}")
+    private int drawChunkSize;
+
+    // 订单支付超时时间（分钟），用于计算邮件中的支付截止时间
+    @Value("${order.pay-timeout-minutes:30}")
+    private long payTimeoutMinutes;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Override
+    public BallotEntry enter(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity) {
+        if (userId == null || quantity == null || quantity <= 0) {
+            return null;
+        }
+        Show show = showService.getShowById(showId);
+        if (show == null || show.getBallotEndTime() == null) {
+            return null; // 演出不存在或不是抽签购票模式
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if ((show.getBallotStartTime() != null && now.isBefore(show.getBallotStartTime()))
+                || !now.isBefore(show.getBallotEndTime())
+                || show.getBallotStatus() == null || show.getBallotStatus() != BALLOT_NOT_DRAWN) {
+            return null; // 不在报名时间内
+        }
+        if (show.getMaxPerUser() != null && show.getMaxPerUser() > 0 && quantity > show.getMaxPerUser()) {
+            return null; // 超过限购数量
+        }
+        if (seatService.hasSeatMap(showId)) {
+            return null; // 对号入座的演出不支持抽签
+        }
+        // 票档和场次结构来自内存缓存
+        if (showTierService.getTiers(showId).isEmpty() ? tierId != null : showTierService.getTier(showId, tierId) == null) {
+            return null;
+        }
+        if (showSessionService.getSessions(showId).isEmpty()
+                ? sessionId != null : showSessionService.getSession(showId, sessionId) == null) {
+            return null;
+        }
+
+        BallotEntry entry = new BallotEntry()
+                .setShowId(showId)
+                .setUserId(userId)
+                .setSessionId(sessionId)
+                .setTierId(tierId)
+                .setQuantity(quantity);
+        if (ballotMapper.insertIgnore(entry) == 1) {
+            return entry.setStatus(BallotEntry.STATUS_PENDING).setCreateTime(now);
+        }
+        // 已经报名过，返回第一次的报名记录
+        return ballotMapper.getByShowIdAndUserId(showId, userId);
+    }
+
+    @Override
+    public BallotEntry getEntry(Long userId, Long showId) {
+        return ballotMapper.getByShowIdAndUserId(showId, userId);
+    }
+
+    /**
+     * 每分钟检查一次报名已截止的抽签演出
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${ballot.draw-interval-ms:60000}")
+    public void drawDueBallots() {
+        List<Long> showIds;
+        try {
+            showIds = showMapper.findBallotShowsToDraw(LocalDateTime.now());
+        } catch (Exception e) {
+            System.err.println("查询待抽签演出失败: " + e.getMessage());
+            return;
+        }
+        for (Long showId : showIds) {
+            try {
+                drawBallot(showId);
+            } catch (Exception e) {
+                // 演出停留在"抽签中"状态，需要管理员确认后改回"未抽签"重新抽签
+                System.err.println("抽签失败，演出ID: " + showId + "，原因: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public int drawBallot(Long showId) {
+        if (showMapper.updateBallotStatus(showId, BALLOT_NOT_DRAWN, BALLOT_DRAWING) != 1) {
+            return -1; // 其他实例正在抽签或已经抽签
+        }
+        long startNanos = System.nanoTime();
+        Show show = showService.getShowById(showId);
+        if (show == null) {
+            // 演出已下架或暂时查询不到：改回未抽签，不让演出停留在抽签中（重新上架后由定时任务再抽签）
+            showMapper.updateBallotStatus(showId, BALLOT_DRAWING, BALLOT_NOT_DRAWN);
+            return 0;
+        }
+
+        //步骤 1: 读取所有待抽签的报名并打乱顺序
+        List<BallotEntry> entries = ballotMapper.findPendingByShowId(showId);
+        Collections.shuffle(entries, random);
+
+        //步骤 2: 按打乱后的顺序在内存中分配库存
+        List<BallotEntry> winners = allocate(show, entries);
+
+        //步骤 3: 分批创建订单，每批一个事务：订单和中签标记一起提交，
+        //        中途失败后重新抽签只会读到没有中签标记、也没有订单的报名，不会重复创建订单
+        int wonCount = 0;
+        for (int from = 0; from < winners.size(); from += drawChunkSize) {
+            List<BallotEntry> chunk = winners.subList(from, Math.min(from + drawChunkSize, winners.size()));
+            List<Order> wonOrders = transactionTemplate.execute(status -> createChunkOrders(showId, chunk));
+            if (!wonOrders.isEmpty()) {
+                notifyWinners(show, wonOrders);
+            }
+            wonCount += wonOrders.size();
+        }
+
+        //步骤 4: 其余报名全部未中签
+        ballotMapper.markPendingLost(showId);
+        showMapper.updateBallotStatus(showId, BALLOT_DRAWING, BALLOT_DRAWN);
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        System.out.println("抽签完成，演出ID: " + showId + "，报名数: " + entries.size()
+                + "，中签数: " + wonCount + "，耗时: " + elapsedMillis + " ms");
+        return wonCount;
+    }
+
+    /**
+     * 为一批中签的报名创建订单并标记中签（在调用方的事务中执行）
+     * @return 创建成功的订单
+     */
+    private List<Order> createChunkOrders(Long showId, List<BallotEntry> chunk) {
+        List<OrderRequest> requests = new ArrayList<>(chunk.size());
+        for (BallotEntry entry : chunk) {
+            requests.add(new OrderRequest(entry.getUserId(), showId, entry.getSessionId(), entry.getTierId(),
+                    entry.getQuantity(), null));
+        }
+        List<Order> orders = orderService.createBallotOrders(requests);
+
+        List<BallotEntry> won = new ArrayList<>(chunk.size());
+        List<Order> wonOrders = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Order order = orders.get(i);
+            if (order != null) {
+                won.add(chunk.get(i).setOrderId(order.getId()));
+                wonOrders.add(order);
+            }
+            // 创建订单失败（例如超过限购）的报名保持待抽签，最后统一标记为未中签
+        }
+        if (!won.isEmpty() && ballotMapper.markWon(won) != won.size()) {
+            // 报名已经不是待抽签状态（例如已被其他实例处理），回滚本批订单，避免同一个报名有两个订单
+            throw new IllegalStateException("标记中签的行数不一致，期望 " + won.size() + "，演出ID: " + showId);
+        }
+        return wonOrders;
+    }
+
+    /**
+     * 按报名顺序分配库存：每个报名需要所在票档和所在场次（没有场次时为演出）都有足够的库存
+     * @return 中签的报名（保持报名顺序）
+     */
+    private List<BallotEntry> allocate(Show show, List<BallotEntry> entries) {
+        Map<Long, Integer> tierLeft = new HashMap<>();
+        for (ShowTier tier : showTierService.getTiersWithStock(show.getId())) {
+            tierLeft.put(tier.getId(), tier.getAvailableTickets());
+        }
+        Map<Long, Integer> sessionLeft = new HashMap<>();
+        for (ShowSession session : showSessionService.getSessionsWithStock(show.getId())) {
+            sessionLeft.put(session.getId(), session.getAvailableTickets());
+        }
+        int showLeft = show.getAvailableTickets() != null ? show.getAvailableTickets() : 0;
+
+        List<BallotEntry> winners = new ArrayList<>();
+        for (BallotEntry entry : entries) {
+            int quantity = entry.getQuantity();
+            int tierAvailable = entry.getTierId() != null ? tierLeft.getOrDefault(entry.getTierId(), 0) : Integer.MAX_VALUE;
+            int poolAvailable = entry.getSessionId() != null ? sessionLeft.getOrDefault(entry.getSessionId(), 0) : showLeft;
+            if (quantity > tierAvailable || quantity > poolAvailable) {
+                continue; // 剩余库存不够，未中签
+            }
+            if (entry.getTierId() != null) {
+                tierLeft.put(entry.getTierId(), tierAvailable - quantity);
+            }
+            if (entry.getSessionId() != null) {
+                sessionLeft.put(entry.getSessionId(), poolAvailable - quantity);
+            } else {
+                showLeft -= quantity;
+            }
+            winners.add(entry);
+        }
+        return winners;
+    }
+
+    /**
+     * 给中签用户发送邮件（订单已提交，发送失败不影响抽签结果）
+     */
+    private void notifyWinners(Show show, List<Order> orders) {
+        for (Order order : orders) {
+            try {
+                User user = userMapper.selectById(order.getUserId());
+                if (user != null && user.getEmail() != null && !user.getEmail().isEmpty()) {
+                    emailService.sendBallotWinEmail(user.getEmail(), order.getOutTradeNo(), show.getName(),
+                            order.getTotalPrice(), order.getOrderTime().plusMinutes(payTimeoutMinutes));
+                }
+            } catch (Exception e) {
+                System.err.println("发送中签通知失败，订单ID: " + order.getId() + "，原因: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -13,5 +13,16 @@ public interface EmailService {
      * @param totalPrice 订单总金额
      */
     void sendPaymentSuccessEmail(String to, String orderNo, String showName, java.math.BigDecimal totalPrice);
+
+    /**
+     * 发送抽签中签通知邮件
+     * @param to 收件人邮箱
+     * @param orderNo 订单号
+     * @param showName 演出名称
+     * @param totalPrice 订单总金额
+     * @param payDeadline 支付截止时间
+     */
+    void sendBallotWinEmail(String to, String orderNo, String showName, java.math.BigDecimal totalPrice,
+                            java.time.LocalDateTime payDeadline);
 }
 
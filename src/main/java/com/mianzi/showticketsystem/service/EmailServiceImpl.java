@@ -7,6 +7,8 @@ import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 /**
  * 邮件服务实现类
@@ -50,5 +52,36 @@ public class EmailServiceImpl implements EmailService {
             System.err.println("发送邮件失败: " + e.getMessage());
         }
     }
+
+    /**
+     * 实现发送抽签中签通知邮件的逻辑
+     */
+    @Override
+    public void sendBallotWinEmail(String to, String orderNo, String showName, BigDecimal totalPrice,
+                                   LocalDateTime payDeadline) {
+        if (mailSender == null || fromEmail == null || fromEmail.isEmpty()) {
+            System.out.println("邮件服务未配置，跳过发送邮件到: " + to);
+            return;
+        }
+
+        try {
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setFrom(fromEmail);
+            message.setTo(to);
+            message.setSubject("抽签中签通知 - " + showName);
+            message.setText(String.format(
+                    "恭喜您！抽签中签！\n\n" +
+                            "订单号：%s\n" +
+                            "演出名称：%s\n" +
+                            "订单金额：%s 元\n" +
+                            "请在 %s 之前完成支付，逾期订单将自动关闭。\n\n" +
+                            "感谢您的使用！",
+                    orderNo, showName, totalPrice, payDeadline.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))
+            ));
+            mailSender.send(message);
+        } catch (Exception e) {
+            System.err.println("发送邮件失败: " + e.getMessage());
+        }
+    }
 }
 
@@ -0,0 +1,40 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.entity.Show;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 首页演出快照业务逻辑接口
+ * 为每个 (地区, 分类) 以及每个地区的全部分类预先计算即将开始的前 N 个演出（不可修改的列表），
+ * 首页请求直接从快照中取，不查询数据库；发布、修改、删除演出时只重新计算受影响的快照
+ */
+public interface HomeSnapshotService {
+
+    /**
+     * 从快照中查询首页演出
+     * @param region 地区
+     * @param category 分类（为空表示全部分类）
+     * @param limit 数量
+     * @return 演出列表（不可修改）；快照还没有建立或 limit 超过快照大小时返回 null，由调用方查询数据库
+     */
+    List<Show> getHomeShows(String region, String category, int limit);
+
+    /**
+     * 演出发生变化后重新计算受影响的快照（修改前和修改后所在的地区、分类）
+     * @param before 修改前的演出（发布时为 null）
+     * @param after 修改后的演出（删除时为 null）
+     */
+    void refresh(Show before, Show after);
+
+    /**
+     * 重新计算所有快照（定时调用，去掉已经开始的演出并更新展示的可用票数）
+     */
+    void rebuildAll();
+
+    /**
+     * 查询快照统计（快照数量、命中和未命中次数、重建次数）
+     */
+    Map<String, Object> getMetrics();
+}
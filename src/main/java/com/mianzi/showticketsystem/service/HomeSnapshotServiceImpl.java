@@ -0,0 +1,186 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.ShowMapper;
+import com.mianzi.showticketsystem.model.entity.Show;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HomeSnapshotService 接口的实现类
+ * 快照保存在 ConcurrentHashMap 中，key 为 "地区|分类"（全部分类为 "地区|*"），value 为不可修改的演出列表，
+ * 重新计算时整体替换 value，读取时不加锁，也不会读到计算了一半的列表。
+ * 写操作（单个快照重算、全量重建）互斥执行，避免全量重建用较早查询到的数据覆盖刚重算的快照
+ */
+@Service
+public class HomeSnapshotServiceImpl implements HomeSnapshotService {
+
+    private static final String ALL_CATEGORIES = "*";
+
+    @Autowired
+    private ShowMapper showMapper;
+
+    // 是否开启首页快照
+    @Value("${home.snapshot.enabled:true}")
+    private boolean enabled;
+
+    // 每个快照保存的演出数（首页请求的数量超过时查询数据库）
+    @Value("${home.snapshot.size:50}")
+    private int snapshotSize;
+
+    // 所有快照：地区|分类 -> 即将开始的前 N 个演出（全量重建时整体替换）
+    private volatile ConcurrentHashMap<String, List<Show>> snapshots;
+
+    private final Object writeLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder fullRebuilds = new LongAdder();
+    private final LongAdder partialRebuilds = new LongAdder();
+    private volatile LocalDateTime lastRebuildTime;
+
+    @Override
+    public List<Show> getHomeShows(String region, String category, int limit) {
+        Map<String, List<Show>> current = snapshots;
+        if (!enabled || current == null || limit > snapshotSize) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        List<Show> shows = current.get(key(region, category));
+        if (shows == null) {
+            return List.of();
+        }
+        return shows.size() > limit ? shows.subList(0, limit) : shows;
+    }
+
+    @Override
+    public void refresh(Show before, Show after) {
+        if (!enabled || snapshots == null) {
+            return;
+        }
+        // 受影响的快照：修改前后所在的 (地区, 分类) 和地区的全部分类，key -> {地区, 分类}
+        Map<String, String[]> affected = new LinkedHashMap<>();
+        for (Show show : new Show[]{before, after}) {
+            if (show != null && show.getRegion() != null && !show.getRegion().isEmpty()) {
+                affected.put(key(show.getRegion(), show.getCategory()), new String[]{show.getRegion(), show.getCategory()});
+                affected.put(key(show.getRegion(), null), new String[]{show.getRegion(), null});
+            }
+        }
+        if (affected.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            ConcurrentHashMap<String, List<Show>> current = snapshots;
+            if (current == null) {
+                return;
+            }
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                for (Map.Entry<String, String[]> entry : affected.entrySet()) {
+                    String[] condition = entry.getValue();
+                    List<Show> shows = loadSnapshot(condition[0], condition[1], now);
+                    if (shows.isEmpty()) {
+                        current.remove(entry.getKey());
+                    } else {
+                        current.put(entry.getKey(), shows);
+                    }
+                }
+                partialRebuilds.increment();
+            } catch (Exception e) {
+                // 重算失败时丢弃全部快照，首页改为查询数据库，下一次定时重建后恢复
+                snapshots = null;
+                System.err.println("首页快照重算失败，暂时改为查询数据库: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 启动后立即建立快照
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildAll();
+    }
+
+    /**
+     * 定时全量重建（默认每30秒一次）：先查询有即将开始的演出的地区和分类组合，
+     * 再为每个快照单独查询前 N 个演出（LIMIT N），不把所有即将开始的演出读入内存
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${home.snapshot.rebuild-interval-ms:30000}")
+    public void rebuildAll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            synchronized (writeLock) {
+                LocalDateTime now = LocalDateTime.now();
+                ConcurrentHashMap<String, List<Show>> rebuilt = new ConcurrentHashMap<>();
+                Set<String> regions = new LinkedHashSet<>();
+                for (Show pair : showMapper.findUpcomingRegionCategories(now)) {
+                    regions.add(pair.getRegion());
+                    if (pair.getCategory() != null && !pair.getCategory().isEmpty()) {
+                        putSnapshot(rebuilt, pair.getRegion(), pair.getCategory(), now);
+                    }
+                }
+                for (String region : regions) {
+                    putSnapshot(rebuilt, region, null, now);
+                }
+                snapshots = rebuilt;
+                fullRebuilds.increment();
+                lastRebuildTime = LocalDateTime.now();
+            }
+        } catch (Exception e) {
+            // 数据库暂时不可用时保留现有快照，下一次定时重建再试
+            System.err.println("首页快照重建失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, List<Show>> current = snapshots;
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("ready", current != null);
+        metrics.put("snapshotCount", current != null ? current.size() : 0);
+        metrics.put("snapshotSize", snapshotSize);
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("fullRebuilds", fullRebuilds.sum());
+        metrics.put("partialRebuilds", partialRebuilds.sum());
+        metrics.put("lastRebuildTime", lastRebuildTime);
+        return metrics;
+    }
+
+    /**
+     * 查询一个快照：地区（和分类）下即将开始的前 N 个演出
+     */
+    private List<Show> loadSnapshot(String region, String category, LocalDateTime now) {
+        return List.copyOf(showMapper.findByRegionAndCategory(region, category, now, null, snapshotSize));
+    }
+
+    private void putSnapshot(Map<String, List<Show>> target, String region, String category, LocalDateTime now) {
+        List<Show> shows = loadSnapshot(region, category, now);
+        if (!shows.isEmpty()) {
+            target.put(key(region, category), shows);
+        }
+    }
+
+    private static String key(String region, String category) {
+        return region + "|" + (category == null || category.isEmpty() ? ALL_CATEGORIES : category);
+    }
+}
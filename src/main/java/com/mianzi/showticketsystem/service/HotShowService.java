@@ -0,0 +1,48 @@
+package com.mianzi.showticketsystem.service;
+
+import java.util.Map;
+
+/**
+ * 热门演出识别业务逻辑接口
+ * 绝大多数演出每小时只卖出几张票，只有少数演出会遇到抢票流量。
+ * 用 Count-Min Sketch 统计每个时间窗口内各演出的下单和详情访问次数，超过阈值的演出自动提升为热门演出，
+ * 库存走内存账本（演出详情由 ShowService 的缓存提供）；连续几个窗口访问量都低于阈值后自动降级
+ */
+public interface HotShowService {
+
+    /**
+     * 记录一次演出访问（下单、查询详情时调用）
+     * @param showId 演出ID
+     */
+    void record(Long showId);
+
+    /**
+     * 演出当前是否为热门演出
+     * @param showId 演出ID
+     */
+    boolean isHot(Long showId);
+
+    /**
+     * 手动提升为热门演出（手动提升的演出不会因为访问量下降被自动降级）
+     * @param showId 演出ID
+     * @return 提升成功返回 true；已经是热门演出、热门演出数量已达上限或演出不存在时返回 false
+     */
+    boolean promote(Long showId);
+
+    /**
+     * 降级为普通演出
+     * @param showId 演出ID
+     * @return 降级成功返回 true；不是热门演出时返回 false
+     */
+    boolean demote(Long showId);
+
+    /**
+     * 结束当前统计窗口，并根据窗口内的访问次数降级已经冷却的热门演出（定时调用）
+     */
+    void rotateWindow();
+
+    /**
+     * 查询热门演出统计（当前热门演出列表、累计提升和降级次数）
+     */
+    Map<String, Object> getMetrics();
+}
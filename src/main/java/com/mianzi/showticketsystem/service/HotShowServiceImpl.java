@@ -0,0 +1,252 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.ShowMapper;
+import com.mianzi.showticketsystem.util.CountMinSketch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HotShowService 接口的实现类
+ * 每个统计窗口（默认10秒）一个 Count-Min Sketch，记录访问时顺便得到演出在当前窗口的估计次数，
+ * 达到提升阈值立即提升，不需要等窗口结束；窗口结束时用刚结束窗口的计数判断热门演出是否已经冷却。
+ * Count-Min Sketch 的估计值只会偏大，冷门演出最多因为哈希冲突被多统计少量次数，不会漏掉真正的热门演出。
+ * 自动提升在后台线程中进行：提升库存时要等待数据库行锁，而访问记录在下单线程（下单事务中）调用
+ */
+@Service
+public class HotShowServiceImpl implements HotShowService {
+
+    // Count-Min Sketch 的行数和每行计数器个数
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 4096;
+
+    @Autowired
+    private ShowMapper showMapper;
+
+    @Autowired
+    private StockService stockService;
+
+    // 是否开启热门演出识别
+    @Value("${hot-show.enabled:false}")
+    private boolean enabled;
+
+    // 一个窗口内访问次数达到多少时提升为热门演出
+    @Value("${hot-show.promote-threshold:300}")
+    private long promoteThreshold;
+
+    // 一个窗口内访问次数低于多少时视为冷却
+    @Value("${hot-show.demote-threshold:30}")
+    private long demoteThreshold;
+
+    // 连续冷却多少个窗口后降级
+    @Value("${hot-show.demote-after-windows:6}")
+    private int demoteAfterWindows;
+
+    // 热门演出数量上限
+    @Value("${hot-show.max-hot-shows:50}")
+    private int maxHotShows;
+
+    // 当前窗口的计数
+    private volatile CountMinSketch window = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+
+    // 热门演出：showId -> 热门演出状态
+    private final Map<Long, HotShow> hotShows = new ConcurrentHashMap<>();
+
+    private final AtomicLong promotions = new AtomicLong();
+    private final AtomicLong demotions = new AtomicLong();
+
+    // 执行自动提升的后台线程
+    private ExecutorService promoteExecutor;
+
+    /**
+     * 热门演出状态
+     */
+    private static class HotShow {
+        final LocalDateTime promotedAt = LocalDateTime.now();
+        final boolean manual;
+        volatile boolean memoryStock;      // 库存是否已提升到内存账本
+        volatile long lastWindowCount = -1; // 最近一个完整窗口的访问次数
+        int coolWindows;                    // 连续冷却的窗口数（只在窗口切换时访问）
+
+        HotShow(boolean manual) {
+            this.manual = manual;
+        }
+    }
+
+    /**
+     * 创建执行自动提升的后台线程
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        promoteExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxHotShows)), runnable -> {
+            Thread thread = new Thread(runnable, "hot-show-promote");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 应用关闭时停止后台线程
+     */
+    @PreDestroy
+    public void stop() {
+        if (promoteExecutor != null) {
+            promoteExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void record(Long showId) {
+        if (!enabled || showId == null) {
+            return;
+        }
+        long count = window.add(showId);
+        if (count >= promoteThreshold && !hotShows.containsKey(showId)) {
+            HotShow hotShow = register(showId, false);
+            if (hotShow == null) {
+                return;
+            }
+            try {
+                promoteExecutor.execute(() -> promoteStock(showId, hotShow));
+            } catch (RejectedExecutionException e) {
+                hotShows.remove(showId, hotShow);
+            }
+        }
+    }
+
+    @Override
+    public boolean isHot(Long showId) {
+        return showId != null && hotShows.containsKey(showId);
+    }
+
+    @Override
+    public boolean promote(Long showId) {
+        return promote(showId, true);
+    }
+
+    @Override
+    public boolean demote(Long showId) {
+        HotShow hotShow = hotShows.remove(showId);
+        if (hotShow == null) {
+            return false;
+        }
+        if (hotShow.memoryStock) {
+            stockService.demote(showId);
+        }
+        demotions.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 定时切换统计窗口（默认每10秒一次）
+     */
+    @Override
+    @Scheduled(fixedRateString = "${hot-show.window-ms:10000}")
+    public void rotateWindow() {
+        if (!enabled) {
+            return;
+        }
+        CountMinSketch finished = window;
+        window = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        for (Map.Entry<Long, HotShow> entry : hotShows.entrySet()) {
+            HotShow hotShow = entry.getValue();
+            long count = finished.estimate(entry.getKey());
+            hotShow.lastWindowCount = count;
+            if (hotShow.manual || count >= demoteThreshold) {
+                hotShow.coolWindows = 0;
+            } else if (++hotShow.coolWindows >= demoteAfterWindows) {
+                demote(entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        List<Map<String, Object>> shows = new ArrayList<>();
+        for (Map.Entry<Long, HotShow> entry : hotShows.entrySet()) {
+            HotShow hotShow = entry.getValue();
+            Map<String, Object> item = new HashMap<>();
+            item.put("showId", entry.getKey());
+            item.put("promotedAt", hotShow.promotedAt);
+            item.put("manual", hotShow.manual);
+            item.put("memoryStock", hotShow.memoryStock);
+            item.put("lastWindowCount", hotShow.lastWindowCount);
+            shows.add(item);
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("hotShowCount", hotShows.size());
+        metrics.put("promotions", promotions.get());
+        metrics.put("demotions", demotions.get());
+        metrics.put("hotShows", shows);
+        return metrics;
+    }
+
+    /**
+     * 手动提升为热门演出（在管理员请求的线程中直接执行）
+     */
+    private boolean promote(Long showId, boolean manual) {
+        HotShow hotShow = register(showId, manual);
+        return hotShow != null && promoteStock(showId, hotShow);
+    }
+
+    /**
+     * 登记热门演出
+     * @return 热门演出状态；已经是热门演出或数量达到上限时返回 null
+     */
+    private HotShow register(Long showId, boolean manual) {
+        if (hotShows.size() >= maxHotShows) {
+            return null;
+        }
+        HotShow hotShow = new HotShow(manual);
+        return hotShows.putIfAbsent(showId, hotShow) == null ? hotShow : null;
+    }
+
+    /**
+     * 确认演出存在后把库存提升到内存账本
+     */
+    private boolean promoteStock(Long showId, HotShow hotShow) {
+        try {
+            if (showMapper.getById(showId) == null) {
+                hotShows.remove(showId, hotShow);
+                return false;
+            }
+            // 全局 memory 模式下库存本来就在内存中，promote 返回 false
+            hotShow.memoryStock = stockService.promote(showId);
+            if (hotShows.get(showId) != hotShow) {
+                // 提升期间已被降级，撤销库存提升
+                if (hotShow.memoryStock) {
+                    stockService.demote(showId);
+                }
+                return false;
+            }
+        } catch (Exception e) {
+            hotShows.remove(showId, hotShow);
+            System.err.println("提升热门演出失败, showId=" + showId + ": " + e.getMessage());
+            return false;
+        }
+        promotions.incrementAndGet();
+        System.out.println("演出已提升为热门演出, showId=" + showId + (hotShow.manual ? "（手动）" : ""));
+        return true;
+    }
+}
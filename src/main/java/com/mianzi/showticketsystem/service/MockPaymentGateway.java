@@ -0,0 +1,42 @@
+package com.mianzi.showticketsystem.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地模拟支付渠道（默认实现，用于开发和测试）
+ * 只有通过 markPaid 登记过的商户订单号会被查询为支付成功，其余订单视为交易不存在
+ */
+@Service
+@ConditionalOnProperty(name = "payment.gateway", havingValue = "mock", matchIfMissing = true)
+public class MockPaymentGateway implements PaymentGateway {
+
+    // 已支付的交易：商户订单号 -> 支付宝交易号
+    private final Map<String, String> paidTrades = new ConcurrentHashMap<>();
+
+    @Override
+    public Map<String, String> queryTrade(String outTradeNo) {
+        String tradeNo = outTradeNo == null ? null : paidTrades.get(outTradeNo);
+        if (tradeNo == null) {
+            return null;
+        }
+        Map<String, String> result = new HashMap<>();
+        result.put("out_trade_no", outTradeNo);
+        result.put("trade_no", tradeNo);
+        result.put("trade_status", "TRADE_SUCCESS");
+        return result;
+    }
+
+    /**
+     * 登记一笔已支付的交易（模拟用户已付款但支付回调丢失）
+     * @param outTradeNo 商户订单号
+     * @param tradeNo 支付宝交易号
+     */
+    public void markPaid(String outTradeNo, String tradeNo) {
+        paidTrades.put(outTradeNo, tradeNo);
+    }
+}
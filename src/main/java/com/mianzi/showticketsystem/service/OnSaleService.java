@@ -0,0 +1,36 @@
+package com.mianzi.showticketsystem.service;
+
+import java.util.Map;
+
+/**
+ * 定时开售业务逻辑接口
+ * 设置了开售时间（saleStartTime）的演出由定时任务在开售时间准点开票；
+ * 开售前一段时间先预热下单路径会用到的缓存、内存库存、数据库连接池，并演练下单让 JIT 提前编译下单代码，
+ * 开售第一秒的请求不再承担冷启动的开销
+ */
+public interface OnSaleService {
+
+    /**
+     * 扫描即将开售的演出：为每个演出预热，并安排在开售时间准点开票（定时调用）
+     */
+    void scheduleUpcomingSales();
+
+    /**
+     * 预热一个演出的下单路径
+     * @param showId 演出ID
+     * @return 预热成功返回 true，演出不存在或已下架返回 false
+     */
+    boolean prewarm(Long showId);
+
+    /**
+     * 开票：把演出的 is_on_sale 改为 1
+     * @param showId 演出ID
+     * @return 本次调用开票成功返回 true；演出已经开票（例如被其他实例开票）或不存在时返回 false
+     */
+    boolean openSale(Long showId);
+
+    /**
+     * 查询定时开售统计（等待开售的演出、累计预热和开票次数、最近一次开票的延迟）
+     */
+    Map<String, Object> getMetrics();
+}
@@ -0,0 +1,287 @@
+package com.mianzi.showticketsystem.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mianzi.showticketsystem.mapper.ShowMapper;
+import com.mianzi.showticketsystem.model.entity.Order;
+import com.mianzi.showticketsystem.model.entity.Show;
+import com.mianzi.showticketsystem.model.entity.ShowSession;
+import com.mianzi.showticketsystem.model.entity.ShowTier;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OnSaleService 接口的实现类
+ * 定时任务每隔几秒扫描一次开售时间在预热提前量之内、还没有开票的演出，
+ * 为每个演出在预热线程上执行一次预热，并在单独的调度线程上安排开售时间准点开票（不依赖扫描间隔），
+ * 预热（演练下单可能持续数秒）不会推迟开票。
+ * 开票用条件 UPDATE（is_on_sale = 0 时才更新），多个实例同时开票时只有一个实例成功；
+ * 下单时也会比较开售时间，开票任务稍有延迟不会推迟实际开售
+ */
+@Service
+public class OnSaleServiceImpl implements OnSaleService {
+
+    @Autowired
+    private ShowMapper showMapper;
+
+    @Autowired
+    private ShowService showService;
+
+    @Autowired
+    private ShowTierService showTierService;
+
+    @Autowired
+    private ShowSessionService showSessionService;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    // 开售前多久开始预热（毫秒）
+    @Value("${on-sale.prewarm-lead-ms:60000}")
+    private long prewarmLeadMs;
+
+    // 预热时演练下单的次数（超过 JIT 的编译阈值，下单代码在开售前就被编译成本地代码）
+    @Value("${on-sale.warm-up-iterations:20000}")
+    private int warmUpIterations;
+
+    // 预热时同时借出的数据库连接数（0 表示使用连接池的 minimumIdle），最多借出连接池的一半
+    @Value("${on-sale.prewarm-connections:0}")
+    private int prewarmConnections;
+
+    // 执行开票任务的调度线程
+    private ScheduledExecutorService scheduler;
+
+    // 执行预热的线程
+    private ExecutorService prewarmExecutor;
+
+    // 已安排开票的演出：showId -> 开票任务
+    private final Map<Long, ScheduledSale> scheduledSales = new ConcurrentHashMap<>();
+
+    private final AtomicLong prewarmCount = new AtomicLong();
+    private final AtomicLong openCount = new AtomicLong();
+    private volatile long lastOpenDelayMillis = -1; // 最近一次开票比开售时间晚了多少毫秒
+
+    /**
+     * 已安排的开票任务
+     */
+    private static class ScheduledSale {
+        final LocalDateTime saleStartTime;
+        final ScheduledFuture<?> future;
+
+        ScheduledSale(LocalDateTime saleStartTime, ScheduledFuture<?> future) {
+            this.saleStartTime = saleStartTime;
+            this.future = future;
+        }
+    }
+
+    /**
+     * 创建执行开票任务的调度线程和执行预热的线程
+     */
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "on-sale-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prewarmExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "on-sale-prewarm");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 应用关闭时停止调度线程和预热线程
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        prewarmExecutor.shutdownNow();
+    }
+
+    /**
+     * 定时扫描即将开售的演出（默认每5秒一次）
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${on-sale.scan-interval-ms:5000}")
+    public void scheduleUpcomingSales() {
+        List<Long> showIds;
+        try {
+            showIds = showMapper.findShowsToOpen(LocalDateTime.now().plus(Duration.ofMillis(prewarmLeadMs)));
+        } catch (Exception e) {
+            System.err.println("扫描即将开售的演出失败: " + e.getMessage());
+            return;
+        }
+        for (Long showId : showIds) {
+            Show show = showMapper.getByIdForAdmin(showId);
+            if (show == null || show.getSaleStartTime() == null) {
+                continue;
+            }
+            ScheduledSale existing = scheduledSales.get(showId);
+            if (existing != null && existing.saleStartTime.equals(show.getSaleStartTime())) {
+                continue; // 已经安排过，开售时间也没有修改
+            }
+            if (existing != null) {
+                existing.future.cancel(false);
+            } else {
+                // 第一次扫描到这个演出时预热（在预热线程上执行，不阻塞扫描，也不占用开票的调度线程）
+                prewarmExecutor.execute(() -> prewarm(showId));
+            }
+            long delayMillis = Math.max(Duration.between(LocalDateTime.now(), show.getSaleStartTime()).toMillis(), 0);
+            ScheduledFuture<?> future = scheduler.schedule(() -> fireSale(showId, show.getSaleStartTime()),
+                    delayMillis, TimeUnit.MILLISECONDS);
+            scheduledSales.put(showId, new ScheduledSale(show.getSaleStartTime(), future));
+        }
+    }
+
+    @Override
+    public boolean prewarm(Long showId) {
+        try {
+            Show show = showService.getShowById(showId);
+            if (show == null) {
+                return false;
+            }
+            // 1. 缓存：票档、场次、座位图，内存库存账本和分桶数量
+            List<ShowTier> tiers = showTierService.getTiers(showId);
+            List<ShowSession> sessions = showSessionService.getSessions(showId);
+            seatService.hasSeatMap(showId);
+            stockService.prewarm(showId);
+
+            // 2. 数据库连接池：同时借出一批连接，让连接池提前建立连接，开售时不需要临时建立连接
+            warmConnectionPool();
+
+            // 3. 演练下单：反复执行下单的校验、定价、构建订单和 JSON 序列化，让 JIT 提前编译这些代码
+            List<Long> tierIds = new ArrayList<>();
+            for (ShowTier tier : tiers) {
+                tierIds.add(tier.getId());
+            }
+            if (tierIds.isEmpty()) {
+                tierIds.add(null);
+            }
+            List<Long> sessionIds = new ArrayList<>();
+            for (ShowSession session : sessions) {
+                sessionIds.add(session.getId());
+            }
+            if (sessionIds.isEmpty()) {
+                sessionIds.add(null);
+            }
+            for (int i = 0; i < warmUpIterations; i++) {
+                Order order = orderService.dryRunOrder(showId, sessionIds.get(i % sessionIds.size()),
+                        tierIds.get(i % tierIds.size()), 1);
+                if (order != null) {
+                    objectMapper.writeValueAsString(order);
+                }
+            }
+            prewarmCount.incrementAndGet();
+            return true;
+        } catch (Exception e) {
+            System.err.println("演出开售前预热失败, showId=" + showId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean openSale(Long showId) {
+        boolean opened = showMapper.openSale(showId) == 1;
+        if (opened) {
+            showService.invalidateCache(showId);
+            // 开票改变了 is_on_sale，只能清掉旧缓存，这里立刻重新加载，开售第一批请求不需要再查数据库
+            showService.getShowById(showId);
+            openCount.incrementAndGet();
+        }
+        return opened;
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("scheduledShows", scheduledSales.size());
+        metrics.put("prewarmCount", prewarmCount.get());
+        metrics.put("openCount", openCount.get());
+        metrics.put("lastOpenDelayMillis", lastOpenDelayMillis);
+        return metrics;
+    }
+
+    /**
+     * 到达开售时间时开票；开售时间在安排之后被推迟的演出不开票，由下一次扫描重新安排
+     */
+    private void fireSale(Long showId, LocalDateTime saleStartTime) {
+        scheduledSales.remove(showId);
+        try {
+            Show show = showMapper.getByIdForAdmin(showId);
+            if (show == null || show.getSaleStartTime() == null || show.getSaleStartTime().isAfter(LocalDateTime.now())) {
+                return;
+            }
+            if (openSale(showId)) {
+                lastOpenDelayMillis = Math.max(Duration.between(saleStartTime, LocalDateTime.now()).toMillis(), 0);
+            }
+        } catch (Exception e) {
+            System.err.println("演出开票失败, showId=" + showId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 同时借出一批连接并立即归还，让连接池提前建立好开售时需要的连接。
+     * 最多借出连接池最大连接数的一半（再减去正在使用的连接），预热期间正常请求仍然能拿到连接
+     */
+    private void warmConnectionPool() throws Exception {
+        int count = prewarmConnections;
+        if (dataSource instanceof HikariDataSource) {
+            HikariDataSource hikari = (HikariDataSource) dataSource;
+            if (count <= 0) {
+                count = hikari.getMinimumIdle();
+            }
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            int active = pool != null ? pool.getActiveConnections() : 0;
+            count = Math.min(count, hikari.getMaximumPoolSize() / 2 - active);
+        } else if (count <= 0) {
+            count = 5;
+        }
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                connection.isValid(1);
+            }
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.entity.Order;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 组提交下单业务逻辑接口
+ * 把短时间窗口内并发到达的下单请求收集成一批，通过 OrderService.createOrders 一次性写入，
+ * 多个订单共享一次事务提交（一次 fsync），再把各自的结果分别交还给调用方
+ */
+public interface OrderBatchService {
+
+    /**
+     * 提交下单请求，等待所在批次处理完成
+     * @param userId 购票用户ID
+     * @param showId 演出ID
+     * @param sessionId 场次ID（无场次的演出为 null）
+     * @param tierId 票档ID（无票档的演出为 null）
+     * @param quantity 购买数量
+     * @param idempotencyKey 幂等键（可选，为 null 时不做幂等处理）
+     * @return 下单结果，成功时为订单对象，失败时为 null
+     */
+    CompletableFuture<Order> submit(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity, String idempotencyKey);
+
+    /**
+     * 是否开启了组提交下单
+     * @return 开启返回 true
+     */
+    boolean isEnabled();
+}
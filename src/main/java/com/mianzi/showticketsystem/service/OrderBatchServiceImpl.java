@@ -0,0 +1,172 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.dto.OrderRequest;
+import com.mianzi.showticketsystem.model.entity.Order;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OrderBatchService 接口的实现类
+ * 刷新线程取到第一个请求后，最多再等待 window-ms 毫秒或凑满 max-size 个请求，然后整批提交
+ */
+@Service
+public class OrderBatchServiceImpl implements OrderBatchService {
+
+    @Autowired
+    private OrderService orderService;
+
+    // 是否开启组提交下单
+    @Value("${order.batch.enabled:false}")
+    private boolean enabled;
+
+    // 收集窗口（毫秒）
+    @Value("${order.batch.window-ms:3}")
+    private long windowMs;
+
+    // 每批最多包含的订单数
+    @Value("${order.batch.max-size:100}")
+    private int maxSize;
+
+    // 刷新线程数量（同时进行的批量事务数）
+    @Value("${order.batch.flushers:2}")
+    private int flusherCount;
+
+    // 等待组提交的下单请求
+    private final BlockingQueue<PendingOrder> queue = new LinkedBlockingQueue<>();
+
+    private ExecutorService flushers;
+
+    /**
+     * 等待组提交的下单请求
+     */
+    private static class PendingOrder {
+        final OrderRequest request;
+        final CompletableFuture<Order> future = new CompletableFuture<>();
+
+        PendingOrder(OrderRequest request) {
+            this.request = request;
+        }
+    }
+
+    /**
+     * 启动刷新线程
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadNo = new AtomicInteger();
+        flushers = Executors.newFixedThreadPool(flusherCount, runnable -> {
+            Thread thread = new Thread(runnable, "order-batch-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < flusherCount; i++) {
+            flushers.submit(this::flushLoop);
+        }
+    }
+
+    /**
+     * 应用关闭时停止刷新线程
+     */
+    @PreDestroy
+    public void stop() {
+        if (flushers != null) {
+            flushers.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交下单请求
+     */
+    @Override
+    public CompletableFuture<Order> submit(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity, String idempotencyKey) {
+        PendingOrder pending = new PendingOrder(new OrderRequest(userId, showId, sessionId, tierId, quantity, idempotencyKey));
+        if (!enabled) {
+            // 未开启组提交时直接同步下单
+            pending.future.complete(orderService.createOrder(userId, showId, sessionId, tierId, quantity, idempotencyKey));
+            return pending.future;
+        }
+        queue.offer(pending);
+        return pending.future;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 刷新线程主循环：收集一批请求并提交
+     */
+    private void flushLoop() {
+        List<PendingOrder> batch = new ArrayList<>(maxSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // 阻塞等待第一个请求，然后在窗口期内继续收集
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 整批提交，并把结果分别交还给每个调用方
+     */
+    private void flush(List<PendingOrder> batch) {
+        List<OrderRequest> requests = new ArrayList<>(batch.size());
+        for (PendingOrder pending : batch) {
+            requests.add(pending.request);
+        }
+        try {
+            List<Order> orders = orderService.createOrders(requests);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(orders.get(i));
+            }
+        } catch (Exception e) {
+            // 整批事务失败（例如某个订单插入冲突）：逐个重试，避免一个请求拖累整批
+            System.err.println("批量下单失败，改为逐个下单: " + e.getMessage());
+            for (PendingOrder pending : batch) {
+                try {
+                    OrderRequest request = pending.request;
+                    pending.future.complete(orderService.createOrder(request.getUserId(), request.getShowId(),
+                            request.getSessionId(), request.getTierId(), request.getQuantity(), request.getIdempotencyKey()));
+                } catch (Exception ex) {
+                    pending.future.completeExceptionally(ex);
+                }
+            }
+        }
+    }
+}
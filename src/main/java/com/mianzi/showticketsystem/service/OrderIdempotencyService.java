@@ -0,0 +1,25 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.entity.Order;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 下单幂等业务逻辑接口
+ * 用户重复点击"购买"或超时重试时，同一用户同一幂等键（Idempotency-Key 请求头）只执行一次下单：
+ * 正在执行的重复请求等待第一次执行的结果，已经完成的重复请求直接拿到第一次创建的订单
+ */
+public interface OrderIdempotencyService {
+
+    /**
+     * 带幂等键下单
+     * @param userId 购票用户ID
+     * @param showId 演出ID
+     * @param sessionId 场次ID（无场次的演出为 null）
+     * @param tierId 票档ID（无票档的演出为 null）
+     * @param quantity 购买数量
+     * @param idempotencyKey 幂等键，为 null 时直接下单
+     * @return 下单结果，成功时为订单对象（重复请求返回第一次创建的订单），失败时为 null
+     */
+    CompletableFuture<Order> createOrder(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity, String idempotencyKey);
+}
@@ -0,0 +1,127 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.OrderMapper;
+import com.mianzi.showticketsystem.model.entity.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OrderIdempotencyService 接口的实现类
+ * 本实例内用一个有上限、会过期的去重表（userId:幂等键 -> 下单结果的 future）合并重复请求；
+ * 多实例部署时，重复请求可能落到不同实例上，由订单表的唯一索引 (user_id, idempotency_key) 保证只创建一个订单，
+ * 插入冲突的一方回查数据库返回已有订单
+ */
+@Service
+public class OrderIdempotencyServiceImpl implements OrderIdempotencyService {
+
+    @Autowired
+    private OrderBatchService orderBatchService;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    // 去重记录的保留时间（毫秒）
+    @Value("${order.idempotency.ttl-ms:600000}")
+    private long ttlMs;
+
+    // 去重表最多保存的记录数
+    @Value("${order.idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    // 去重表：userId:幂等键 -> 去重记录
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 去重记录
+     */
+    private static class Entry {
+        final CompletableFuture<Order> future = new CompletableFuture<>();
+        final long expireAt;
+
+        Entry(long expireAt) {
+            this.expireAt = expireAt;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Order> createOrder(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return orderBatchService.submit(userId, showId, sessionId, tierId, quantity, null);
+        }
+        String cacheKey = userId + ":" + idempotencyKey;
+        long now = System.currentTimeMillis();
+
+        if (entries.size() >= maxEntries) {
+            evictExpiredEntries();
+            if (entries.size() >= maxEntries) {
+                // 去重表已满时不再记录，仍由数据库唯一索引保证不会重复下单
+                return execute(userId, showId, sessionId, tierId, quantity, idempotencyKey);
+            }
+        }
+
+        Entry created = new Entry(now + ttlMs);
+        while (true) {
+            Entry existing = entries.putIfAbsent(cacheKey, created);
+            if (existing == null) {
+                break; // 第一次请求，由当前线程执行下单
+            }
+            if (existing.expireAt > now) {
+                return existing.future; // 重复请求：等待（或直接拿到）第一次的结果
+            }
+            if (entries.replace(cacheKey, existing, created)) {
+                break; // 旧记录已过期，按新请求处理
+            }
+        }
+
+        execute(userId, showId, sessionId, tierId, quantity, idempotencyKey).whenComplete((order, ex) -> {
+            if (order == null) {
+                // 下单失败（库存不足、系统繁忙等）不保留记录，允许用户用同一幂等键重试
+                entries.remove(cacheKey, created);
+            }
+            if (ex != null) {
+                created.future.completeExceptionally(ex);
+            } else {
+                created.future.complete(order);
+            }
+        });
+        return created.future;
+    }
+
+    /**
+     * 定时清理过期的去重记录（每分钟一次）
+     */
+    @Scheduled(fixedRate = 60000)
+    public void evictExpiredEntries() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expireAt <= now && entry.future.isDone());
+    }
+
+    /**
+     * 执行下单；插入时与其他实例上的同一幂等键冲突（或批量事务失败）导致没有订单时，回查数据库中已有的订单
+     */
+    private CompletableFuture<Order> execute(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity,
+                                             String idempotencyKey) {
+        CompletableFuture<Order> future;
+        try {
+            future = orderBatchService.submit(userId, showId, sessionId, tierId, quantity, idempotencyKey);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.handle((order, ex) -> {
+            if (order != null) {
+                return order;
+            }
+            Order existing = orderMapper.getByUserIdAndIdempotencyKey(userId, idempotencyKey);
+            if (existing == null && ex != null) {
+                System.err.println("幂等下单失败: " + ex.getMessage());
+            }
+            return existing;
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.dto.OrderTicket;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步下单业务逻辑接口
+ * 下单请求先进入每个演出各自的有界队列，立即返回 requestId，
+ * 再由后台工作线程批量调用 OrderService 创建订单，客户端通过 requestId 查询（或长轮询）结果
+ */
+public interface OrderPipelineService {
+
+    /**
+     * 提交异步下单请求
+     * @param userId 购票用户ID
+     * @param showId 演出ID
+     * @param sessionId 场次ID（无场次的演出为 null）
+     * @param tierId 票档ID（无票档的演出为 null）
+     * @param quantity 购买数量
+     * @return 排队凭证；如果该演出的队列已满或异步下单未开启，返回 null
+     */
+    OrderTicket submit(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity);
+
+    /**
+     * 查询异步下单结果
+     * @param requestId 请求ID
+     * @param userId 用户ID（只能查询自己的请求）
+     * @return 排队凭证，不存在或不属于该用户时返回 null
+     */
+    OrderTicket getTicket(String requestId, Long userId);
+
+    /**
+     * 等待异步下单结果（长轮询）
+     * 如果请求已经处理完，立即返回；否则最多等待 waitMillis 毫秒，超时时返回当前（处理中）的状态
+     * @param requestId 请求ID
+     * @param userId 用户ID
+     * @param waitMillis 最长等待时间（毫秒）
+     * @return 排队凭证，不存在或不属于该用户时结果为 null
+     */
+    CompletableFuture<OrderTicket> awaitTicket(String requestId, Long userId, long waitMillis);
+
+    /**
+     * 是否开启了异步下单
+     * @return 开启返回 true
+     */
+    boolean isEnabled();
+}
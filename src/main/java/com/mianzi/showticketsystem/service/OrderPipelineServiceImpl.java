@@ -0,0 +1,251 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.dto.OrderRequest;
+import com.mianzi.showticketsystem.model.dto.OrderTicket;
+import com.mianzi.showticketsystem.model.entity.Order;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OrderPipelineService 接口的实现类
+ * 每个演出一个有界队列，队列满时直接拒绝，保护数据库连接池；
+ * 有请求的演出被放入"待处理演出"队列，工作线程每次取出一个演出，一次最多处理 batch-size 个请求，
+ * 同一批请求通过 OrderService.createOrders 组提交
+ */
+@Service
+public class OrderPipelineServiceImpl implements OrderPipelineService {
+
+    @Autowired
+    private OrderService orderService;
+
+    // 是否开启异步下单
+    @Value("${order.async.enabled:false}")
+    private boolean enabled;
+
+    // 每个演出的排队容量
+    @Value("${order.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    // 工作线程数量（同时占用的数据库连接数上限）
+    @Value("${order.async.workers:4}")
+    private int workerCount;
+
+    // 工作线程每次从一个演出队列中取出的最大请求数
+    @Value("${order.async.batch-size:50}")
+    private int batchSize;
+
+    // 处理结果保留时间（毫秒），超时后结果被清理
+    @Value("${order.async.result-ttl-ms:600000}")
+    private long resultTtlMs;
+
+    // 每个演出的排队队列：showId -> 队列
+    private final Map<Long, ShowQueue> showQueues = new ConcurrentHashMap<>();
+
+    // 有待处理请求的演出队列
+    private final BlockingQueue<ShowQueue> readyShows = new LinkedBlockingQueue<>();
+
+    // 所有请求的处理结果：requestId -> 凭证
+    private final Map<String, OrderTicket> tickets = new ConcurrentHashMap<>();
+
+    private ExecutorService workers;
+
+    /**
+     * 单个演出的排队队列
+     */
+    private class ShowQueue {
+        final BlockingQueue<OrderTicket> queue = new ArrayBlockingQueue<>(queueCapacity);
+        // 该演出是否已经在 readyShows 中（或正在被工作线程处理），避免重复放入
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+    }
+
+    /**
+     * 启动工作线程
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadNo = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "order-pipeline-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::workLoop);
+        }
+    }
+
+    /**
+     * 应用关闭时停止工作线程
+     */
+    @PreDestroy
+    public void stop() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交异步下单请求
+     */
+    @Override
+    public OrderTicket submit(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity) {
+        if (!enabled) {
+            return null;
+        }
+        OrderTicket ticket = new OrderTicket()
+                .setRequestId(UUID.randomUUID().toString().replace("-", ""))
+                .setUserId(userId)
+                .setShowId(showId)
+                .setSessionId(sessionId)
+                .setTierId(tierId)
+                .setQuantity(quantity)
+                .setStatus(OrderTicket.STATUS_PENDING)
+                .setMessage("排队处理中")
+                .setCreateTime(LocalDateTime.now());
+
+        ShowQueue showQueue = showQueues.computeIfAbsent(showId, k -> new ShowQueue());
+        if (!showQueue.queue.offer(ticket)) {
+            return null; // 队列已满，直接拒绝
+        }
+        tickets.put(ticket.getRequestId(), ticket);
+        schedule(showQueue);
+        return ticket;
+    }
+
+    /**
+     * 查询异步下单结果
+     */
+    @Override
+    public OrderTicket getTicket(String requestId, Long userId) {
+        OrderTicket ticket = requestId == null ? null : tickets.get(requestId);
+        if (ticket == null || !ticket.getUserId().equals(userId)) {
+            return null;
+        }
+        return ticket;
+    }
+
+    /**
+     * 长轮询等待异步下单结果
+     */
+    @Override
+    public CompletableFuture<OrderTicket> awaitTicket(String requestId, Long userId, long waitMillis) {
+        OrderTicket ticket = getTicket(requestId, userId);
+        if (ticket == null || ticket.getStatus() != OrderTicket.STATUS_PENDING || waitMillis <= 0) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        return ticket.getFuture().copy().completeOnTimeout(ticket, waitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 定时清理过期的处理结果（每分钟一次）
+     */
+    @Scheduled(fixedRate = 60000)
+    public void cleanExpiredTickets() {
+        LocalDateTime expireBefore = LocalDateTime.now().minusNanos(resultTtlMs * 1_000_000L);
+        tickets.values().removeIf(ticket -> ticket.getFinishTime() != null
+                && ticket.getFinishTime().isBefore(expireBefore));
+        // 清理已经没有排队请求的演出队列
+        showQueues.entrySet().removeIf(entry -> entry.getValue().queue.isEmpty()
+                && !entry.getValue().scheduled.get());
+    }
+
+    /**
+     * 把有请求的演出放入待处理队列（每个演出同一时间最多只在队列中出现一次）
+     */
+    private void schedule(ShowQueue showQueue) {
+        if (showQueue.scheduled.compareAndSet(false, true)) {
+            readyShows.offer(showQueue);
+        }
+    }
+
+    /**
+     * 工作线程主循环：取出一个有请求的演出，批量处理它的排队请求
+     */
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            ShowQueue showQueue;
+            try {
+                showQueue = readyShows.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            List<OrderTicket> batch = new ArrayList<>(batchSize);
+            showQueue.queue.drainTo(batch, batchSize);
+            processBatch(batch);
+
+            // 处理完一批后，如果队列里还有请求，重新放回待处理队列，让其他演出也有机会被处理
+            showQueue.scheduled.set(false);
+            if (!showQueue.queue.isEmpty()) {
+                schedule(showQueue);
+            }
+        }
+    }
+
+    /**
+     * 处理一批同一演出的下单请求
+     */
+    private void processBatch(List<OrderTicket> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // 整批通过组提交写入：一次库存扣减 + 一条多行 INSERT + 一次事务提交
+        List<OrderRequest> requests = new ArrayList<>(batch.size());
+        for (OrderTicket ticket : batch) {
+            requests.add(new OrderRequest(ticket.getUserId(), ticket.getShowId(), ticket.getSessionId(), ticket.getTierId(), ticket.getQuantity(), null));
+        }
+        try {
+            List<Order> orders = orderService.createOrders(requests);
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), orders.get(i));
+            }
+            return;
+        } catch (Exception e) {
+            System.err.println("异步批量下单失败，改为逐个下单: " + e.getMessage());
+        }
+
+        // 整批事务失败时逐个重试
+        for (OrderTicket ticket : batch) {
+            try {
+                complete(ticket, orderService.createOrder(ticket.getUserId(), ticket.getShowId(), ticket.getSessionId(), ticket.getTierId(),
+                        ticket.getQuantity(), null));
+            } catch (Exception e) {
+                System.err.println("异步下单失败: " + e.getMessage());
+                ticket.complete(null, "下单失败：系统繁忙，请稍后重试");
+            }
+        }
+    }
+
+    private void complete(OrderTicket ticket, Order order) {
+        ticket.complete(order, order != null ? "下单成功" : "下单失败：库存不足或演出不可售");
+    }
+}
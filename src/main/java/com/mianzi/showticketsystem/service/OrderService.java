@@ -1,7 +1,10 @@
 package com.mianzi.showticketsystem.service;
 
+import com.mianzi.showticketsystem.model.dto.OrderRequest;
 import com.mianzi.showticketsystem.model.entity.Order;
 import com.mianzi.showticketsystem.model.entity.PageResult; // 确保导入 PageResult
+
+import java.util.List;
 /**
  * 订单业务逻辑接口
  */
@@ -17,6 +20,60 @@ public interface OrderService {
      */
     Order createOrder(Long userId, Long showId, Integer quantity);
 
+    /**
+     * 用户预订/购买演出票（带票档和幂等键）
+     * 同一用户同一幂等键已经创建过订单时直接返回该订单，不再扣减库存；
+     * 并发的重复请求由数据库唯一索引 (user_id, idempotency_key) 保证只有一个能插入成功
+     * 有票档的演出必须指定票档，按票档价格计价，同时扣减票档库存和演出总库存；
+     * 有场次的演出必须指定尚未开始的场次，库存从场次行扣减，不再扣减演出行
+     * @param userId 购票用户ID
+     * @param showId 演出ID
+     * @param sessionId 场次ID（无场次的演出为 null）
+     * @param tierId 票档ID（无票档的演出为 null）
+     * @param quantity 购买数量
+     * @param idempotencyKey 幂等键，为 null 时不做幂等处理
+     * @return 成功返回订单对象，失败返回 null
+     */
+    Order createOrder(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity, String idempotencyKey);
+
+    /**
+     * 对号入座演出的选座下单：占用座位、扣减库存、创建订单和订单座位记录在同一个事务中完成
+     * @param userId 购票用户ID
+     * @param showId 演出ID
+     * @param sessionId 场次ID：有场次的演出必须指定尚未开始的场次，座位在该场次中占用
+     * @param seatNos 用户选择的座位编号；为空时自动选择最佳的 count 个相邻座位
+     * @param count 自动选座的座位数
+     * @param tierId 票档ID：有票档的演出必须指定，自选的座位必须都属于该票档，自动选座只在该票档中选择
+     * @return 成功返回订单对象，失败（座位已被占用、库存不足等）返回 null
+     */
+    Order createSeatOrder(Long userId, Long showId, Long sessionId, List<Integer> seatNos, Integer count, Long tierId);
+
+    /**
+     * 批量创建订单（组提交）
+     * 同一演出的请求合并成一次库存扣减，所有订单用一条多行 INSERT 在同一个事务中写入
+     * @param requests 下单请求列表
+     * @return 与请求一一对应的订单列表，某个请求失败（库存不足等）时对应位置为 null
+     */
+    List<Order> createOrders(List<OrderRequest> requests);
+
+    /**
+     * 为抽签中签的用户批量创建待支付订单（与 createOrders 相同的组提交方式，只接受抽签购票模式的演出）
+     * @param requests 中签用户的下单请求列表
+     * @return 与请求一一对应的订单列表，某个请求失败（库存不足、超过限购等）时对应位置为 null
+     */
+    List<Order> createBallotOrders(List<OrderRequest> requests);
+
+    /**
+     * 演练下单（开售前预热使用）：执行下单前的内存校验和定价，并构建订单对象，
+     * 但不校验是否已开售、不占用限购额度、不扣减库存、不写数据库
+     * @param showId 演出ID
+     * @param sessionId 场次ID（有场次的演出必填）
+     * @param tierId 票档ID（有票档的演出必填）
+     * @param quantity 购买数量
+     * @return 构建的订单对象（未保存），校验不通过时返回 null
+     */
+    Order dryRunOrder(Long showId, Long sessionId, Long tierId, Integer quantity);
+
     /**
      * 根据订单ID和用户ID查询订单详情
      * @param orderId 订单ID
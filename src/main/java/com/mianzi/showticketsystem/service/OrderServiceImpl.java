@@ -1,18 +1,31 @@
 package com.mianzi.showticketsystem.service;
 
 import com.mianzi.showticketsystem.mapper.OrderMapper;
+import com.mianzi.showticketsystem.model.dto.OrderRequest;
 import com.mianzi.showticketsystem.mapper.ShowMapper;
 import com.mianzi.showticketsystem.model.entity.Order;
+import com.mianzi.showticketsystem.model.entity.OrderSeat;
 import com.mianzi.showticketsystem.model.entity.Show; // 确保导入了 Show 实体
+import com.mianzi.showticketsystem.model.entity.ShowSession;
+import com.mianzi.showticketsystem.model.entity.ShowTier;
 import com.mianzi.showticketsystem.service.OrderService;
 import com.mianzi.showticketsystem.service.ShowService;
+import com.mianzi.showticketsystem.util.SnowflakeIdGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import com.mianzi.showticketsystem.model.entity.PageResult; // 确保导入 PageResult
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List; // 确保导入 List
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
 
 @Service
 public class OrderServiceImpl implements OrderService {
@@ -27,6 +40,33 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private ShowService showService; // 用于查询演出信息
 
+    @Autowired
+    private StockService stockService; // 统一的库存扣减/返还入口（支持 SQL 和内存库存两种模式）
+
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator; // 商户订单号生成器
+
+    @Autowired
+    private OrderTimeoutService orderTimeoutService; // 订单超时关闭（时间轮）
+
+    @Autowired
+    private PurchaseLimitService purchaseLimitService; // 每个用户的限购计数
+
+    @Autowired
+    private SeatService seatService; // 座位图（对号入座）
+
+    @Autowired
+    private HotShowService hotShowService; // 热门演出识别
+
+    @Autowired
+    private RestockService restockService; // 库存合并返还
+
+    @Autowired
+    private ShowTierService showTierService; // 演出票档
+
+    @Autowired
+    private ShowSessionService showSessionService; // 演出场次
+
     /**
      * 预订票务的核心方法，确保减库存和创建订单在同一个事务中
      */
@@ -38,9 +78,34 @@ public class OrderServiceImpl implements OrderService {
     //防止出现订单创建成功但库存未扣减的数据不一致问题
     @Transactional
     public Order createOrder(Long userId, Long showId, Integer quantity) {
+        return createOrder(userId, showId, null, null, quantity, null);
+    }
+
+    /**
+     * 带场次、票档和幂等键的预订票务
+     */
+    @Override
+    @Transactional
+    public Order createOrder(Long userId, Long showId, Long sessionId, Long tierId, Integer quantity, String idempotencyKey) {
+
+        // 统计演出的下单次数，用于识别热门演出
+        hotShowService.record(showId);
+
+        //步骤 0: 同一幂等键已经下过单（例如重试请求到达了另一个实例），直接返回已有订单
+        if (idempotencyKey != null) {
+            Order existing = orderMapper.getByUserIdAndIdempotencyKey(userId, idempotencyKey);
+            if (existing != null) {
+                return existing;
+            }
+        }
 
         //步骤 1: 业务校验和获取价格
 
+        //1.0 演出已售罄时直接拒绝，不访问数据库（售罄标记只在内存中）
+        if (stockService.isSoldOut(showId)) {
+            return null;
+        }
+
         //1.1 获取演出信息，用于价格计算
         Show show = showService.getShowById(showId);
 
@@ -49,19 +114,50 @@ public class OrderServiceImpl implements OrderService {
             return null;
         }
 
+        //1.1.0 抽签购票模式的演出只能报名抽签，中签后由抽签任务创建订单
+        if (show.getBallotEndTime() != null) {
+            return null;
+        }
+
+        //1.1.0.1 设置了开售时间的演出，开售前不能下单
+        if (!isSaleOpen(show)) {
+            return null;
+        }
+
+        //1.1.1 对号入座的演出必须通过选座下单，保证每张票都有座位
+        if (seatService.hasSeatMap(showId)) {
+            return null;
+        }
+
         //1.2 校验购买数量
         if (quantity == null || quantity <= 0) {
             return null;
         }
 
         //1.3 校验购买数量是否超出当前可用库存
-        //虽然 Mapper 层面会原子性检查，但Service层面也做判断吧
-        if (quantity > show.getAvailableTickets()) {
+        //演出详情来自缓存，只有库存在内存账本中时可用票数才是实时的；其他情况以数据库的原子扣减为准，不用缓存的数量拒绝请求
+        Integer liveStock = stockService.getAvailableStock(showId);
+        if (liveStock != null && quantity > liveStock) {
             return null; // 库存不足
         }
 
-        // 1.4 计算总金额
-        BigDecimal price = show.getPrice(); // 从数据库获取实时价格
+        //1.4 确定单价：有票档的演出必须指定票档并使用票档价格（票档结构来自内存缓存，不解析JSON）
+        BigDecimal price = resolvePrice(show, tierId);
+        if (price == null) {
+            return null; // 票档不存在，或有票档的演出没有指定票档
+        }
+
+        //1.4.1 有场次的演出必须指定尚未开始的场次
+        if (!isValidSession(show, sessionId)) {
+            return null;
+        }
+
+        //1.5 校验限购：用户在该演出已购买的数量加上本次数量不能超过限购数量（内存计数，不查询订单表）
+        if (!purchaseLimitService.tryAcquire(showId, userId, quantity, show.getMaxPerUser())) {
+            return null; // 超过限购数量
+        }
+
+        // 1.6 计算总金额
         //BigDecimal 可以精确地表示和计算任何大小和精度的小数，专门用于避免浮点数计算误差
         //计算总金额（价格 * 数量）
         BigDecimal totalPrice = price.multiply(new BigDecimal(quantity));
@@ -69,23 +165,341 @@ public class OrderServiceImpl implements OrderService {
 
         //步骤 2: 减库存操作
 
-        // 2.1 调用 ShowMapper 执行原子性减库存操作
-        // 如果库存不足或演出状态不对，该操作将返回 0
-        int updatedRows = showMapper.updateStock(showId, quantity);
+        // 2.1 调用 StockService 执行原子性减库存操作（有票档时先扣减票档库存，有场次时扣减场次库存）
+        // 如果库存不足或演出状态不对，该操作将返回 false
+        // memory 模式下只在内存中预扣，事务回滚时会自动恢复
+        boolean deducted = deductStock(showId, sessionId, tierId, quantity);
 
-        if (updatedRows == 0) {
-            // 减库存失败，可能是并发抢购导致库存不足，直接返回 null
+        if (!deducted) {
+            // 减库存失败，可能是并发抢购导致库存不足，归还限购额度后返回 null
+            purchaseLimitService.release(showId, userId, quantity);
             return null;
         }
 
         //步骤 3: 创建订单记录
 
-        // 3.1 生成商户订单号（格式：订单前缀 + 时间戳 + 用户ID）
-        String outTradeNo = "ORD" + System.currentTimeMillis() + userId;
+        // 3.1 构建订单对象
+        Order order = buildOrder(userId, showId, quantity, totalPrice)
+                .setSessionId(sessionId)
+                .setTierId(tierId)
+                .setIdempotencyKey(idempotencyKey);
+
+        // 3.2 插入订单记录
+        int result = orderMapper.insert(order);
+
+        if (result == 1) {
+            // 订单创建成功，注册支付超时关闭任务（事务提交后生效），返回订单
+            orderTimeoutService.register(order);
+            return order;
+        } else {
+            // 订单插入失败，抛出异常触发事务回滚，库存也会恢复
+            throw new RuntimeException("创建订单失败，事务回滚。");
+        }
+    }
+
+    /**
+     * 选座下单：先在座位位图中占座（内存 CAS），再扣减库存、写入订单和订单座位
+     */
+    @Override
+    @Transactional
+    public Order createSeatOrder(Long userId, Long showId, Long sessionId, List<Integer> seatNos, Integer count, Long tierId) {
+        hotShowService.record(showId);
+        if (stockService.isSoldOut(showId)) {
+            return null;
+        }
+        Show show = showService.getShowById(showId);
+        if (show == null || show.getBallotEndTime() != null || !isSaleOpen(show)) {
+            return null; // 演出不存在、是抽签购票模式，或者还没有开售
+        }
+        int quantity = seatNos != null && !seatNos.isEmpty() ? seatNos.size() : (count != null ? count : 0);
+        if (quantity <= 0) {
+            return null;
+        }
+        BigDecimal price = resolvePrice(show, tierId);
+        if (price == null) {
+            return null; // 票档不存在，或有票档的演出没有指定票档
+        }
+        if (!isValidSession(show, sessionId)) {
+            return null; // 有场次的演出必须指定尚未开始的场次
+        }
+        if (!purchaseLimitService.tryAcquire(showId, userId, quantity, show.getMaxPerUser())) {
+            return null; // 超过限购数量
+        }
+
+        // 占座（在所选场次的位图中）：座位已被占用或没有足够的相邻空座时失败
+        List<OrderSeat> seats = seatService.reserveSeats(showId, sessionId, seatNos, quantity, tierId);
+        if (seats == null) {
+            purchaseLimitService.release(showId, userId, quantity);
+            return null;
+        }
+
+        // 扣减库存（座位数与库存一致，正常情况下不会失败）
+        if (!deductStock(showId, sessionId, tierId, quantity)) {
+            seatService.cancelReservation(showId, seats);
+            purchaseLimitService.release(showId, userId, quantity);
+            return null;
+        }
+
+        BigDecimal totalPrice = price.multiply(new BigDecimal(quantity));
+        Order order = buildOrder(userId, showId, quantity, totalPrice).setSessionId(sessionId).setTierId(tierId);
+        if (orderMapper.insert(order) != 1) {
+            // 订单插入失败，抛出异常触发事务回滚，库存和座位也会恢复
+            throw new RuntimeException("创建订单失败，事务回滚。");
+        }
+        seatService.assignSeats(order.getId(), seats);
+        orderTimeoutService.register(order);
+        return order;
+    }
+
+    /**
+     * 批量创建订单（组提交）：同一演出（同一场次、同一票档）只扣减一次库存，所有订单一条 INSERT 写入，整批只提交一次事务
+     */
+    @Override
+    @Transactional
+    public List<Order> createOrders(List<OrderRequest> requests) {
+        return createOrders(requests, false);
+    }
+
+    /**
+     * 为抽签中签的用户批量创建订单
+     */
+    @Override
+    @Transactional
+    public List<Order> createBallotOrders(List<OrderRequest> requests) {
+        return createOrders(requests, true);
+    }
+
+    /**
+     * 批量创建订单
+     * @param ballot true 表示只处理抽签购票模式的演出（抽签任务调用），false 表示只处理普通演出
+     */
+    private List<Order> createOrders(List<OrderRequest> requests, boolean ballot) {
+        Order[] results = new Order[requests.size()];
+
+        //步骤 1: 按演出、场次和票档分组（保持请求的先后顺序）
+        Map<String, List<Integer>> indexesByGroup = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            OrderRequest request = requests.get(i);
+            if (!ballot) {
+                hotShowService.record(request.getShowId());
+            }
+            indexesByGroup.computeIfAbsent(request.getShowId() + ":" + request.getSessionId() + ":" + request.getTierId(), k -> new ArrayList<>()).add(i);
+        }
+
+        //步骤 2: 每组校验一次
+        List<OrderGroup> groups = new ArrayList<>();
+        for (List<Integer> indexes : indexesByGroup.values()) {
+            Long showId = requests.get(indexes.get(0)).getShowId();
+            Long sessionId = requests.get(indexes.get(0)).getSessionId();
+            Long tierId = requests.get(indexes.get(0)).getTierId();
+            if (stockService.isSoldOut(showId)) {
+                continue; // 已售罄，整组失败
+            }
+            Show show = showService.getShowById(showId);
+            if (show == null || seatService.hasSeatMap(showId) || (show.getBallotEndTime() != null) != ballot
+                    || (!ballot && !isSaleOpen(show))) {
+                continue; // 演出不存在、已下架、需要选座下单、购票模式不符，或者还没有开售
+            }
+            BigDecimal price = resolvePrice(show, tierId);
+            if (price == null || !isValidSession(show, sessionId)) {
+                continue; // 票档或场次不存在，或有票档/场次的演出没有指定票档/场次
+            }
+
+            // 过滤掉购买数量不合法或超过限购的请求，并统计整组的购买总数
+            List<Integer> validIndexes = new ArrayList<>();
+            int totalQuantity = 0;
+            for (Integer index : indexes) {
+                OrderRequest request = requests.get(index);
+                Integer quantity = request.getQuantity();
+                if (quantity != null && quantity > 0
+                        && purchaseLimitService.tryAcquire(showId, request.getUserId(), quantity, show.getMaxPerUser())) {
+                    validIndexes.add(index);
+                    totalQuantity += quantity;
+                }
+            }
+            if (validIndexes.isEmpty()) {
+                continue;
+            }
+            groups.add(new OrderGroup(showId, sessionId, tierId, price, validIndexes, totalQuantity));
+        }
+
+        //步骤 3: 按全局加锁顺序扣减库存：先扣减所有票档，再扣减所有场次，最后扣减演出库存，同一类按ID从小到大。
+        //        与合并返还、关单、取消订单的顺序一致，并发的事务不会各自持有对方等待的行锁而死锁
+        deductGroups(requests, groups, group -> group.tierId, false,
+                group -> quantity -> showTierService.deductStock(group.showId, group.tierId, quantity));
+        deductGroups(requests, groups, group -> group.sessionId, true,
+                group -> quantity -> showSessionService.deductStock(group.showId, group.sessionId, quantity));
+        deductGroups(requests, groups, group -> group.sessionId == null ? group.showId : null, true,
+                group -> quantity -> stockService.deductStock(group.showId, quantity));
+
+        //步骤 4: 为扣减成功的请求构建订单
+        List<Order> ordersToInsert = new ArrayList<>();
+        for (OrderGroup group : groups) {
+            for (Integer index : group.indexes) {
+                OrderRequest request = requests.get(index);
+                BigDecimal totalPrice = group.price.multiply(new BigDecimal(request.getQuantity()));
+                Order order = buildOrder(request.getUserId(), group.showId, request.getQuantity(), totalPrice)
+                        .setSessionId(group.sessionId)
+                        .setTierId(group.tierId)
+                        .setIdempotencyKey(request.getIdempotencyKey());
+                results[index] = order;
+                ordersToInsert.add(order);
+            }
+        }
+
+        //步骤 5: 一条多行 INSERT 写入所有订单
+        if (!ordersToInsert.isEmpty()) {
+            int inserted = orderMapper.insertBatch(ordersToInsert);
+            if (inserted != ordersToInsert.size()) {
+                // 订单插入失败，抛出异常触发事务回滚，库存也会恢复
+                throw new RuntimeException("批量创建订单失败，事务回滚。");
+            }
+            for (Order order : ordersToInsert) {
+                orderTimeoutService.register(order);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 演练下单：与 createOrder 相同的内存校验和定价，然后构建订单对象，不改变任何状态
+     */
+    @Override
+    public Order dryRunOrder(Long showId, Long sessionId, Long tierId, Integer quantity) {
+        if (stockService.isSoldOut(showId) || quantity == null || quantity <= 0) {
+            return null;
+        }
+        Show show = showService.getShowById(showId);
+        if (show == null || show.getBallotEndTime() != null || seatService.hasSeatMap(showId)) {
+            return null;
+        }
+        BigDecimal price = resolvePrice(show, tierId);
+        if (price == null || !isValidSession(show, sessionId)) {
+            return null;
+        }
+        return buildOrder(null, showId, quantity, price.multiply(new BigDecimal(quantity)))
+                .setSessionId(sessionId)
+                .setTierId(tierId);
+    }
+
+    /**
+     * 是否已开售：没有设置开售时间的演出发布后即可下单；设置了开售时间的演出在开票后或者到达开售时间后才能下单
+     * （定时任务到点把 is_on_sale 改为 1，这里同时比较时间，定时任务稍有延迟也不会晚于开售时间放行）
+     */
+    private boolean isSaleOpen(Show show) {
+        return show.getSaleStartTime() == null
+                || Integer.valueOf(1).equals(show.getIsOnSale())
+                || !LocalDateTime.now().isBefore(show.getSaleStartTime());
+    }
+
+    /**
+     * 确定下单的单价：有票档的演出必须指定票档，使用票档价格；没有票档的演出不能指定票档，使用演出价格
+     * @return 单价，票档不合法时返回 null
+     */
+    private BigDecimal resolvePrice(Show show, Long tierId) {
+        if (showTierService.getTiers(show.getId()).isEmpty()) {
+            return tierId == null ? show.getPrice() : null;
+        }
+        ShowTier tier = showTierService.getTier(show.getId(), tierId);
+        return tier != null ? tier.getPrice() : null;
+    }
+
+    /**
+     * 校验场次：有场次的演出必须指定尚未开始的场次；没有场次的演出不能指定场次
+     */
+    private boolean isValidSession(Show show, Long sessionId) {
+        if (showSessionService.getSessions(show.getId()).isEmpty()) {
+            return sessionId == null;
+        }
+        ShowSession session = showSessionService.getSession(show.getId(), sessionId);
+        return session != null && session.getStartTime().isAfter(LocalDateTime.now());
+    }
+
+    /**
+     * 批量下单的一组请求（演出、场次、票档都相同）
+     */
+    private static class OrderGroup {
+        final Long showId;
+        final Long sessionId;
+        final Long tierId;
+        final BigDecimal price;
+        List<Integer> indexes; // 到目前为止扣减成功的请求
+        int totalQuantity;
+
+        OrderGroup(Long showId, Long sessionId, Long tierId, BigDecimal price, List<Integer> indexes, int totalQuantity) {
+            this.showId = showId;
+            this.sessionId = sessionId;
+            this.tierId = tierId;
+            this.price = price;
+            this.indexes = indexes;
+            this.totalQuantity = totalQuantity;
+        }
+    }
+
+    /**
+     * 按 lockKey 从小到大扣减各组的一类库存（lockKey 为 null 的组不扣减这一类）：
+     * 先尝试一次性扣减整组（一条条件 UPDATE），剩余库存不够整组时按先来后到逐个扣减，能买到的先买到。
+     * 扣减失败的请求从组中去掉，归还限购额度，tierDeducted 为 true 时同时返还前面已经扣减的票档库存（票档行已加锁，不会产生新的锁等待）
+     */
+    private void deductGroups(List<OrderRequest> requests, List<OrderGroup> groups, Function<OrderGroup, Long> lockKey,
+                              boolean tierDeducted, Function<OrderGroup, IntPredicate> deduction) {
+        groups.sort(Comparator.comparing(lockKey, Comparator.nullsLast(Comparator.naturalOrder())));
+        for (OrderGroup group : groups) {
+            if (lockKey.apply(group) == null || group.indexes.isEmpty()) {
+                continue;
+            }
+            IntPredicate deduct = deduction.apply(group);
+            if (deduct.test(group.totalQuantity)) {
+                continue;
+            }
+            List<Integer> accepted = new ArrayList<>();
+            int acceptedQuantity = 0;
+            for (Integer index : group.indexes) {
+                OrderRequest request = requests.get(index);
+                if (deduct.test(request.getQuantity())) {
+                    accepted.add(index);
+                    acceptedQuantity += request.getQuantity();
+                } else {
+                    purchaseLimitService.release(group.showId, request.getUserId(), request.getQuantity());
+                    if (tierDeducted && group.tierId != null) {
+                        showTierService.returnStock(group.showId, group.tierId, request.getQuantity());
+                    }
+                }
+            }
+            group.indexes = accepted;
+            group.totalQuantity = acceptedQuantity;
+        }
+    }
+
+    /**
+     * 扣减库存：有票档时先扣减票档库存，再扣减场次库存（有场次时）或演出总库存；后者扣减失败时返还票档库存
+     * （与批量下单的全局加锁顺序一致：票档 → 场次 → 演出）
+     */
+    private boolean deductStock(Long showId, Long sessionId, Long tierId, int quantity) {
+        if (tierId != null && !showTierService.deductStock(showId, tierId, quantity)) {
+            return false;
+        }
+        boolean deducted = sessionId != null
+                ? showSessionService.deductStock(showId, sessionId, quantity)
+                : stockService.deductStock(showId, quantity);
+        if (deducted) {
+            return true;
+        }
+        if (tierId != null) {
+            showTierService.returnStock(showId, tierId, quantity);
+        }
+        return false;
+    }
+
+    /**
+     * 构建一个待支付的订单对象
+     */
+    private Order buildOrder(Long userId, Long showId, Integer quantity, BigDecimal totalPrice) {
+        // 生成商户订单号（格式：订单前缀 + 雪花ID），同一用户同一毫秒内多次下单也不会重复
+        String outTradeNo = snowflakeIdGenerator.nextOutTradeNo();
 
-        // 3.2 构建订单对象
         LocalDateTime now = LocalDateTime.now();
-        Order order = new Order()
+        return new Order()
                 .setUserId(userId)
                 .setShowId(showId)
                 .setOutTradeNo(outTradeNo)
@@ -95,17 +509,6 @@ public class OrderServiceImpl implements OrderService {
                 .setOrderTime(now)
                 .setCreateTime(now)
                 .setUpdateTime(now);
-
-        // 3.2 插入订单记录
-        int result = orderMapper.insert(order);
-
-        if (result == 1) {
-            // 订单创建成功,返回订单
-            return order;
-        } else {
-            // 订单插入失败，抛出异常触发事务回滚，库存也会恢复
-            throw new RuntimeException("创建订单失败，事务回滚。");
-        }
     }
 
     /**
@@ -157,15 +560,22 @@ public class OrderServiceImpl implements OrderService {
             return false;
         }
 
-        //返还库存操作
+        //返还库存操作（开启合并返还时，订单状态更新后只标记库存待返还，由合并返还任务按演出批量返还）
+        //按全局加锁顺序返还：票档 → 场次/演出
+        if (!restockService.isEnabled()) {
+            if (order.getTierId() != null) {
+                showTierService.returnStock(order.getShowId(), order.getTierId(), order.getQuantity());
+            }
 
-        //调用 ShowMapper 增加库存
-        // ShowMapper.updateStock 是减库存，我们需要一个对应的增库存方法
-        int stockUpdatedRows = showMapper.addStock(order.getShowId(), order.getQuantity());
+            //调用 StockService 增加库存
+            boolean stockReturned = order.getSessionId() != null
+                    ? showSessionService.returnStock(order.getShowId(), order.getSessionId(), order.getQuantity())
+                    : stockService.returnStock(order.getShowId(), order.getQuantity());
 
-        if (stockUpdatedRows == 0) {
-            // 库存返还失败，可能演出已删除或 ID 错误，应该抛出异常以回滚事务
-            throw new RuntimeException("返还库存失败，事务回滚");
+            if (!stockReturned) {
+                // 库存返还失败，可能演出已删除或 ID 错误，应该抛出异常以回滚事务
+                throw new RuntimeException("返还库存失败，事务回滚");
+            }
         }
 
 
@@ -180,7 +590,13 @@ public class OrderServiceImpl implements OrderService {
         );
 
         if (orderUpdatedRows == 1) {
-            // 订单状态更新成功，事务提交
+            if (restockService.isEnabled()) {
+                restockService.schedule(Collections.singletonList(orderId));
+            }
+            // 订单状态更新成功，不再需要超时关闭，归还限购额度，事务提交
+            orderTimeoutService.cancel(orderId);
+            purchaseLimitService.release(order.getShowId(), userId, order.getQuantity());
+            seatService.releaseOrderSeats(Collections.singletonList(orderId));
             return true;
         } else {
             // 订单状态更新失败，抛出异常回滚库存返还
@@ -225,6 +641,11 @@ public class OrderServiceImpl implements OrderService {
                 STATUS_PENDING_PAYMENT  // 旧状态：待支付
         );
 
+        //支付成功后不再需要超时关闭
+        if (updatedRows == 1) {
+            orderTimeoutService.cancel(orderId);
+        }
+
         //返回结果
         return updatedRows == 1;
     }
@@ -0,0 +1,34 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.entity.Order;
+
+/**
+ * 订单超时关闭业务逻辑接口
+ * 每个待支付订单在创建时注册到时间轮，到达支付截止时间时立即关闭订单并返还库存
+ */
+public interface OrderTimeoutService {
+
+    /**
+     * 注册订单的超时关闭任务（订单事务提交后才真正注册）
+     * @param order 待支付订单
+     */
+    void register(Order order);
+
+    /**
+     * 取消订单的超时关闭任务（订单已支付或已取消时调用）
+     * @param orderId 订单ID
+     */
+    void cancel(Long orderId);
+
+    /**
+     * 从数据库重新加载所有待支付订单并注册超时任务（应用启动时调用）
+     * @return 注册的订单数量
+     */
+    int rebuild();
+
+    /**
+     * 当前等待超时关闭的订单数量
+     * @return 订单数量
+     */
+    int size();
+}
@@ -0,0 +1,179 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.OrderMapper;
+import com.mianzi.showticketsystem.model.entity.Order;
+import com.mianzi.showticketsystem.util.HierarchicalTimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OrderTimeoutService 接口的实现类
+ * 用分层时间轮（第一层每格1秒、60格）管理所有待支付订单的支付截止时间，
+ * 订单在截止时间到达后1秒内被关闭并返还库存，不需要定时扫描整张订单表
+ */
+@Service
+public class OrderTimeoutServiceImpl implements OrderTimeoutService {
+
+    // 重建时间轮时每页读取的订单数
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    // 是否使用时间轮关闭超时订单
+    @Value("${order.timeout-wheel.enabled:true}")
+    private boolean enabled;
+
+    // 订单支付超时时间（分钟）
+    @Value("${order.pay-timeout-minutes:30}")
+    private long payTimeoutMinutes;
+
+    private ExecutorService closeExecutor;
+
+    private HierarchicalTimingWheel timingWheel;
+
+    /**
+     * 创建时间轮和执行关单任务的线程池
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadNo = new AtomicInteger();
+        closeExecutor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "order-timeout-close-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        timingWheel = new HierarchicalTimingWheel("order-timeout-wheel", 1000, 60, closeExecutor);
+    }
+
+    /**
+     * 应用关闭时停止时间轮
+     */
+    @PreDestroy
+    public void stop() {
+        if (timingWheel != null) {
+            timingWheel.close();
+        }
+        if (closeExecutor != null) {
+            closeExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 应用启动完成后，把数据库中所有待支付订单重新注册到时间轮，保证重启后不会漏掉超时订单
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int count = rebuild();
+            System.out.println("订单超时时间轮重建完成，待支付订单数: " + count);
+        } catch (Exception e) {
+            // 数据库暂时不可用时不影响启动，定时关单任务会兜底
+            System.err.println("订单超时时间轮重建失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 注册订单的超时关闭任务
+     */
+    @Override
+    public void register(Order order) {
+        if (!enabled || order == null || order.getId() == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 订单事务提交后再注册，避免事务回滚后关闭一个不存在的订单
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule(order);
+                }
+            });
+        } else {
+            schedule(order);
+        }
+    }
+
+    /**
+     * 取消订单的超时关闭任务
+     */
+    @Override
+    public void cancel(Long orderId) {
+        if (timingWheel != null && orderId != null) {
+            timingWheel.cancel(orderId);
+        }
+    }
+
+    /**
+     * 从数据库重新加载所有待支付订单（按 (order_time, id) 键集分页读取，不一次性加载全部订单）
+     */
+    @Override
+    public int rebuild() {
+        if (timingWheel == null) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int count = 0;
+        LocalDateTime lastOrderTime = null;
+        Long lastId = null;
+        while (true) {
+            List<Order> page = orderMapper.findPendingOrdersAfter(now, lastOrderTime, lastId, REBUILD_PAGE_SIZE);
+            for (Order order : page) {
+                schedule(order);
+            }
+            count += page.size();
+            if (page.size() < REBUILD_PAGE_SIZE) {
+                return count;
+            }
+            Order last = page.get(page.size() - 1);
+            lastOrderTime = last.getOrderTime();
+            lastId = last.getId();
+        }
+    }
+
+    @Override
+    public int size() {
+        return timingWheel == null ? 0 : timingWheel.size();
+    }
+
+    /**
+     * 按订单的下单时间计算支付截止时间并放入时间轮（已经过期的订单会立即关闭）
+     */
+    private void schedule(Order order) {
+        LocalDateTime orderTime = order.getOrderTime() != null ? order.getOrderTime() : LocalDateTime.now();
+        long deadline = orderTime.plusMinutes(payTimeoutMinutes)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Long orderId = order.getId();
+        timingWheel.schedule(orderId, deadline, () -> {
+            try {
+                paymentService.closeOrderIfUnpaid(orderId);
+            } catch (Exception e) {
+                // 关单失败时交给定时关单任务兜底
+                System.err.println("超时关闭订单失败，订单ID: " + orderId + "，原因: " + e.getMessage());
+            }
+        });
+    }
+}
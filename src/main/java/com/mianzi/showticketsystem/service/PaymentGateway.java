@@ -0,0 +1,18 @@
+package com.mianzi.showticketsystem.service;
+
+import java.util.Map;
+
+/**
+ * 支付渠道查询接口
+ * 掉单补偿任务通过它向支付渠道查询订单的实际支付状态，接入真实的支付宝SDK时提供新的实现即可
+ */
+public interface PaymentGateway {
+
+    /**
+     * 查询交易状态
+     * @param outTradeNo 商户订单号
+     * @return 与支付宝异步通知参数格式一致的查询结果（out_trade_no、trade_no、trade_status），
+     *         交易不存在或查询失败时返回null
+     */
+    Map<String, String> queryTrade(String outTradeNo);
+}
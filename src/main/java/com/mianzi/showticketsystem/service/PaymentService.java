@@ -23,7 +23,7 @@ public interface PaymentService {
     String handleAlipayCallback(Map<String, String> params);
 
     /**
-     * 掉单补偿：查询待支付订单并检查支付宝状态
+     * 掉单补偿：分页查询待支付订单，并向支付渠道（PaymentGateway）核对支付状态
      */
     void compensatePendingOrders();
 
@@ -31,5 +31,18 @@ public interface PaymentService {
      * 超时关单：关闭超过30分钟未支付的订单
      */
     void closeTimeoutOrders();
+
+    /**
+     * 查询超时关单的统计数据（累计关闭数量、最近一次关闭数量、耗时和每秒关闭行数）
+     * @return 统计数据
+     */
+    Map<String, Object> getCloseMetrics();
+
+    /**
+     * 关闭单个超时未支付的订单并返还库存（订单已支付或已取消时不做任何操作）
+     * @param orderId 订单ID
+     * @return 成功关闭返回 true
+     */
+    boolean closeOrderIfUnpaid(Long orderId);
 }
 
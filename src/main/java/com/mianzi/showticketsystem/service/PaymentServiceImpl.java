@@ -6,15 +6,28 @@ import com.mianzi.showticketsystem.mapper.UserMapper;
 import com.mianzi.showticketsystem.model.entity.Order;
 import com.mianzi.showticketsystem.model.entity.Show;
 import com.mianzi.showticketsystem.model.entity.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 支付服务实现类（支付宝沙箱环境）
@@ -34,6 +47,79 @@ public class PaymentServiceImpl implements PaymentService {
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RestockService restockService;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private PurchaseLimitService purchaseLimitService;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private ShowTierService showTierService;
+
+    @Autowired
+    private ShowSessionService showSessionService;
+
+    // 订单支付超时时间（分钟）
+    @Value("${order.pay-timeout-minutes:30}")
+    private long payTimeoutMinutes;
+
+    // 批量关单时每批处理的订单数
+    @Value("${order.close.chunk-size:500}")
+    private int closeChunkSize;
+
+    // 掉单补偿时每页读取的订单数
+    @Value("${payment.compensate.page-size:200}")
+    private int compensatePageSize;
+
+    // 掉单补偿时同时查询支付状态的最大并发数
+    @Value("${payment.compensate.parallelism:4}")
+    private int compensateParallelism;
+
+    private ExecutorService compensateExecutor;
+
+    // 超时关单统计数据
+    private final AtomicLong totalClosedOrders = new AtomicLong();
+    // 关单前向支付渠道查询发现已支付、补记为已支付的订单数
+    private final AtomicLong totalPaidOnClose = new AtomicLong();
+    private volatile int lastClosedOrders;
+    private volatile long lastCloseMillis;
+    private volatile LocalDateTime lastCloseTime;
+
+    /**
+     * 创建掉单补偿使用的线程池
+     */
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNo = new AtomicInteger();
+        compensateExecutor = Executors.newFixedThreadPool(compensateParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "payment-compensate-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 应用关闭时停止补偿线程池
+     */
+    @PreDestroy
+    public void stop() {
+        if (compensateExecutor != null) {
+            compensateExecutor.shutdownNow();
+        }
+    }
+
     /**
      * 实现创建支付订单的逻辑（简化版本，不依赖支付宝SDK）
      * 注意：这是一个模拟实现，实际项目中需要集成真实的支付SDK
@@ -125,49 +211,324 @@ public class PaymentServiceImpl implements PaymentService {
     }
 
     /**
-     * 掉单补偿：查询待支付订单并检查支付宝状态（简化版本）
-     * 注意：实际项目中需要调用支付宝API查询订单状态
+     * 掉单补偿：查询待支付订单并向支付渠道核对支付状态
+     * 按 (order_time, id) 键集分页逐页读取待支付订单，内存中最多只保留一页；
+     * 每页的订单在补偿线程池中并行查询支付状态（并发数有上限），查到已支付的订单按支付回调的逻辑补记为已支付
      */
     @Override
     @Scheduled(fixedRate = 300000) // 每5分钟执行一次
     public void compensatePendingOrders() {
         // 查询30分钟前的待支付订单
         LocalDateTime beforeTime = LocalDateTime.now().minusMinutes(30);
-        List<Order> pendingOrders = orderMapper.findPendingOrdersBefore(beforeTime);
 
-        // 简化版本：这里应该调用支付宝API查询订单状态
-        // 实际项目中，需要集成支付宝SDK来查询订单状态
-        System.out.println("掉单补偿任务执行，待处理订单数: " + pendingOrders.size());
-        // TODO: 集成支付宝SDK后，在这里调用支付宝API查询订单状态
+        long startNanos = System.nanoTime();
+        int scannedOrders = 0;
+        int recoveredOrders = 0;
+        LocalDateTime lastOrderTime = null;
+        Long lastId = null;
+        while (true) {
+            List<Order> page;
+            try {
+                page = orderMapper.findPendingOrdersAfter(beforeTime, lastOrderTime, lastId, compensatePageSize);
+            } catch (Exception e) {
+                System.err.println("掉单补偿查询待支付订单失败: " + e.getMessage());
+                break;
+            }
+            if (page.isEmpty()) {
+                break;
+            }
+
+            // 并行查询本页订单的支付状态，整页处理完后再读取下一页
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>(page.size());
+            for (Order order : page) {
+                futures.add(CompletableFuture.supplyAsync(() -> compensateOrder(order), compensateExecutor));
+            }
+            for (CompletableFuture<Boolean> future : futures) {
+                if (future.join()) {
+                    recoveredOrders++;
+                }
+            }
+
+            scannedOrders += page.size();
+            Order last = page.get(page.size() - 1);
+            lastOrderTime = last.getOrderTime();
+            lastId = last.getId();
+            if (page.size() < compensatePageSize) {
+                break; // 最后一页
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        System.out.println("掉单补偿任务执行，检查订单数: " + scannedOrders + "，补记支付订单数: " + recoveredOrders
+                + "，耗时: " + elapsedMillis + " ms");
     }
 
     /**
-     * 超时关单：关闭超过30分钟未支付的订单（简化版本）
-     * 注意：实际项目中需要先查询支付宝订单状态，确认未支付后再关闭
+     * 核对单个待支付订单的支付状态，支付渠道显示已支付时补记为已支付
+     * @return 是否补记成功
+     */
+    private boolean compensateOrder(Order order) {
+        try {
+            Map<String, String> trade = queryPaidTrade(order);
+            if (trade == null) {
+                return false; // 交易不存在（用户没有付款）或未支付成功
+            }
+            // 与支付回调走同一段逻辑，在独立事务中更新订单状态
+            // （时间轮中的超时任务到期时会发现订单已支付而跳过，不需要在这里取消）
+            String result = transactionTemplate.execute(status -> handleAlipayCallback(trade));
+            return "success".equals(result);
+        } catch (Exception e) {
+            System.err.println("掉单补偿失败，订单号: " + order.getOutTradeNo() + "，原因: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 向支付渠道查询订单是否已支付
+     * @return 已支付时返回查询结果（与支付回调参数格式一致）；交易不存在或未支付成功时返回 null，查询失败时抛出异常
+     */
+    private Map<String, String> queryPaidTrade(Order order) {
+        Map<String, String> trade = paymentGateway.queryTrade(order.getOutTradeNo());
+        if (trade == null) {
+            return null;
+        }
+        String tradeStatus = trade.get("trade_status");
+        return "TRADE_SUCCESS".equals(tradeStatus) || "TRADE_FINISHED".equals(tradeStatus) ? trade : null;
+    }
+
+    /**
+     * 超时关单：关闭超过30分钟未支付的订单
+     * 按 (order_time, id) 键集分页读取超时的待支付订单（不加锁），每页的订单在事务外并行向支付渠道查询支付状态：
+     * 已支付的订单按支付回调的逻辑补记为已支付，查询失败的订单本次跳过（分页游标越过它们，下一次关单再查），
+     * 只把确认未支付的订单放到一个小事务中锁定并关闭：
+     * 一条 UPDATE ... WHERE id IN (...) AND status = 1 关闭，再按演出汇总返还数量，每个演出只返还一次库存
      */
     @Override
     @Scheduled(fixedRate = 600000) // 每10分钟执行一次
-    @Transactional
     public void closeTimeoutOrders() {
-        // 查询30分钟前的待支付订单
-        LocalDateTime beforeTime = LocalDateTime.now().minusMinutes(30);
-        List<Order> pendingOrders = orderMapper.findPendingOrdersBefore(beforeTime);
+        // 查询超过支付超时时间（默认30分钟）的待支付订单
+        LocalDateTime beforeTime = LocalDateTime.now().minusMinutes(payTimeoutMinutes);
 
-        // 简化版本：直接关闭超时订单
-        // 实际项目中，应该先调用支付宝API查询订单状态，确认未支付后再关闭
-        for (Order order : pendingOrders) {
+        long startNanos = System.nanoTime();
+        int closedRows = 0;
+        int paidRows = 0;
+        LocalDateTime lastOrderTime = null;
+        Long lastId = null;
+        while (true) {
+            List<Order> page;
             try {
-                // TODO: 实际项目中，这里应该先调用支付宝API查询订单状态
-                // 如果订单在支付宝中未支付，才执行以下关闭操作
-                
-                // 更新订单状态为已取消（3=已取消，1=待支付）
-                orderMapper.updateStatus(order.getId(), order.getUserId(), 3, 1);
-                // 返还库存
-                showMapper.addStock(order.getShowId(), order.getQuantity());
+                page = orderMapper.findPendingOrdersAfter(beforeTime, lastOrderTime, lastId, closeChunkSize);
             } catch (Exception e) {
-                System.err.println("关闭订单失败: " + e.getMessage());
+                System.err.println("批量关单查询超时订单失败: " + e.getMessage());
+                break;
+            }
+            if (page.isEmpty()) {
+                break;
+            }
+
+            // 在补偿线程池中并行查询本页订单的支付状态（不持有数据库连接和行锁）
+            List<CompletableFuture<Map<String, String>>> queries = new ArrayList<>(page.size());
+            for (Order order : page) {
+                queries.add(CompletableFuture.supplyAsync(() -> queryPaidTrade(order), compensateExecutor));
+            }
+            List<Long> unpaidIds = new ArrayList<>(page.size());
+            for (int i = 0; i < page.size(); i++) {
+                Order order = page.get(i);
+                Map<String, String> trade;
+                try {
+                    trade = queries.get(i).join();
+                } catch (CompletionException e) {
+                    System.err.println("关单前查询支付状态失败，暂不关闭，订单号: " + order.getOutTradeNo()
+                            + "，原因: " + e.getCause().getMessage());
+                    continue;
+                }
+                if (trade == null) {
+                    unpaidIds.add(order.getId());
+                    continue;
+                }
+                // 已支付（支付回调丢失，或刚好在截止前付款）：与支付回调走同一段逻辑，在独立事务中补记为已支付
+                try {
+                    if ("success".equals(transactionTemplate.execute(status -> handleAlipayCallback(trade)))) {
+                        paidRows++;
+                    }
+                } catch (Exception e) {
+                    System.err.println("关单前补记支付失败，订单号: " + order.getOutTradeNo() + "，原因: " + e.getMessage());
+                }
+            }
+
+            if (!unpaidIds.isEmpty()) {
+                Integer closedInChunk;
+                try {
+                    closedInChunk = transactionTemplate.execute(status -> closeUnpaidOrders(unpaidIds));
+                } catch (Exception e) {
+                    System.err.println("批量关闭超时订单失败: " + e.getMessage());
+                    break;
+                }
+                closedRows += closedInChunk != null ? closedInChunk : 0;
+            }
+
+            Order last = page.get(page.size() - 1);
+            lastOrderTime = last.getOrderTime();
+            lastId = last.getId();
+            if (page.size() < closeChunkSize) {
+                break; // 最后一页
             }
         }
+        totalPaidOnClose.addAndGet(paidRows);
+
+        // 记录本次关单的统计数据
+        long elapsedMillis = Math.max((System.nanoTime() - startNanos) / 1_000_000, 1);
+        totalClosedOrders.addAndGet(closedRows);
+        lastClosedOrders = closedRows;
+        lastCloseMillis = elapsedMillis;
+        lastCloseTime = LocalDateTime.now();
+        if (closedRows > 0 || paidRows > 0) {
+            System.out.println("超时关单完成，关闭订单数: " + closedRows + "，补记支付订单数: " + paidRows
+                    + "，耗时: " + elapsedMillis + " ms，速度: " + (closedRows * 1000L / elapsedMillis) + " 单/秒");
+        }
     }
-}
 
+    /**
+     * 关闭一批已确认未支付的超时订单（在调用方的事务中执行）
+     * @param unpaidIds 支付渠道确认未支付的订单ID
+     * @return 本批关闭的订单数量
+     */
+    private int closeUnpaidOrders(List<Long> unpaidIds) {
+        // 锁定仍是待支付的订单：查询之后已经支付/取消的订单不会被选中，正在被支付/取消的订单会被跳过
+        List<Order> orders = orderMapper.lockPendingOrdersByIds(unpaidIds);
+        if (orders.isEmpty()) {
+            return 0;
+        }
+
+        // 一条 UPDATE 关闭整批订单（3=已取消，1=待支付）
+        List<Long> ids = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            ids.add(order.getId());
+        }
+        int updatedRows = orderMapper.updateStatusByIds(ids, 3, 1);
+        if (updatedRows != orders.size()) {
+            // 订单已被锁定，正常情况下不会出现；出现时回滚本批，避免返还错误的库存数量
+            throw new IllegalStateException("批量关单影响行数不一致，期望 " + orders.size() + "，实际 " + updatedRows);
+        }
+
+        // 开启合并返还时只标记库存待返还，与其他关单、取消的订单一起合并返还
+        if (restockService.isEnabled()) {
+            restockService.schedule(ids);
+            for (Order order : orders) {
+                purchaseLimitService.release(order.getShowId(), order.getUserId(), order.getQuantity());
+            }
+            seatService.releaseOrderSeats(ids);
+            return updatedRows;
+        }
+
+        // 按演出（场次、票档）汇总需要返还的数量，每个演出、每个场次、每个票档只返还一次库存
+        // 按全局加锁顺序返还：票档 → 场次 → 演出，同一类按ID从小到大（TreeMap），与批量下单一致，避免死锁
+        Map<Long, Integer> quantityByShow = new TreeMap<>();
+        Map<Long, Integer> quantityBySession = new TreeMap<>();
+        Map<Long, Long> showBySession = new HashMap<>();
+        Map<Long, Integer> quantityByTier = new TreeMap<>();
+        Map<Long, Long> showByTier = new HashMap<>();
+        for (Order order : orders) {
+            if (order.getSessionId() != null) {
+                quantityBySession.merge(order.getSessionId(), order.getQuantity(), Integer::sum);
+                showBySession.put(order.getSessionId(), order.getShowId());
+            } else {
+                quantityByShow.merge(order.getShowId(), order.getQuantity(), Integer::sum);
+            }
+            if (order.getTierId() != null) {
+                quantityByTier.merge(order.getTierId(), order.getQuantity(), Integer::sum);
+                showByTier.put(order.getTierId(), order.getShowId());
+            }
+        }
+        for (Map.Entry<Long, Integer> entry : quantityByTier.entrySet()) {
+            showTierService.returnStock(showByTier.get(entry.getKey()), entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Long, Integer> entry : quantityBySession.entrySet()) {
+            showSessionService.returnStock(showBySession.get(entry.getKey()), entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Long, Integer> entry : quantityByShow.entrySet()) {
+            stockService.returnStock(entry.getKey(), entry.getValue());
+        }
+        // 归还用户的限购额度（事务提交后生效）
+        for (Order order : orders) {
+            purchaseLimitService.release(order.getShowId(), order.getUserId(), order.getQuantity());
+        }
+        // 释放对号入座订单的座位
+        seatService.releaseOrderSeats(ids);
+        return updatedRows;
+    }
+
+    /**
+     * 查询超时关单的统计数据
+     */
+    @Override
+    public Map<String, Object> getCloseMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("chunkSize", closeChunkSize);
+        metrics.put("totalClosedOrders", totalClosedOrders.get());
+        metrics.put("totalPaidOnClose", totalPaidOnClose.get());
+        metrics.put("lastClosedOrders", lastClosedOrders);
+        metrics.put("lastCloseMillis", lastCloseMillis);
+        metrics.put("lastRowsPerSecond", lastCloseMillis > 0 ? lastClosedOrders * 1000L / lastCloseMillis : 0);
+        metrics.put("lastCloseTime", lastCloseTime);
+        return metrics;
+    }
+
+    /**
+     * 关闭单个超时未支付的订单并返还库存（由订单超时时间轮在支付截止时间触发）
+     * 先在事务外向支付渠道查询支付状态（不占用数据库连接），确认未支付后再用一个短事务关闭订单并返还库存
+     */
+    @Override
+    public boolean closeOrderIfUnpaid(Long orderId) {
+        Order order = orderMapper.getById(orderId);
+        if (order == null || order.getStatus() != 1) {
+            return false; // 订单不存在，或已支付/已取消
+        }
+        // 截止前刚付款但回调还没到的订单补记为已支付，不关闭也不返还库存；
+        // 查询失败时暂不关闭，由定时批量关单重试
+        Map<String, String> trade;
+        try {
+            trade = queryPaidTrade(order);
+        } catch (Exception e) {
+            System.err.println("关单前查询支付状态失败，暂不关闭，订单号: " + order.getOutTradeNo() + "，原因: " + e.getMessage());
+            return false;
+        }
+        if (trade != null) {
+            if ("success".equals(transactionTemplate.execute(status -> handleAlipayCallback(trade)))) {
+                totalPaidOnClose.incrementAndGet();
+            }
+            return false;
+        }
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> closeUnpaidOrder(order)));
+    }
+
+    /**
+     * 关闭一个支付渠道确认未支付的订单并返还库存（在调用方的事务中执行）
+     * @return 订单仍是待支付状态、关闭成功时返回 true
+     */
+    private boolean closeUnpaidOrder(Order order) {
+        Long orderId = order.getId();
+        // 更新订单状态为已取消（3=已取消，1=待支付），只有仍是待支付状态才会更新成功
+        int updatedRows = orderMapper.updateStatus(order.getId(), order.getUserId(), 3, 1);
+        if (updatedRows == 1) {
+            if (restockService.isEnabled()) {
+                // 大量订单同时超时时，合并成每个演出一次返还
+                restockService.schedule(Collections.singletonList(orderId));
+            } else {
+                // 按全局加锁顺序返还：票档 → 场次/演出
+                if (order.getTierId() != null) {
+                    showTierService.returnStock(order.getShowId(), order.getTierId(), order.getQuantity());
+                }
+                if (order.getSessionId() != null) {
+                    showSessionService.returnStock(order.getShowId(), order.getSessionId(), order.getQuantity());
+                } else {
+                    stockService.returnStock(order.getShowId(), order.getQuantity());
+                }
+            }
+            purchaseLimitService.release(order.getShowId(), order.getUserId(), order.getQuantity());
+            seatService.releaseOrderSeats(Collections.singletonList(orderId));
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+package com.mianzi.showticketsystem.service;
+
+/**
+ * 限购业务逻辑接口
+ * 在内存中记录每个用户在每个演出已购买的票数，下单时检查是否超过演出的限购数量，不需要每次查询订单表
+ */
+public interface PurchaseLimitService {
+
+    /**
+     * 占用限购额度（在下单事务中调用，事务回滚时自动归还）
+     * @param showId 演出ID
+     * @param userId 用户ID
+     * @param quantity 购买数量
+     * @param maxPerUser 演出的限购数量（为空或小于等于0表示不限购）
+     * @return 未超过限购数量返回 true，超过返回 false
+     */
+    boolean tryAcquire(Long showId, Long userId, int quantity, Integer maxPerUser);
+
+    /**
+     * 归还限购额度（订单取消、超时关闭或下单失败时调用，在事务中调用时事务提交后才生效）
+     * @param showId 演出ID
+     * @param userId 用户ID
+     * @param quantity 归还数量
+     */
+    void release(Long showId, Long userId, int quantity);
+}
@@ -0,0 +1,123 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.OrderMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PurchaseLimitService 接口的实现类
+ * 每个 (showId, userId) 一个计数器，第一次用到时从订单表统计已购买数量，之后只在内存中用 CAS 增减；
+ * 计数器放在 ConcurrentHashMap 中，不同用户的计数器互不竞争。
+ * 长时间没有访问的计数器会被清理，下次用到时重新从订单表统计（仅适用于单实例部署，多实例时各实例只统计本实例的下单）
+ */
+@Service
+public class PurchaseLimitServiceImpl implements PurchaseLimitService {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    // 计数器闲置多久后被清理（毫秒）
+    @Value("${order.purchase-limit.idle-ms:1800000}")
+    private long idleMs;
+
+    // 已购买数量计数器：showId:userId -> 计数器
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 已购买数量计数器
+     */
+    private static class Counter {
+        final AtomicInteger purchased;
+        volatile long lastAccessMillis;
+
+        Counter(int purchased) {
+            this.purchased = new AtomicInteger(purchased);
+            this.lastAccessMillis = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(Long showId, Long userId, int quantity, Integer maxPerUser) {
+        if (maxPerUser == null || maxPerUser <= 0) {
+            return true; // 不限购
+        }
+        Counter counter = loadCounter(showId, userId);
+        counter.lastAccessMillis = System.currentTimeMillis();
+        while (true) {
+            int current = counter.purchased.get();
+            if (current + quantity > maxPerUser) {
+                return false;
+            }
+            if (counter.purchased.compareAndSet(current, current + quantity)) {
+                break;
+            }
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 下单事务回滚时归还额度
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        counter.purchased.addAndGet(-quantity);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    @Override
+    public void release(Long showId, Long userId, int quantity) {
+        Counter counter = counters.get(key(showId, userId));
+        if (counter == null) {
+            return; // 计数器不在内存中，下次用到时会从订单表重新统计
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 订单状态变更提交后再归还，避免事务回滚后额度被多归还
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counter.purchased.addAndGet(-quantity);
+                }
+            });
+        } else {
+            counter.purchased.addAndGet(-quantity);
+        }
+    }
+
+    /**
+     * 定时清理长时间没有访问的计数器（每10分钟一次）
+     */
+    @Scheduled(fixedRate = 600000)
+    public void evictIdleCounters() {
+        long expireBefore = System.currentTimeMillis() - idleMs;
+        counters.values().removeIf(counter -> counter.lastAccessMillis < expireBefore);
+    }
+
+    /**
+     * 获取计数器，不在内存中时从订单表统计已购买数量
+     */
+    private Counter loadCounter(Long showId, Long userId) {
+        String key = key(showId, userId);
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        // 在 ConcurrentHashMap 外查询数据库，避免查询期间阻塞其他 key
+        Counter loaded = new Counter(orderMapper.sumPurchasedQuantity(showId, userId));
+        Counter existing = counters.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static String key(Long showId, Long userId) {
+        return showId + ":" + userId;
+    }
+}
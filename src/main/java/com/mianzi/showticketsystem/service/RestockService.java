@@ -0,0 +1,44 @@
+package com.mianzi.showticketsystem.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 库存合并返还业务逻辑接口
+ * 大量待支付订单同时超时（或集中取消）时，逐单返还库存会让每个订单都去争抢买家正在扣减的同一行演出库存。
+ * 开启合并返还后，取消/关闭订单的事务只把订单标记为"库存待返还"，事务提交后订单进入合并队列，
+ * 由定时任务在一个很短的窗口后按演出（场次、票档）汇总，每个演出只执行一次返还库存的 UPDATE。
+ *
+ * 订单表的 stock_returned 字段记录库存是否已返还，返还库存和修改该字段在同一个事务中提交，
+ * 实例崩溃时队列中的订单不会丢失：重启后（以及定时）按订单状态重新把库存待返还的订单加入队列
+ */
+public interface RestockService {
+
+    /**
+     * 是否开启库存合并返还（未开启时取消/关闭订单直接返还库存）
+     */
+    boolean isEnabled();
+
+    /**
+     * 把已取消/已关闭的订单加入合并返还（在修改订单状态的同一个事务中调用）：
+     * 标记订单库存待返还，事务提交后加入合并队列，事务回滚时不会返还
+     * @param orderIds 订单ID列表
+     */
+    void schedule(List<Long> orderIds);
+
+    /**
+     * 把合并队列中的订单按演出汇总后返还库存（定时调用）
+     */
+    void flush();
+
+    /**
+     * 从订单表恢复库存待返还的订单（应用启动时和定时调用）
+     * @return 加入队列的订单数量
+     */
+    int recover();
+
+    /**
+     * 查询合并返还统计（队列长度、累计返还订单数、累计执行的返还库存 UPDATE 数）
+     */
+    Map<String, Object> getMetrics();
+}
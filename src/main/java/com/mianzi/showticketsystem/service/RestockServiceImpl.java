@@ -0,0 +1,217 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.OrderMapper;
+import com.mianzi.showticketsystem.model.entity.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RestockService 接口的实现类
+ * 每次合并最多 restock.flush-chunk-size 个订单，在一个事务中：
+ * 1. 锁定其中库存仍待返还的订单（已经被其他实例或恢复任务返还过的订单不会再返还一次）
+ * 2. 把这些订单标记为库存已返还
+ * 3. 按票档、场次、演出汇总数量，每个票档/场次/演出执行一次返还，
+ *    按全局加锁顺序（票档 → 场次 → 演出，同一类按ID从小到大）加锁，与批量下单、关单的顺序一致，避免死锁
+ * 事务失败时订单放回队列，下次再合并
+ */
+@Service
+public class RestockServiceImpl implements RestockService {
+
+    // 恢复时每页读取的订单数
+    private static final int RECOVER_PAGE_SIZE = 1000;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ShowSessionService showSessionService;
+
+    @Autowired
+    private ShowTierService showTierService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 是否开启库存合并返还
+    @Value("${restock.coalesce.enabled:false}")
+    private boolean enabled;
+
+    // 每个事务合并的最大订单数
+    @Value("${restock.flush-chunk-size:1000}")
+    private int flushChunkSize;
+
+    // 合并队列：库存待返还的订单ID
+    private final ConcurrentLinkedQueue<Long> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong restockedOrders = new AtomicLong();
+    private final AtomicLong restockUpdates = new AtomicLong();
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void schedule(List<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return;
+        }
+        orderMapper.markStockPending(orderIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 订单状态和待返还标记提交后再加入队列
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    queue.addAll(orderIds);
+                }
+            });
+        } else {
+            queue.addAll(orderIds);
+        }
+    }
+
+    /**
+     * 定时合并返还库存（默认每200毫秒一次）
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${restock.flush-interval-ms:200}")
+    public void flush() {
+        while (!queue.isEmpty()) {
+            List<Long> ids = new ArrayList<>();
+            Long id;
+            while (ids.size() < flushChunkSize && (id = queue.poll()) != null) {
+                ids.add(id);
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> restock(ids));
+            } catch (Exception e) {
+                // 数据库暂时不可用：放回队列，下次再合并
+                queue.addAll(ids);
+                System.err.println("合并返还库存失败，订单数: " + ids.size() + "，原因: " + e.getMessage());
+                return;
+            }
+            if (ids.size() < flushChunkSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 应用启动完成后恢复崩溃前队列中尚未返还的订单
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            int count = recover();
+            if (count > 0) {
+                System.out.println("库存合并返还队列恢复完成，待返还订单数: " + count);
+            }
+        } catch (Exception e) {
+            // 数据库暂时不可用时不影响启动，定时恢复任务会兜底
+            System.err.println("库存合并返还队列恢复失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 定时恢复（默认每10分钟一次），兜底其他实例崩溃后没有重启的情况
+     * 队列中已有的订单可能被重复加入，合并时只会返还一次
+     */
+    @Override
+    @Scheduled(initialDelayString = "${restock.recover-interval-ms:600000}", fixedDelayString = "${restock.recover-interval-ms:600000}")
+    public int recover() {
+        int count = 0;
+        long afterId = 0;
+        while (true) {
+            List<Long> ids = orderMapper.findStockPendingOrderIds(afterId, RECOVER_PAGE_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            queue.addAll(ids);
+            count += ids.size();
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < RECOVER_PAGE_SIZE) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("queuedOrders", queue.size());
+        metrics.put("restockedOrders", restockedOrders.get());
+        metrics.put("restockUpdates", restockUpdates.get());
+        return metrics;
+    }
+
+    /**
+     * 合并返还一批订单的库存（在调用方的事务中执行）
+     */
+    private void restock(List<Long> ids) {
+        List<Order> orders = orderMapper.lockStockPendingOrders(ids);
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<Long> lockedIds = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            lockedIds.add(order.getId());
+        }
+        orderMapper.markStockReturned(lockedIds);
+
+        // 按票档、场次、演出汇总（TreeMap 按ID顺序加锁）
+        Map<Long, Integer> quantityByShow = new TreeMap<>();
+        Map<Long, Integer> quantityBySession = new TreeMap<>();
+        Map<Long, Long> showBySession = new HashMap<>();
+        Map<Long, Integer> quantityByTier = new TreeMap<>();
+        Map<Long, Long> showByTier = new HashMap<>();
+        for (Order order : orders) {
+            if (order.getSessionId() != null) {
+                quantityBySession.merge(order.getSessionId(), order.getQuantity(), Integer::sum);
+                showBySession.put(order.getSessionId(), order.getShowId());
+            } else {
+                quantityByShow.merge(order.getShowId(), order.getQuantity(), Integer::sum);
+            }
+            if (order.getTierId() != null) {
+                quantityByTier.merge(order.getTierId(), order.getQuantity(), Integer::sum);
+                showByTier.put(order.getTierId(), order.getShowId());
+            }
+        }
+        for (Map.Entry<Long, Integer> entry : quantityByTier.entrySet()) {
+            showTierService.returnStock(showByTier.get(entry.getKey()), entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Long, Integer> entry : quantityBySession.entrySet()) {
+            if (!showSessionService.returnStock(showBySession.get(entry.getKey()), entry.getKey(), entry.getValue())) {
+                System.err.println("返还场次库存失败（场次不存在），场次ID: " + entry.getKey() + "，数量: " + entry.getValue());
+            }
+        }
+        // 演出库存最后返还：memory 模式下返还到内存账本，不随事务回滚
+        for (Map.Entry<Long, Integer> entry : quantityByShow.entrySet()) {
+            if (!stockService.returnStock(entry.getKey(), entry.getValue())) {
+                // 演出已下架，库存没有地方可以返还，订单仍然标记为已返还，避免反复重试
+                System.err.println("返还演出库存失败（演出已下架），演出ID: " + entry.getKey() + "，数量: " + entry.getValue());
+            }
+        }
+        restockedOrders.addAndGet(orders.size());
+        restockUpdates.addAndGet(quantityByShow.size() + quantityBySession.size() + quantityByTier.size());
+    }
+}
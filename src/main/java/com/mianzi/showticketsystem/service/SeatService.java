@@ -0,0 +1,84 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.dto.SeatLayout;
+import com.mianzi.showticketsystem.model.entity.OrderSeat;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 座位业务逻辑接口
+ * 对号入座的演出用座位位图记录每个座位是否已售出，选座、占座和释放座位都只操作内存中的位图，
+ * 已售座位同时写入 order_seat 表，重启后从表中恢复位图。
+ * 多场次的演出各场次共用同一个场馆布局，但每个场次单独记录已售座位（同一个座位在每个场次都可以卖一次）
+ */
+public interface SeatService {
+
+    /**
+     * 设置演出的座位布局（管理端），已经有座位售出的演出不能修改
+     * @param showId 演出ID
+     * @param layout 座位布局，座位总数必须等于演出的总票数（多场次的演出必须等于每个场次的票数）
+     * @return 设置成功返回 true
+     */
+    boolean saveSeatLayout(Long showId, SeatLayout layout);
+
+    /**
+     * 演出是否设置了座位图（对号入座的演出只能通过选座下单）
+     * @param showId 演出ID（必须是存在的演出）
+     * @return 有座位图返回 true
+     */
+    boolean hasSeatMap(Long showId);
+
+    /**
+     * 查询演出某个场次的座位图
+     * @param showId 演出ID
+     * @param sessionId 场次ID（有场次的演出必填，没有场次的演出为 null）
+     * @return layout（座位布局）、sessionId、totalSeats、availableSeats、soldBitmap（Base64编码的位图，
+     *         第 i 个座位对应第 i/8 个字节的第 i%8 位，1 表示已售出）；演出没有座位图或场次不匹配时返回 null
+     */
+    Map<String, Object> getSeatMap(Long showId, Long sessionId);
+
+    /**
+     * 占用座位（在下单事务中调用，事务回滚时自动释放）
+     * @param showId 演出ID
+     * @param sessionId 场次ID（有场次的演出必填，没有场次的演出为 null）
+     * @param seatNos 用户选择的座位编号；为空时自动选择最佳的 count 个相邻座位
+     * @param count 自动选座的座位数
+     * @param tierId 票档ID（可选）：自选的座位必须都属于该票档，自动选座只在该票档中选择
+     * @return 占用的座位（尚未关联订单），场次不匹配、座位已被占用、不属于指定票档或没有满足条件的座位时返回 null
+     */
+    List<OrderSeat> reserveSeats(Long showId, Long sessionId, List<Integer> seatNos, int count, Long tierId);
+
+    /**
+     * 立即释放尚未写入数据库的座位（占座后下单失败时调用）
+     * @param showId 演出ID
+     * @param seats 占用的座位
+     */
+    void cancelReservation(Long showId, List<OrderSeat> seats);
+
+    /**
+     * 把占用的座位分配给订单，写入 order_seat 表
+     * @param orderId 订单ID
+     * @param seats 占用的座位
+     */
+    void assignSeats(Long orderId, List<OrderSeat> seats);
+
+    /**
+     * 查询订单的座位
+     * @param orderId 订单ID
+     * @return 订单座位列表（非对号入座的订单为空列表）
+     */
+    List<OrderSeat> getOrderSeats(Long orderId);
+
+    /**
+     * 释放订单的座位（订单取消或超时关闭时调用，事务提交后位图中的座位才变为空闲）
+     * @param orderIds 订单ID列表
+     */
+    void releaseOrderSeats(List<Long> orderIds);
+
+    /**
+     * 删除演出的座位图（演出删除时调用）
+     * @param showId 演出ID
+     */
+    void deleteSeatMap(Long showId);
+}
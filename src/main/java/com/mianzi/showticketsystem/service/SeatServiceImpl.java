@@ -0,0 +1,398 @@
+package com.mianzi.showticketsystem.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mianzi.showticketsystem.mapper.SeatMapper;
+import com.mianzi.showticketsystem.mapper.ShowMapper;
+import com.mianzi.showticketsystem.model.dto.SeatLayout;
+import com.mianzi.showticketsystem.model.entity.OrderSeat;
+import com.mianzi.showticketsystem.model.entity.Show;
+import com.mianzi.showticketsystem.model.entity.ShowSeatMap;
+import com.mianzi.showticketsystem.model.entity.ShowSession;
+import com.mianzi.showticketsystem.util.SeatBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SeatService 接口的实现类
+ * 每个演出的座位布局第一次用到时从数据库加载，之后常驻内存；
+ * 多场次的演出共用同一个场馆布局，每个场次有自己的位图，第一次用到时从 order_seat 表恢复该场次的已售座位
+ */
+@Service
+public class SeatServiceImpl implements SeatService {
+
+    // 座位图最多包含的座位数
+    private static final int MAX_SEATS = 200_000;
+
+    // 自动选座时，选中的座位被并发抢走后的最大重试次数
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+
+    // 没有场次的演出在 order_seat 表和位图中使用的场次ID
+    private static final long NO_SESSION = 0L;
+
+    @Autowired
+    private SeatMapper seatMapper;
+
+    @Autowired
+    private ShowMapper showMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ShowSessionService showSessionService;
+
+    // "没有座位图"的缓存有效期（毫秒），过期后重新查询，其他实例设置的座位图最多延迟这么久生效
+    private static final long NO_SEAT_MAP_TTL_MS = 60000;
+
+    // 内存中的座位图：showId -> 座位图（其中按场次保存位图）
+    private final Map<Long, SeatMap> seatMaps = new ConcurrentHashMap<>();
+
+    // 没有座位图的演出：showId -> 查询时间，避免普通演出每次下单都查询座位图表
+    private final Map<Long, Long> noSeatMap = new ConcurrentHashMap<>();
+
+    /**
+     * 内存中的座位图：布局 + 每排所在的分区和排号 + 每个场次的位图
+     */
+    private static class SeatMap {
+        final SeatLayout layout;
+        final int[] rowLengths;     // 每排的座位数
+        final int[] rowTiers;       // 每排所属的票档（没有票档为 -1）
+        final String[] rowSections; // 每排所在分区的名称
+        final int[] rowNumbers;     // 每排在分区内的排号（从1开始）
+        // 场次ID（没有场次为 NO_SESSION）-> 该场次的位图
+        final Map<Long, SeatBitmap> bitmaps = new ConcurrentHashMap<>();
+
+        SeatMap(SeatLayout layout) {
+            List<Integer> lengths = new ArrayList<>();
+            List<Integer> tiers = new ArrayList<>();
+            List<String> sections = new ArrayList<>();
+            List<Integer> numbers = new ArrayList<>();
+            for (SeatLayout.Section section : layout.getSections()) {
+                for (int i = 0; i < section.getRows().size(); i++) {
+                    lengths.add(section.getRows().get(i));
+                    tiers.add(section.getTierId() != null ? section.getTierId() : -1);
+                    sections.add(section.getName());
+                    numbers.add(i + 1);
+                }
+            }
+            this.layout = layout;
+            this.rowLengths = toArray(lengths);
+            this.rowTiers = toArray(tiers);
+            this.rowSections = sections.toArray(new String[0]);
+            this.rowNumbers = toArray(numbers);
+        }
+
+        SeatBitmap newBitmap() {
+            return new SeatBitmap(rowLengths, rowTiers);
+        }
+
+        OrderSeat toOrderSeat(Long showId, Long sessionId, SeatBitmap bitmap, int seatNo) {
+            int row = bitmap.rowOf(seatNo);
+            return new OrderSeat()
+                    .setShowId(showId)
+                    .setSessionId(sessionId)
+                    .setSeatNo(seatNo)
+                    .setSectionName(rowSections[row])
+                    .setRowNo(rowNumbers[row])
+                    .setSeatInRow(seatNo - bitmap.rowStart(row) + 1);
+        }
+
+        private static int[] toArray(List<Integer> values) {
+            int[] array = new int[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            return array;
+        }
+    }
+
+    @Override
+    public boolean saveSeatLayout(Long showId, SeatLayout layout) {
+        Show show = showMapper.getById(showId);
+        if (show == null || layout == null || layout.getSections() == null || layout.getSections().isEmpty()) {
+            return false;
+        }
+        int totalSeats = 0;
+        for (SeatLayout.Section section : layout.getSections()) {
+            if (section.getRows() == null || section.getRows().isEmpty()) {
+                return false;
+            }
+            for (Integer seats : section.getRows()) {
+                if (seats == null || seats <= 0) {
+                    return false;
+                }
+                totalSeats += seats;
+            }
+        }
+        if (totalSeats > MAX_SEATS) {
+            return false;
+        }
+        // 座位数必须与总票数一致（多场次的演出与每个场次的票数一致），保证选座下单和库存扣减一致
+        List<ShowSession> sessions = showSessionService.getSessions(showId);
+        if (sessions.isEmpty()) {
+            if (totalSeats != show.getTotalTickets()) {
+                return false;
+            }
+        } else {
+            for (ShowSession session : sessions) {
+                if (session.getTotalTickets() == null || totalSeats != session.getTotalTickets()) {
+                    return false;
+                }
+            }
+        }
+        if (seatMapper.countSoldSeats(showId) > 0) {
+            return false; // 已经有座位售出（任一场次），不能修改布局
+        }
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(layout);
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+        seatMapper.saveSeatMap(new ShowSeatMap().setShowId(showId).setLayout(json).setTotalSeats(totalSeats));
+        seatMaps.remove(showId);
+        noSeatMap.remove(showId);
+        return true;
+    }
+
+    /**
+     * 调用方需保证演出存在（"没有座位图"的缓存只记录存在的演出，数量有上限）
+     */
+    @Override
+    public boolean hasSeatMap(Long showId) {
+        Long checkedAt = noSeatMap.get(showId);
+        if (checkedAt != null && System.currentTimeMillis() - checkedAt < NO_SEAT_MAP_TTL_MS) {
+            return false;
+        }
+        if (loadSeatMap(showId) != null) {
+            return true;
+        }
+        noSeatMap.put(showId, System.currentTimeMillis());
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> getSeatMap(Long showId, Long sessionId) {
+        SeatMap seatMap = loadSeatMap(showId);
+        if (seatMap == null || !isValidSession(showId, sessionId)) {
+            return null;
+        }
+        SeatBitmap bitmap = loadBitmap(showId, seatMap, sessionId);
+        Map<String, Object> result = new HashMap<>();
+        result.put("layout", seatMap.layout);
+        result.put("sessionId", sessionId);
+        result.put("totalSeats", bitmap.capacity());
+        result.put("availableSeats", bitmap.availableCount());
+        result.put("soldBitmap", Base64.getEncoder().encodeToString(bitmap.toByteArray()));
+        return result;
+    }
+
+    @Override
+    public List<OrderSeat> reserveSeats(Long showId, Long sessionId, List<Integer> seatNos, int count, Long tierId) {
+        SeatMap seatMap = loadSeatMap(showId);
+        if (seatMap == null || !isValidSession(showId, sessionId)) {
+            return null;
+        }
+        SeatBitmap bitmap = loadBitmap(showId, seatMap, sessionId);
+        int tier = tierId != null ? tierId.intValue() : -1;
+
+        int[] reserved = null;
+        if (seatNos != null && !seatNos.isEmpty()) {
+            // 用户自选座位：全部空闲时一次性占用
+            int[] selected = new int[seatNos.size()];
+            for (int i = 0; i < selected.length; i++) {
+                Integer seatNo = seatNos.get(i);
+                if (seatNo == null || seatNo < 0 || seatNo >= bitmap.capacity()) {
+                    return null;
+                }
+                if (tier >= 0 && bitmap.rowTier(bitmap.rowOf(seatNo)) != tier) {
+                    return null; // 座位不属于指定的票档
+                }
+                selected[i] = seatNo;
+            }
+            if (bitmap.reserve(selected)) {
+                reserved = selected;
+            }
+        } else {
+            // 自动选座：查找最佳的相邻座位并占用，被并发抢走时重新查找
+            for (int attempt = 0; attempt < MAX_RESERVE_ATTEMPTS && reserved == null; attempt++) {
+                int[] best = bitmap.findBestAvailable(count, tier);
+                if (best == null) {
+                    break;
+                }
+                if (bitmap.reserve(best)) {
+                    reserved = best;
+                }
+            }
+        }
+        if (reserved == null) {
+            return null;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 下单事务回滚时释放座位
+            int[] seatsToRelease = reserved;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        bitmap.release(seatsToRelease);
+                    }
+                }
+            });
+        }
+
+        List<OrderSeat> seats = new ArrayList<>(reserved.length);
+        for (int seatNo : reserved) {
+            seats.add(seatMap.toOrderSeat(showId, sessionId, bitmap, seatNo));
+        }
+        return seats;
+    }
+
+    @Override
+    public void cancelReservation(Long showId, List<OrderSeat> seats) {
+        SeatMap seatMap = seatMaps.get(showId);
+        if (seatMap == null || seats == null) {
+            return;
+        }
+        // 按场次分组释放（位图还没有加载的场次，下次加载时会从数据库恢复）
+        Map<Long, List<OrderSeat>> seatsBySession = new HashMap<>();
+        for (OrderSeat seat : seats) {
+            seatsBySession.computeIfAbsent(sessionKey(seat.getSessionId()), k -> new ArrayList<>()).add(seat);
+        }
+        for (Map.Entry<Long, List<OrderSeat>> entry : seatsBySession.entrySet()) {
+            SeatBitmap bitmap = seatMap.bitmaps.get(entry.getKey());
+            if (bitmap != null) {
+                bitmap.release(toSeatNos(entry.getValue()));
+            }
+        }
+    }
+
+    @Override
+    public void assignSeats(Long orderId, List<OrderSeat> seats) {
+        for (OrderSeat seat : seats) {
+            seat.setOrderId(orderId);
+        }
+        // show_id + session_id + seat_no 唯一：多实例部署时同一座位被两个实例同时卖出，后插入的一方会失败并回滚
+        seatMapper.insertOrderSeats(seats);
+    }
+
+    @Override
+    public List<OrderSeat> getOrderSeats(Long orderId) {
+        return seatMapper.findByOrderIds(Collections.singletonList(orderId));
+    }
+
+    @Override
+    public void releaseOrderSeats(List<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return;
+        }
+        List<OrderSeat> seats = seatMapper.findByOrderIds(orderIds);
+        if (seats.isEmpty()) {
+            return; // 非对号入座的订单
+        }
+        seatMapper.deleteByOrderIds(orderIds);
+
+        // 按演出分组，事务提交后在位图中释放座位
+        Map<Long, List<OrderSeat>> seatsByShow = new HashMap<>();
+        for (OrderSeat seat : seats) {
+            seatsByShow.computeIfAbsent(seat.getShowId(), k -> new ArrayList<>()).add(seat);
+        }
+        Runnable release = () -> {
+            for (Map.Entry<Long, List<OrderSeat>> entry : seatsByShow.entrySet()) {
+                cancelReservation(entry.getKey(), entry.getValue());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release.run();
+                }
+            });
+        } else {
+            release.run();
+        }
+    }
+
+    @Override
+    public void deleteSeatMap(Long showId) {
+        seatMapper.deleteSeatMap(showId);
+        seatMaps.remove(showId);
+        noSeatMap.remove(showId);
+    }
+
+    /**
+     * 场次是否与演出匹配：没有场次的演出不能指定场次，有场次的演出必须指定存在的场次
+     */
+    private boolean isValidSession(Long showId, Long sessionId) {
+        if (showSessionService.getSessions(showId).isEmpty()) {
+            return sessionId == null;
+        }
+        return sessionId != null && showSessionService.getSession(showId, sessionId) != null;
+    }
+
+    private static long sessionKey(Long sessionId) {
+        return sessionId != null ? sessionId : NO_SESSION;
+    }
+
+    /**
+     * 获取场次的位图，不在内存中时创建并从数据库恢复该场次已售出的座位
+     */
+    private SeatBitmap loadBitmap(Long showId, SeatMap seatMap, Long sessionId) {
+        long key = sessionKey(sessionId);
+        SeatBitmap bitmap = seatMap.bitmaps.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        SeatBitmap loaded = seatMap.newBitmap();
+        for (Integer seatNo : seatMapper.findSoldSeatNos(showId, key)) {
+            loaded.reserve(new int[]{seatNo});
+        }
+        SeatBitmap existing = seatMap.bitmaps.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * 获取内存中的座位图，不在内存中时从数据库加载；演出没有座位图时返回 null
+     */
+    private SeatMap loadSeatMap(Long showId) {
+        SeatMap seatMap = seatMaps.get(showId);
+        if (seatMap != null) {
+            return seatMap;
+        }
+        ShowSeatMap stored = seatMapper.getSeatMap(showId);
+        if (stored == null) {
+            return null;
+        }
+        SeatMap loaded;
+        try {
+            loaded = new SeatMap(objectMapper.readValue(stored.getLayout(), SeatLayout.class));
+        } catch (JsonProcessingException e) {
+            System.err.println("解析座位布局失败，演出ID: " + showId + "，原因: " + e.getMessage());
+            return null;
+        }
+        SeatMap existing = seatMaps.putIfAbsent(showId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static int[] toSeatNos(List<OrderSeat> seats) {
+        int[] seatNos = new int[seats.size()];
+        for (int i = 0; i < seatNos.length; i++) {
+            seatNos[i] = seats.get(i).getSeatNo();
+        }
+        return seatNos;
+    }
+}
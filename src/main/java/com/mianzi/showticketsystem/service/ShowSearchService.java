@@ -0,0 +1,48 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.entity.PageResult;
+import com.mianzi.showticketsystem.model.entity.Show;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 演出搜索业务逻辑接口
+ * 在内存中维护演出名称、场馆、地区、分类的二元分词倒排索引，搜索时不再对 show 表做 LIKE 全表扫描；
+ * 发布、修改、删除演出时增量更新索引，并定时全量重建（多实例部署时同步其他实例的修改）
+ */
+public interface ShowSearchService {
+
+    /**
+     * 搜索演出（分页，按相关度排序，相关度相同时按开始时间排序）
+     * @param keyword 关键词（多个词用空格分隔，每个词都要匹配）
+     * @param startFrom 开始时间下限（可选，包含；演出或任一场次在范围内即可）
+     * @param startTo 开始时间上限（可选，不包含）
+     * @param pageNum 当前页码
+     * @param pageSize 每页数量
+     * @return 分页结果；索引还没有建立时返回 null，由调用方查询数据库
+     */
+    PageResult<Show> search(String keyword, LocalDateTime startFrom, LocalDateTime startTo, int pageNum, int pageSize);
+
+    /**
+     * 演出发布或修改后更新索引（演出已下架时从索引中删除）
+     * @param show 修改后的演出
+     */
+    void index(Show show);
+
+    /**
+     * 演出删除后从索引中删除
+     * @param showId 演出ID
+     */
+    void remove(Long showId);
+
+    /**
+     * 从数据库流式读取所有上架演出，重建索引（建立完成后整体替换）
+     */
+    void rebuild();
+
+    /**
+     * 查询索引统计（文档数、二元词数、查询次数、重建次数和耗时）
+     */
+    Map<String, Object> getMetrics();
+}
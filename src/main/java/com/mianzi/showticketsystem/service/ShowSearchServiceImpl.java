@@ -0,0 +1,267 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.ShowMapper;
+import com.mianzi.showticketsystem.model.entity.PageResult;
+import com.mianzi.showticketsystem.model.entity.Show;
+import com.mianzi.showticketsystem.util.BigramSearchIndex;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ShowSearchService 接口的实现类
+ * 索引字段及权重：名称 8、场馆 4、分类 2、地区 1。
+ * 时间范围先用索引中的开始和结束时间过滤：开始时间在范围内的直接命中，结束时间早于下限的直接排除，
+ * 只有开始时间早于下限、结束时间晚于下限的演出（多场次或长期演出）才到数据库按场次确认。
+ * 重建期间修改的演出记录下来，重建完成后按数据库的最新状态补到新索引，再替换旧索引
+ */
+@Service
+public class ShowSearchServiceImpl implements ShowSearchService {
+
+    // 字段顺序：名称、场馆、分类、地区
+    private static final int[] FIELD_WEIGHTS = {8, 4, 2, 1};
+
+    // 批量查询时每次 IN 的ID数
+    private static final int ID_CHUNK_SIZE = 500;
+
+    @Autowired
+    private ShowMapper showMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 是否使用内存索引搜索（关闭时使用 LIKE 查询）
+    @Value("${search.index.enabled:true}")
+    private boolean enabled;
+
+    // 当前索引，建立完成之前为 null
+    private volatile BigramSearchIndex<SearchDocument> index;
+
+    // 更新索引和替换索引互斥
+    private final Object writeLock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    // 重建期间修改过的演出
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile long lastRebuildMillis;
+    private volatile LocalDateTime lastRebuildTime;
+
+    /**
+     * 索引中附带的演出时间，用于时间范围过滤和同分时排序
+     */
+    private static class SearchDocument {
+        final LocalDateTime startTime;
+        final LocalDateTime endTime;
+
+        SearchDocument(LocalDateTime startTime, LocalDateTime endTime) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+    }
+
+    @Override
+    public PageResult<Show> search(String keyword, LocalDateTime startFrom, LocalDateTime startTo, int pageNum, int pageSize) {
+        BigramSearchIndex<SearchDocument> current = index;
+        if (!enabled || current == null) {
+            return null;
+        }
+        searches.increment();
+
+        List<Long> ids = current.search(keyword, doc -> {
+            if (startTo != null && doc.startTime != null && !doc.startTime.isBefore(startTo)) {
+                return false;
+            }
+            LocalDateTime lastTime = doc.endTime != null ? doc.endTime : doc.startTime;
+            return startFrom == null || lastTime == null || !lastTime.isBefore(startFrom);
+        });
+
+        // 开始时间早于下限的演出可能有场次在范围内，到数据库确认
+        if (startFrom != null) {
+            List<Long> uncertain = new ArrayList<>();
+            for (Long id : ids) {
+                SearchDocument doc = current.getPayload(id);
+                if (doc == null || doc.startTime == null || doc.startTime.isBefore(startFrom)) {
+                    uncertain.add(id);
+                }
+            }
+            if (!uncertain.isEmpty()) {
+                Set<Long> confirmed = new HashSet<>();
+                for (int i = 0; i < uncertain.size(); i += ID_CHUNK_SIZE) {
+                    confirmed.addAll(showMapper.findIdsInStartTimeRange(
+                            uncertain.subList(i, Math.min(i + ID_CHUNK_SIZE, uncertain.size())), startFrom, startTo));
+                }
+                Set<Long> rejected = new HashSet<>(uncertain);
+                rejected.removeAll(confirmed);
+                ids.removeIf(rejected::contains);
+            }
+        }
+
+        int total = ids.size();
+        int from = (int) Math.min((long) (pageNum - 1) * pageSize, total);
+        int to = (int) Math.min((long) from + pageSize, total);
+        return PageResult.build(total, pageNum, pageSize, loadShows(ids.subList(from, to)));
+    }
+
+    @Override
+    public void index(Show show) {
+        if (!enabled || show == null || show.getId() == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            BigramSearchIndex<SearchDocument> current = index;
+            if (current != null) {
+                apply(current, show.getId(), show);
+            }
+            if (rebuilding.get()) {
+                changedDuringRebuild.add(show.getId());
+            }
+        }
+    }
+
+    @Override
+    public void remove(Long showId) {
+        if (!enabled || showId == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            BigramSearchIndex<SearchDocument> current = index;
+            if (current != null) {
+                current.remove(showId);
+            }
+            if (rebuilding.get()) {
+                changedDuringRebuild.add(showId);
+            }
+        }
+    }
+
+    /**
+     * 启动后立即建立索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 定时全量重建（默认每10分钟一次），同步其他实例对演出的修改
+     */
+    @Override
+    @Scheduled(initialDelayString = "${search.index.rebuild-interval-ms:600000}",
+            fixedDelayString = "${search.index.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        try {
+            changedDuringRebuild.clear();
+            BigramSearchIndex<SearchDocument> rebuilt = newIndex();
+            Integer count = transactionTemplate.execute(status -> {
+                int n = 0;
+                try (Cursor<Show> cursor = showMapper.streamSearchDocuments()) {
+                    for (Show show : cursor) {
+                        apply(rebuilt, show.getId(), show);
+                        n++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return n;
+            });
+            synchronized (writeLock) {
+                // 重建期间修改过的演出按数据库的最新状态补到新索引
+                for (Long showId : changedDuringRebuild) {
+                    apply(rebuilt, showId, showMapper.getByIdForAdmin(showId));
+                }
+                index = rebuilt;
+            }
+            rebuilds.increment();
+            lastRebuildMillis = System.currentTimeMillis() - begin;
+            lastRebuildTime = LocalDateTime.now();
+            System.out.println("演出搜索索引重建完成，演出数: " + count + "，耗时: " + lastRebuildMillis + "ms");
+        } catch (Exception e) {
+            // 数据库暂时不可用时保留现有索引（还没有索引时搜索使用 LIKE 查询），下一次定时重建再试
+            System.err.println("演出搜索索引重建失败: " + e.getMessage());
+        } finally {
+            changedDuringRebuild.clear();
+            rebuilding.set(false);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        BigramSearchIndex<SearchDocument> current = index;
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("ready", current != null);
+        metrics.put("documents", current != null ? current.size() : 0);
+        metrics.put("terms", current != null ? current.termCount() : 0);
+        metrics.put("searches", searches.sum());
+        metrics.put("rebuilds", rebuilds.sum());
+        metrics.put("lastRebuildMillis", lastRebuildMillis);
+        metrics.put("lastRebuildTime", lastRebuildTime);
+        return metrics;
+    }
+
+    private BigramSearchIndex<SearchDocument> newIndex() {
+        return new BigramSearchIndex<>(FIELD_WEIGHTS,
+                Comparator.comparing((SearchDocument doc) -> doc.startTime, Comparator.nullsLast(Comparator.naturalOrder())));
+    }
+
+    /**
+     * 把演出加入索引；演出不存在或已下架时从索引中删除
+     */
+    private void apply(BigramSearchIndex<SearchDocument> target, Long showId, Show show) {
+        if (show == null || (show.getStatus() != null && show.getStatus() != 1)) {
+            target.remove(showId);
+            return;
+        }
+        target.put(showId,
+                new String[]{show.getName(), show.getVenue(), show.getCategory(), show.getRegion()},
+                new SearchDocument(show.getStartTime(), show.getEndTime()));
+    }
+
+    /**
+     * 按ID查询演出，保持传入的顺序（查询期间被删除或下架的演出跳过）
+     */
+    private List<Show> loadShows(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Show> byId = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += ID_CHUNK_SIZE) {
+            for (Show show : showMapper.findByIds(ids.subList(i, Math.min(i + ID_CHUNK_SIZE, ids.size())))) {
+                byId.put(show.getId(), show);
+            }
+        }
+        List<Show> shows = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Show show = byId.get(id);
+            if (show != null) {
+                shows.add(show);
+            }
+        }
+        return shows;
+    }
+}
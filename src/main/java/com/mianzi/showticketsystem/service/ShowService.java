@@ -3,7 +3,9 @@ package com.mianzi.showticketsystem.service;
 import com.mianzi.showticketsystem.model.entity.PageResult;
 import com.mianzi.showticketsystem.model.entity.Show;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 演出/活动业务逻辑接口
@@ -30,6 +32,18 @@ public interface ShowService {
      */
     Show getShowById(Long id);
 
+    /**
+     * 丢弃演出的缓存详情和首页/条件查询的缓存结果（不经过 updateShow 修改演出时调用，例如定时开票）
+     * @param id 演出ID
+     */
+    void invalidateCache(Long id);
+
+    /**
+     * 查询演出详情、首页列表和条件查询缓存的统计数据（命中、未命中、宽限期内返回旧值、合并的加载、容量淘汰、过期次数）
+     * @return 统计数据
+     */
+    Map<String, Object> getCacheStats();
+
     /**
      * 更新演出信息
      * @param show 包含新信息的演出对象
@@ -48,27 +62,45 @@ public interface ShowService {
      * 在首页获取地区和分类演出列表
      * @param region 地区（可选，null则返回默认北京地区）
      * @param category 分类（可选，null则返回所有分类）
+     * @param startFrom 开始时间下限（可选，包含；多场次的演出只要有一个场次在范围内即可）
+     * @param startTo 开始时间上限（可选，不包含）
      * @param limit 限制数量
-     * @return 演出列表
+     * @return 演出列表（不可修改；没有指定时间范围且首页快照可用时只包含即将开始的演出）
      */
-    List<Show> getHomeShows(String region, String category, Integer limit);
+    List<Show> getHomeShows(String region, String category, LocalDateTime startFrom, LocalDateTime startTo, Integer limit);
 
     /**
      * 搜索演出（匹配演出名或场馆名）
      * @param keyword 关键词
+     * @param startFrom 开始时间下限（可选，包含）
+     * @param startTo 开始时间上限（可选，不包含）
      * @return 演出列表
      */
-    List<Show> searchShows(String keyword);
+    List<Show> searchShows(String keyword, LocalDateTime startFrom, LocalDateTime startTo);
+
+    /**
+     * 搜索演出（分页，按相关度排序：名称、场馆、分类、地区依次降低，相关度相同时按开始时间排序）
+     * @param keyword 关键词（多个词用空格分隔，每个词都要匹配）
+     * @param startFrom 开始时间下限（可选，包含）
+     * @param startTo 开始时间上限（可选，不包含）
+     * @param pageNum 当前页码
+     * @param pageSize 每页数量
+     * @return 分页结果
+     */
+    PageResult<Show> searchShows(String keyword, LocalDateTime startFrom, LocalDateTime startTo, int pageNum, int pageSize);
 
     /**
      * 条件查询演出（分页）
      * @param region 城市
      * @param category 分类
+     * @param startFrom 开始时间下限（可选，包含）
+     * @param startTo 开始时间上限（可选，不包含）
      * @param pageNum 当前页码
      * @param pageSize 每页数量
      * @return 分页结果
      */
-    PageResult<Show> findShowsByConditions(String region, String category, int pageNum, int pageSize);
+    PageResult<Show> findShowsByConditions(String region, String category, LocalDateTime startFrom, LocalDateTime startTo,
+                                           int pageNum, int pageSize);
 
     /**
      * 管理端 - 分页查询演出列表（条件查询）
@@ -3,10 +3,27 @@ package com.mianzi.showticketsystem.service;
 import com.mianzi.showticketsystem.mapper.ShowMapper;
 import com.mianzi.showticketsystem.model.entity.PageResult;
 import com.mianzi.showticketsystem.model.entity.Show;
+import com.mianzi.showticketsystem.model.entity.ShowSession;
+import com.mianzi.showticketsystem.model.entity.ShowTier;
+import com.mianzi.showticketsystem.util.LruTtlCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ShowService 接口的实现类
@@ -22,18 +39,135 @@ public class ShowServiceImpl implements ShowService {
     @Autowired
     private ShowMapper showMapper;
 
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private SeatService seatService;
+
+    @Autowired
+    private ShowTierService showTierService;
+
+    @Autowired
+    private ShowSessionService showSessionService;
+
+    @Autowired
+    private HomeSnapshotService homeSnapshotService;
+
+    @Autowired
+    private ShowSearchService showSearchService;
+
+    @Autowired
+    private ShowSuggestService showSuggestService;
+
+    // 新发布的演出默认拆分的库存分桶数量（0 或 1 表示不分桶）
+    @Value("${stock.bucket-count:0}")
+    private int defaultBucketCount;
+
+    // 是否缓存演出详情
+    @Value("${show.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    // 最多缓存的演出数
+    @Value("${show.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    // 演出详情缓存的有效期（毫秒），多实例部署时其他实例修改演出后最多延迟这么久可见
+    @Value("${show.cache.ttl-ms:5000}")
+    private long cacheTtlMs;
+
+    // 缓存过期后的宽限期（毫秒），宽限期内返回旧值并在后台刷新；0 表示过期后同步加载
+    @Value("${show.cache.stale-ms:30000}")
+    private long cacheStaleMs;
+
+    // 最多缓存的首页列表和条件查询结果数
+    @Value("${show.cache.list-max-size:1000}")
+    private int listCacheMaxSize;
+
+    // 后台刷新缓存的线程数
+    @Value("${show.cache.refresh-threads:2}")
+    private int refreshThreads;
+
+    // 演出详情缓存：showId -> 演出（只缓存上架的演出，缓存的对象不会被修改，返回给调用方的是副本）
+    private LruTtlCache<Long, Show> showCache;
+
+    // 首页列表缓存：查询条件 -> 演出列表（缓存的列表不可修改，只用于返回给前端展示）
+    private LruTtlCache<String, List<Show>> homeCache;
+
+    // 条件查询结果缓存：查询条件和页码 -> 分页结果
+    private LruTtlCache<String, PageResult<Show>> queryCache;
+
+    // 后台刷新过期缓存的线程池（队列满时由查询线程自己刷新）
+    private ThreadPoolExecutor refreshExecutor;
+
+    @PostConstruct
+    public void initCache() {
+        AtomicInteger threadNo = new AtomicInteger();
+        refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(256), runnable -> {
+            Thread thread = new Thread(runnable, "show-cache-refresh-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        showCache = new LruTtlCache<>(cacheMaxSize, cacheTtlMs, cacheStaleMs, refreshExecutor);
+        homeCache = new LruTtlCache<>(listCacheMaxSize, cacheTtlMs, cacheStaleMs, refreshExecutor);
+        queryCache = new LruTtlCache<>(listCacheMaxSize, cacheTtlMs, cacheStaleMs, refreshExecutor);
+    }
+
+    /**
+     * 应用关闭时停止后台刷新线程
+     */
+    @PreDestroy
+    public void stopCache() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
     /**
      * 实现发布新的演出逻辑
+     * 演出、票档、场次和库存分桶在同一个事务中写入，提交后才清理缓存、更新首页快照和搜索索引，
+     * 其他请求不会读到已发布但还没有票档和场次的演出
      * @param show 演出实体对象
      * @return 发布成功返回 true，失败返回 false
      */
     @Override
+    @Transactional
     public boolean publishShow(Show show) {
         LocalDateTime now = LocalDateTime.now();
 
+        //解析票档JSON，票档不合法（格式错误或票数之和不等于总票数）时不允许发布
+        List<ShowTier> tiers = showTierService.parseTiers(show.getTicketTier(), show.getTotalTickets());
+        if (tiers == null) {
+            return false;
+        }
+
+        //解析场次JSON，场次不合法（格式错误或票数之和不等于总票数）时不允许发布
+        List<ShowSession> sessions = showSessionService.parseSessions(show.getSessionInfo(), show.getTotalTickets());
+        if (sessions == null) {
+            return false;
+        }
+        if (!sessions.isEmpty()) {
+            //多场次的演出：开始时间取最早场次，结束时间取最晚场次，列表按开始时间排序和过滤时与场次一致
+            show.setStartTime(sessions.get(0).getStartTime());
+            LocalDateTime endTime = null;
+            for (ShowSession session : sessions) {
+                LocalDateTime sessionEnd = session.getEndTime() != null ? session.getEndTime() : session.getStartTime();
+                if (endTime == null || sessionEnd.isAfter(endTime)) {
+                    endTime = sessionEnd;
+                }
+            }
+            show.setEndTime(endTime);
+        }
+
         //初始化:确保可用/剩余票数等于总票数
         show.setAvailableTickets(show.getTotalTickets());
 
+        //设置了开售时间的演出先不开票，到点由定时任务开票
+        if (show.getSaleStartTime() != null && show.getSaleStartTime().isAfter(now)) {
+            show.setIsOnSale(0);
+        }
+
         //设置状态为正常可售
         show.setStatus(1);
 
@@ -43,9 +177,29 @@ public class ShowServiceImpl implements ShowService {
 
         //插入数据库
         int result = showMapper.insert(show);
+        if (result != 1) {
+            return false;
+        }
+
+        //把票档拆分到票档表，每个票档单独计算库存
+        showTierService.createTiers(show.getId(), tiers);
+
+        //把场次拆分到场次表，有场次的演出按场次扣减库存
+        showSessionService.createSessions(show.getId(), sessions);
 
-        //返回结果
-        return result == 1;
+        //如果配置了库存分桶，把库存拆分到分桶表，减少抢票时的行锁竞争（有场次的演出库存已经按场次拆分，不再分桶）
+        if (defaultBucketCount > 1 && sessions.isEmpty()) {
+            stockService.splitIntoBuckets(show.getId(), defaultBucketCount);
+        }
+
+        //事务提交后再让新演出可见：新发布的演出ID不会在缓存中，这里仍然清理一次，保证写操作都会让缓存失效（首页和条件查询的结果需要包含新演出）
+        afterCommit(() -> {
+            clearCaches(show.getId());
+            homeSnapshotService.refresh(null, show);
+            showSearchService.index(show);
+            showSuggestService.update(show);
+        });
+        return true;
     }
 
     /**
@@ -59,10 +213,116 @@ public class ShowServiceImpl implements ShowService {
 
     /**
      * 实现根据ID查询演出详情的逻辑
+     * 先查缓存，缓存没有时查询数据库并放入缓存（同一个演出同时只有一个请求查询数据库，其他请求共享结果；
+     * 缓存过期后的宽限期内返回旧值并在后台刷新）；可用票数用实时库存覆盖（见 withLiveStock）
      */
     @Override
     public Show getShowById(Long id) {
-        return showMapper.getById(id);
+        if (!cacheEnabled || id == null) {
+            return showMapper.getById(id);
+        }
+        Show cached = showCache.get(id, showMapper::getById);
+        if (cached == null) {
+            return null;
+        }
+        return withLiveStock(cached);
+    }
+
+    /**
+     * 丢弃演出的缓存详情，以及可能包含该演出的首页列表和条件查询结果，并重新计算演出所在的首页快照
+     */
+    @Override
+    public void invalidateCache(Long id) {
+        clearCaches(id);
+        //这里调用时演出的地区和分类没有变化（例如开票），修改前后都是同一个演出
+        Show show = showMapper.getByIdForAdmin(id);
+        homeSnapshotService.refresh(show, show);
+    }
+
+    private void clearCaches(Long id) {
+        showCache.invalidate(id);
+        homeCache.clear();
+        queryCache.clear();
+    }
+
+    /**
+     * 在当前事务提交后执行（不在事务中时直接执行）
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 查询演出详情缓存的统计数据
+     */
+    @Override
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = cacheStats(showCache);
+        stats.put("enabled", cacheEnabled);
+        stats.put("maxSize", cacheMaxSize);
+        stats.put("ttlMs", cacheTtlMs);
+        stats.put("staleMs", cacheStaleMs);
+        Map<String, Object> homeStats = cacheStats(homeCache);
+        homeStats.put("maxSize", listCacheMaxSize);
+        stats.put("home", homeStats);
+        Map<String, Object> queryStats = cacheStats(queryCache);
+        queryStats.put("maxSize", listCacheMaxSize);
+        stats.put("query", queryStats);
+        stats.put("refreshQueueSize", refreshExecutor.getQueue().size());
+        return stats;
+    }
+
+    private Map<String, Object> cacheStats(LruTtlCache<?, ?> cache) {
+        long hits = cache.hitCount();
+        long misses = cache.missCount();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", cache.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses > 0 ? Math.round(hits * 10000.0 / (hits + misses)) / 100.0 : 0);
+        stats.put("staleHits", cache.staleHitCount());
+        stats.put("loads", cache.loadCount());
+        stats.put("coalesced", cache.coalescedCount());
+        stats.put("refreshFailures", cache.refreshFailureCount());
+        stats.put("evictions", cache.evictionCount());
+        stats.put("expirations", cache.expirationCount());
+        return stats;
+    }
+
+    /**
+     * 定时清理已过期的缓存条目（默认每分钟一次）
+     */
+    @Scheduled(fixedDelayString = "${show.cache.purge-interval-ms:60000}")
+    public void purgeExpiredCache() {
+        showCache.purgeExpired();
+        homeCache.purgeExpired();
+        queryCache.purgeExpired();
+    }
+
+    /**
+     * 复制缓存的演出并用实时库存覆盖可用票数：
+     * 库存在内存账本中时使用账本的实时数量；售罄标记存在时为0；
+     * 其他情况下是缓存时的数量（只用于展示，下单时以数据库的原子扣减为准）
+     */
+    private Show withLiveStock(Show cached) {
+        Show show = new Show();
+        BeanUtils.copyProperties(cached, show);
+        Integer liveStock = stockService.getAvailableStock(show.getId());
+        if (liveStock != null) {
+            show.setAvailableTickets(liveStock);
+        } else if (stockService.isSoldOut(show.getId())) {
+            show.setAvailableTickets(0);
+        }
+        return show;
     }
 
     /**
@@ -73,7 +333,22 @@ public class ShowServiceImpl implements ShowService {
         // 实际项目中，这里需要进行权限校验、字段校验等
         // 特别是 totalTickets 的修改逻辑需要确保合理性，但我们这里只做基本更新
         show.setUpdateTime(LocalDateTime.now());
+        //把开售时间改到将来时，没有同时指定开票状态的演出先停止开票，到点由定时任务重新开票
+        if (show.getSaleStartTime() != null && show.getSaleStartTime().isAfter(show.getUpdateTime()) && show.getIsOnSale() == null) {
+            show.setIsOnSale(0);
+        }
+        //修改前的地区和分类，用于重新计算演出原来所在的首页快照
+        Show before = showMapper.getByIdForAdmin(show.getId());
         int updatedRows = showMapper.update(show);
+        if (updatedRows == 1) {
+            // 演出状态可能被修改（如下架），丢弃内存中的库存和缓存的详情，下次下单时重新加载
+            stockService.evict(show.getId());
+            clearCaches(show.getId());
+            Show after = showMapper.getByIdForAdmin(show.getId());
+            homeSnapshotService.refresh(before, after);
+            showSearchService.index(after);
+            showSuggestService.update(after);
+        }
         return updatedRows == 1;
     }
 
@@ -84,15 +359,29 @@ public class ShowServiceImpl implements ShowService {
     public boolean deleteShow(Long id) {
         //实际项目中，删除演出前需要检查是否有未完成的订单关联
         //如果有则通常不允许删除或执行逻辑删除。
+        Show before = showMapper.getByIdForAdmin(id);
         int deletedRows = showMapper.delete(id);
+        if (deletedRows == 1) {
+            stockService.deleteStock(id);
+            seatService.deleteSeatMap(id);
+            showTierService.deleteTiers(id);
+            showSessionService.deleteSessions(id);
+            clearCaches(id);
+            homeSnapshotService.refresh(before, null);
+            showSearchService.remove(id);
+            showSuggestService.remove(id);
+        }
         return deletedRows == 1;
     }
 
     /**
      * 实现在首页获取地区和分类演出列表的逻辑
+     * 没有指定时间范围时从首页快照中取即将开始的演出，不查询数据库；
+     * 指定了时间范围或快照不可用时查询数据库，相同条件的查询结果会缓存，并发的相同查询只查询一次数据库
+     * （列表中的可用票数只用于展示，最多延迟快照重建间隔或缓存有效期加宽限期）
      */
     @Override
-    public List<Show> getHomeShows(String region, String category, Integer limit) {
+    public List<Show> getHomeShows(String region, String category, LocalDateTime startFrom, LocalDateTime startTo, Integer limit) {
         // 如果没有指定地区，默认使用北京
         if (region == null || region.isEmpty()) {
             region = "北京";
@@ -103,36 +392,100 @@ public class ShowServiceImpl implements ShowService {
             limit = 20;
         }
         
-        return showMapper.findByRegionAndCategory(region, category, limit);
+        if (startFrom == null && startTo == null) {
+            List<Show> snapshot = homeSnapshotService.getHomeShows(region, category, limit);
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+
+        // 没有指定时间范围时与快照一致，只返回即将开始的演出（查询时取当前时间，缓存 key 不包含当前时间）
+        boolean upcomingOnly = startFrom == null && startTo == null;
+        String queryRegion = region;
+        Integer queryLimit = limit;
+        if (!cacheEnabled) {
+            return showMapper.findByRegionAndCategory(queryRegion, category,
+                    upcomingOnly ? LocalDateTime.now() : startFrom, startTo, queryLimit);
+        }
+        String key = queryRegion + "|" + category + "|" + startFrom + "|" + startTo + "|" + queryLimit;
+        return homeCache.get(key, k -> List.copyOf(showMapper.findByRegionAndCategory(queryRegion, category,
+                upcomingOnly ? LocalDateTime.now() : startFrom, startTo, queryLimit)));
     }
 
     /**
      * 实现搜索演出的逻辑
+     * 搜索索引建立后使用内存索引（按相关度排序），否则使用 LIKE 查询
      */
     @Override
-    public List<Show> searchShows(String keyword) {
-        if (keyword == null || keyword.isEmpty()) {
+    public List<Show> searchShows(String keyword, LocalDateTime startFrom, LocalDateTime startTo) {
+        if (keyword == null || keyword.isBlank()) {
             return List.of();
         }
-        return showMapper.searchShows(keyword);
+        PageResult<Show> result = showSearchService.search(keyword, startFrom, startTo, 1, Integer.MAX_VALUE);
+        if (result != null) {
+            return result.getRecords();
+        }
+        return showMapper.searchShows(keyword, startFrom, startTo);
+    }
+
+    /**
+     * 实现分页搜索演出的逻辑
+     */
+    @Override
+    public PageResult<Show> searchShows(String keyword, LocalDateTime startFrom, LocalDateTime startTo, int pageNum, int pageSize) {
+        // 参数校验
+        if (pageNum <= 0) pageNum = 1;
+        if (pageSize <= 0) pageSize = 10;
+        // 页大小上限限制，防止恶意请求导致数据库压力过大
+        if (pageSize > 100) pageSize = 100;
+
+        if (keyword == null || keyword.isBlank()) {
+            return PageResult.build(0, pageNum, pageSize, List.of());
+        }
+        PageResult<Show> result = showSearchService.search(keyword, startFrom, startTo, pageNum, pageSize);
+        if (result != null) {
+            return result;
+        }
+
+        // 索引还没有建立，LIKE 查询后在内存中分页
+        List<Show> shows = showMapper.searchShows(keyword, startFrom, startTo);
+        int from = (int) Math.min((long) (pageNum - 1) * pageSize, shows.size());
+        int to = Math.min(from + pageSize, shows.size());
+        return PageResult.build(shows.size(), pageNum, pageSize, shows.subList(from, to));
     }
 
     /**
      * 实现条件查询演出的逻辑（分页）
+     * 相同条件和页码的查询结果会缓存，并发的相同查询只查询一次数据库
      */
     @Override
-    public PageResult<Show> findShowsByConditions(String region, String category, int pageNum, int pageSize) {
+    public PageResult<Show> findShowsByConditions(String region, String category, LocalDateTime startFrom, LocalDateTime startTo,
+                                                  int pageNum, int pageSize) {
         // 参数校验
         if (pageNum <= 0) pageNum = 1;
         if (pageSize <= 0) pageSize = 10;
         // 页大小上限限制，防止恶意请求导致数据库压力过大
         if (pageSize > 100) pageSize = 100;
 
+        if (!cacheEnabled) {
+            return queryShowsByConditions(region, category, startFrom, startTo, pageNum, pageSize);
+        }
+        int queryPageNum = pageNum;
+        int queryPageSize = pageSize;
+        String key = region + "|" + category + "|" + startFrom + "|" + startTo + "|" + pageNum + "|" + pageSize;
+        PageResult<Show> cached = queryCache.get(key,
+                k -> queryShowsByConditions(region, category, startFrom, startTo, queryPageNum, queryPageSize));
+        // 返回新的分页对象，缓存的分页对象不会被调用方修改
+        return PageResult.build(cached.getTotal(), cached.getPageNum(), cached.getPageSize(), cached.getRecords());
+    }
+
+    private PageResult<Show> queryShowsByConditions(String region, String category, LocalDateTime startFrom, LocalDateTime startTo,
+                                                    int pageNum, int pageSize) {
         // 计算偏移量
         int offset = (pageNum - 1) * pageSize;
 
         // 查询总记录数
-        long total = showMapper.countShowsByConditions(region, category);
+        long total = showMapper.countShowsByConditions(region, category, startFrom, startTo);
 
         // 如果总记录数为 0，直接返回空结果
         if (total == 0) {
@@ -140,10 +493,10 @@ public class ShowServiceImpl implements ShowService {
         }
 
         // 分页查询列表数据
-        List<Show> records = showMapper.findShowsByConditions(region, category, offset, pageSize);
+        List<Show> records = showMapper.findShowsByConditions(region, category, startFrom, startTo, offset, pageSize);
 
-        // 封装为 PageResult 并返回
-        return PageResult.build(total, pageNum, pageSize, records);
+        // 封装为 PageResult 并返回（列表不可修改，可以放入缓存）
+        return PageResult.build(total, pageNum, pageSize, List.copyOf(records));
     }
 
     /**
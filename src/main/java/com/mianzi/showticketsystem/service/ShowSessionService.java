@@ -0,0 +1,68 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.entity.ShowSession;
+
+import java.util.List;
+
+/**
+ * 演出场次业务逻辑接口
+ * 场次在发布演出时由 sessionInfo JSON 拆分为 show_session 表中的记录；有场次的演出按场次扣减库存，
+ * 不同日期的场次同时开售时只锁各自的场次行，不再竞争同一个演出行
+ */
+public interface ShowSessionService {
+
+    /**
+     * 解析 sessionInfo JSON，格式为 [{"name":"6月1日 19:30","startTime":"2026-06-01T19:30:00","endTime":"2026-06-01T22:00:00","totalTickets":5000}, ...]
+     * @param sessionInfo 场次JSON
+     * @param totalTickets 演出总票数，所有场次的票数之和必须与其相等
+     * @return 场次列表（未保存，按开始时间排序）；JSON为空时返回空列表，格式不合法时返回 null
+     */
+    List<ShowSession> parseSessions(String sessionInfo, Integer totalTickets);
+
+    /**
+     * 保存演出的场次
+     * @param showId 演出ID
+     * @param sessions parseSessions 返回的场次列表
+     */
+    void createSessions(Long showId, List<ShowSession> sessions);
+
+    /**
+     * 查询演出的场次结构（名称、时间，来自内存缓存，库存数量是加载时的值，不是实时库存）
+     * @param showId 演出ID
+     * @return 场次列表，没有场次时返回空列表
+     */
+    List<ShowSession> getSessions(Long showId);
+
+    /**
+     * 查询演出的场次及实时库存
+     * @param showId 演出ID
+     * @return 场次列表
+     */
+    List<ShowSession> getSessionsWithStock(Long showId);
+
+    /**
+     * 查询演出的某个场次（来自内存缓存）
+     * @param showId 演出ID
+     * @param sessionId 场次ID
+     * @return 场次，不存在时返回 null
+     */
+    ShowSession getSession(Long showId, Long sessionId);
+
+    /**
+     * 原子性扣减场次库存
+     * @return 成功返回 true，库存不足返回 false
+     */
+    boolean deductStock(Long showId, Long sessionId, int quantity);
+
+    /**
+     * 返还场次库存
+     * @return 成功返回 true，场次不存在返回 false
+     */
+    boolean returnStock(Long showId, Long sessionId, int quantity);
+
+    /**
+     * 删除演出的场次（演出删除时调用）
+     * @param showId 演出ID
+     */
+    void deleteSessions(Long showId);
+}
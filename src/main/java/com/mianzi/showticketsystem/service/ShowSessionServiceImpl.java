@@ -0,0 +1,146 @@
+package com.mianzi.showticketsystem.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mianzi.showticketsystem.mapper.ShowSessionMapper;
+import com.mianzi.showticketsystem.model.entity.ShowSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ShowSessionService 接口的实现类
+ * 场次在发布后不再修改，缓存不需要失效（演出删除时移除）。
+ * 没有场次的演出只短暂缓存空结果：空列表会让下单跳过场次校验、直接扣减演出库存，
+ * 在场次写入的事务提交之前读到的空列表不能一直留在缓存中
+ */
+@Service
+public class ShowSessionServiceImpl implements ShowSessionService {
+
+    @Autowired
+    private ShowSessionMapper showSessionMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 场次结构缓存：showId -> 场次列表（不可修改）
+    private final Map<Long, List<ShowSession>> sessionCache = new ConcurrentHashMap<>();
+
+    // 没有场次的演出：showId -> 查询时间（毫秒）
+    private final Map<Long, Long> noSessionShows = new ConcurrentHashMap<>();
+
+    // 空场次列表的缓存时间（毫秒）
+    @Value("${show.cache.empty-list-ttl-ms:5000}")
+    private long emptyListTtlMs;
+
+    @Override
+    public List<ShowSession> parseSessions(String sessionInfo, Integer totalTickets) {
+        if (!StringUtils.hasText(sessionInfo)) {
+            return Collections.emptyList();
+        }
+        List<ShowSession> sessions;
+        try {
+            sessions = objectMapper.readValue(sessionInfo, new TypeReference<List<ShowSession>>() {});
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        int sum = 0;
+        for (ShowSession session : sessions) {
+            if (session.getStartTime() == null
+                    || (session.getEndTime() != null && session.getEndTime().isBefore(session.getStartTime()))
+                    || session.getTotalTickets() == null || session.getTotalTickets() <= 0) {
+                return null;
+            }
+            sum += session.getTotalTickets();
+        }
+        if (totalTickets == null || sum != totalTickets) {
+            return null; // 场次票数之和必须等于总票数，演出的可用票数才能由场次库存汇总得到
+        }
+        sessions.sort(Comparator.comparing(ShowSession::getStartTime));
+        for (int i = 0; i < sessions.size(); i++) {
+            sessions.get(i).setId(null)
+                    .setAvailableTickets(sessions.get(i).getTotalTickets())
+                    .setSortOrder(i);
+        }
+        return sessions;
+    }
+
+    @Override
+    public void createSessions(Long showId, List<ShowSession> sessions) {
+        if (sessions == null || sessions.isEmpty()) {
+            return;
+        }
+        for (ShowSession session : sessions) {
+            session.setShowId(showId);
+        }
+        showSessionMapper.insertSessions(sessions);
+        sessionCache.remove(showId);
+        noSessionShows.remove(showId);
+    }
+
+    @Override
+    public List<ShowSession> getSessions(Long showId) {
+        List<ShowSession> sessions = sessionCache.get(showId);
+        if (sessions != null) {
+            return sessions;
+        }
+        long now = System.currentTimeMillis();
+        Long checkedAt = noSessionShows.get(showId);
+        if (checkedAt != null && now - checkedAt < emptyListTtlMs) {
+            return Collections.emptyList();
+        }
+        List<ShowSession> loaded = showSessionMapper.findByShowId(showId);
+        if (loaded.isEmpty()) {
+            noSessionShows.put(showId, now);
+            return Collections.emptyList();
+        }
+        noSessionShows.remove(showId);
+        sessions = Collections.unmodifiableList(new ArrayList<>(loaded));
+        List<ShowSession> existing = sessionCache.putIfAbsent(showId, sessions);
+        return existing != null ? existing : sessions;
+    }
+
+    @Override
+    public List<ShowSession> getSessionsWithStock(Long showId) {
+        return showSessionMapper.findByShowId(showId);
+    }
+
+    @Override
+    public ShowSession getSession(Long showId, Long sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        for (ShowSession session : getSessions(showId)) {
+            if (sessionId.equals(session.getId())) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean deductStock(Long showId, Long sessionId, int quantity) {
+        return showSessionMapper.deductStock(showId, sessionId, quantity) == 1;
+    }
+
+    @Override
+    public boolean returnStock(Long showId, Long sessionId, int quantity) {
+        return showSessionMapper.addStock(showId, sessionId, quantity) == 1;
+    }
+
+    @Override
+    public void deleteSessions(Long showId) {
+        showSessionMapper.deleteByShowId(showId);
+        sessionCache.remove(showId);
+        noSessionShows.remove(showId);
+    }
+}
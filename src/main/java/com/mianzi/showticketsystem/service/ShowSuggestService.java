@@ -0,0 +1,51 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.dto.ShowSuggestion;
+import com.mianzi.showticketsystem.model.entity.Show;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 搜索联想业务逻辑接口
+ * 用户输入时按前缀联想演出：匹配演出名称、场馆以及它们的拼音首字母（如输入 zjl 联想到「周杰伦」），
+ * 按开始时间的远近和已售票数排序。联想数据保存在只读的压缩前缀树中，
+ * 发布、修改、删除演出的变化先记在一个小的增量表里，查询时与前缀树合并，增量表达到一定大小后合并进新的前缀树
+ */
+public interface ShowSuggestService {
+
+    /**
+     * 前缀联想
+     * @param prefix 用户已经输入的内容
+     * @param limit 返回数量（不超过配置的上限）
+     * @return 联想结果，按权重从高到低排列；前缀为空或联想数据还没有建立时返回空列表
+     */
+    List<ShowSuggestion> suggest(String prefix, int limit);
+
+    /**
+     * 演出发布或修改后更新联想数据（演出已下架或已结束时删除）
+     * @param show 修改后的演出
+     */
+    void update(Show show);
+
+    /**
+     * 演出删除后删除联想数据
+     * @param showId 演出ID
+     */
+    void remove(Long showId);
+
+    /**
+     * 把增量表合并进新的前缀树（增量表达到阈值时自动调用）
+     */
+    void compact();
+
+    /**
+     * 从数据库流式读取所有还没有结束的演出，重新计算权重并重建前缀树
+     */
+    void rebuild();
+
+    /**
+     * 查询联想统计（演出数、节点数、增量表大小、查询次数和平均耗时、重建次数）
+     */
+    Map<String, Object> getMetrics();
+}
@@ -0,0 +1,323 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.ShowMapper;
+import com.mianzi.showticketsystem.model.dto.ShowSuggestion;
+import com.mianzi.showticketsystem.model.entity.Show;
+import com.mianzi.showticketsystem.util.BigramSearchIndex;
+import com.mianzi.showticketsystem.util.PinyinInitials;
+import com.mianzi.showticketsystem.util.SuggestTrie;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ShowSuggestService 接口的实现类
+ * 每个演出的联想词：名称、场馆、名称的拼音首字母、场馆的拼音首字母（NFKC 规范化并转小写）。
+ * 权重 = ln(1 + 已售票数) + 3 * e^(-距开始天数 / 30)：即将开始的演出和卖得多的演出靠前。
+ * 增量表中的演出覆盖前缀树中的同一个演出（查询前缀树时跳过），增量表达到阈值时用内存中的数据合并出新的前缀树，
+ * 定时从数据库全量重建，更新已售票数和距开始天数、去掉已经结束的演出，并同步其他实例的修改
+ */
+@Service
+public class ShowSuggestServiceImpl implements ShowSuggestService {
+
+    @Autowired
+    private ShowMapper showMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // 是否开启搜索联想
+    @Value("${suggest.enabled:true}")
+    private boolean enabled;
+
+    // 每次最多返回的联想数
+    @Value("${suggest.max-limit:10}")
+    private int maxLimit;
+
+    // 增量表达到多少个演出时合并进前缀树
+    @Value("${suggest.compact-threshold:256}")
+    private int compactThreshold;
+
+    // 当前的前缀树，建立完成之前为 null
+    private volatile Base base;
+
+    // 增量表：前缀树建立之后发布、修改、删除的演出
+    private final ConcurrentHashMap<Long, Entry> delta = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private volatile long lastRebuildMillis;
+    private volatile LocalDateTime lastRebuildTime;
+
+    /**
+     * 一个演出的联想数据
+     */
+    private static class Entry {
+        final long showId;
+        final String name;
+        final String venue;
+        final LocalDateTime startTime;
+        final float weight;
+        final String[] keys;
+        final boolean deleted;
+
+        Entry(long showId, String name, String venue, LocalDateTime startTime, float weight, String[] keys, boolean deleted) {
+            this.showId = showId;
+            this.name = name;
+            this.venue = venue;
+            this.startTime = startTime;
+            this.weight = weight;
+            this.keys = keys;
+            this.deleted = deleted;
+        }
+
+        static Entry deleted(long showId) {
+            return new Entry(showId, null, null, null, 0, new String[0], true);
+        }
+
+        boolean matches(String prefix) {
+            for (String key : keys) {
+                if (key.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 前缀树和其中的演出（一起替换）
+     */
+    private static class Base {
+        final SuggestTrie trie;
+        final Map<Long, Entry> entries;
+
+        Base(SuggestTrie trie, Map<Long, Entry> entries) {
+            this.trie = trie;
+            this.entries = entries;
+        }
+    }
+
+    @Override
+    public List<ShowSuggestion> suggest(String prefix, int limit) {
+        String normalized = BigramSearchIndex.normalize(prefix).trim();
+        if (!enabled || normalized.isEmpty()) {
+            return List.of();
+        }
+        long begin = System.nanoTime();
+        limit = Math.max(1, Math.min(limit, maxLimit));
+
+        List<Entry> matched = new ArrayList<>();
+        Base current = base;
+        if (current != null) {
+            for (Long showId : current.trie.lookup(normalized, limit, delta::containsKey)) {
+                matched.add(current.entries.get(showId));
+            }
+        }
+        if (!delta.isEmpty()) {
+            for (Entry entry : delta.values()) {
+                if (!entry.deleted && entry.matches(normalized)) {
+                    matched.add(entry);
+                }
+            }
+            matched.sort((a, b) -> {
+                int c = Float.compare(b.weight, a.weight);
+                return c != 0 ? c : Long.compare(a.showId, b.showId);
+            });
+        }
+
+        List<ShowSuggestion> suggestions = new ArrayList<>(Math.min(limit, matched.size()));
+        for (int i = 0; i < matched.size() && i < limit; i++) {
+            Entry entry = matched.get(i);
+            suggestions.add(new ShowSuggestion()
+                    .setShowId(entry.showId)
+                    .setName(entry.name)
+                    .setVenue(entry.venue)
+                    .setStartTime(entry.startTime));
+        }
+        queries.increment();
+        queryNanos.add(System.nanoTime() - begin);
+        return suggestions;
+    }
+
+    @Override
+    public void update(Show show) {
+        if (!enabled || show == null || show.getId() == null) {
+            return;
+        }
+        delta.put(show.getId(), toEntry(show, LocalDateTime.now()));
+    }
+
+    @Override
+    public void remove(Long showId) {
+        if (!enabled || showId == null) {
+            return;
+        }
+        delta.put(showId, Entry.deleted(showId));
+    }
+
+    /**
+     * 定时检查增量表的大小（默认每5秒一次），达到阈值时合并
+     */
+    @Scheduled(fixedDelayString = "${suggest.compact-check-interval-ms:5000}")
+    public void compactIfNeeded() {
+        if (delta.size() >= compactThreshold) {
+            compact();
+        }
+    }
+
+    @Override
+    public void compact() {
+        Base current = base;
+        if (!enabled || current == null || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Map<Long, Entry> applied = new HashMap<>(delta);
+            Map<Long, Entry> entries = new HashMap<>(current.entries);
+            for (Entry entry : applied.values()) {
+                if (entry.deleted) {
+                    entries.remove(entry.showId);
+                } else {
+                    entries.put(entry.showId, entry);
+                }
+            }
+            swap(entries, applied);
+            compactions.increment();
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 启动后立即建立前缀树
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 定时全量重建（默认每10分钟一次）
+     */
+    @Override
+    @Scheduled(initialDelayString = "${suggest.rebuild-interval-ms:600000}",
+            fixedDelayString = "${suggest.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        try {
+            // 读取数据库之前的修改都已经提交，会包含在读取的结果中，重建完成后从增量表中去掉
+            Map<Long, Entry> applied = new HashMap<>(delta);
+            LocalDateTime now = LocalDateTime.now();
+            Map<Long, Entry> entries = new HashMap<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Cursor<Show> cursor = showMapper.streamSuggestDocuments(now)) {
+                    for (Show show : cursor) {
+                        entries.put(show.getId(), toEntry(show, now));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            swap(entries, applied);
+            rebuilds.increment();
+            lastRebuildMillis = System.currentTimeMillis() - begin;
+            lastRebuildTime = LocalDateTime.now();
+            System.out.println("搜索联想前缀树重建完成，演出数: " + entries.size() + "，耗时: " + lastRebuildMillis + "ms");
+        } catch (Exception e) {
+            // 数据库暂时不可用时保留现有前缀树，下一次定时重建再试
+            System.err.println("搜索联想前缀树重建失败: " + e.getMessage());
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Base current = base;
+        long queryCount = queries.sum();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("ready", current != null);
+        metrics.put("shows", current != null ? current.entries.size() : 0);
+        metrics.put("nodes", current != null ? current.trie.nodeCount() : 0);
+        metrics.put("deltaSize", delta.size());
+        metrics.put("queries", queryCount);
+        metrics.put("avgQueryMicros", queryCount > 0 ? queryNanos.sum() / queryCount / 1000.0 : 0);
+        metrics.put("rebuilds", rebuilds.sum());
+        metrics.put("compactions", compactions.sum());
+        metrics.put("lastRebuildMillis", lastRebuildMillis);
+        metrics.put("lastRebuildTime", lastRebuildTime);
+        return metrics;
+    }
+
+    /**
+     * 用 entries 建立新的前缀树并替换，然后从增量表中去掉已经包含在新前缀树中的修改
+     * （合并期间又被修改的演出，增量表中的值已经变化，保留）
+     */
+    private void swap(Map<Long, Entry> entries, Map<Long, Entry> applied) {
+        SuggestTrie.Builder builder = SuggestTrie.builder();
+        for (Entry entry : entries.values()) {
+            for (String key : entry.keys) {
+                builder.add(key, entry.showId, entry.weight);
+            }
+        }
+        // 每个节点多保存一些，增量表覆盖掉部分演出后仍然能返回足够的结果
+        base = new Base(builder.build(maxLimit * 2), entries);
+        applied.forEach(delta::remove);
+    }
+
+    /**
+     * 演出转为联想数据；已下架或已经结束的演出转为删除标记
+     */
+    private Entry toEntry(Show show, LocalDateTime now) {
+        LocalDateTime lastTime = show.getEndTime() != null ? show.getEndTime() : show.getStartTime();
+        if ((show.getStatus() != null && show.getStatus() != 1) || (lastTime != null && lastTime.isBefore(now))) {
+            return Entry.deleted(show.getId());
+        }
+
+        int total = show.getTotalTickets() != null ? show.getTotalTickets() : 0;
+        int available = show.getAvailableTickets() != null ? show.getAvailableTickets() : total;
+        int sold = Math.max(0, total - available);
+        double days = show.getStartTime() != null
+                ? Math.max(0, Duration.between(now, show.getStartTime()).toHours() / 24.0) : 365;
+        float weight = (float) (Math.log1p(sold) + 3 * Math.exp(-days / 30));
+
+        String name = BigramSearchIndex.normalize(show.getName());
+        String venue = BigramSearchIndex.normalize(show.getVenue());
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(name);
+        keys.add(venue);
+        keys.add(PinyinInitials.of(name));
+        keys.add(PinyinInitials.of(venue));
+        keys.remove("");
+        return new Entry(show.getId(), show.getName(), show.getVenue(), show.getStartTime(), weight,
+                keys.toArray(new String[0]), false);
+    }
+}
@@ -0,0 +1,67 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.entity.ShowTier;
+
+import java.util.List;
+
+/**
+ * 演出票档业务逻辑接口
+ * 票档在发布演出时由 ticketTier JSON 拆分为 show_tier 表中的记录，每个票档单独扣减库存；
+ * 票档的名称和价格在内存中缓存，下单时不需要解析 JSON，也不需要查询票档表
+ */
+public interface ShowTierService {
+
+    /**
+     * 解析 ticketTier JSON，格式为 [{"name":"VIP","price":1280,"totalTickets":200}, ...]
+     * @param ticketTier 票档JSON
+     * @param totalTickets 演出总票数，所有票档的票数之和必须与其相等
+     * @return 票档列表（未保存）；JSON为空时返回空列表，格式不合法时返回 null
+     */
+    List<ShowTier> parseTiers(String ticketTier, Integer totalTickets);
+
+    /**
+     * 保存演出的票档
+     * @param showId 演出ID
+     * @param tiers parseTiers 返回的票档列表
+     */
+    void createTiers(Long showId, List<ShowTier> tiers);
+
+    /**
+     * 查询演出的票档结构（名称、价格，来自内存缓存，库存数量是加载时的值，不是实时库存）
+     * @param showId 演出ID
+     * @return 票档列表，没有票档时返回空列表
+     */
+    List<ShowTier> getTiers(Long showId);
+
+    /**
+     * 查询演出的票档及实时库存
+     * @param showId 演出ID
+     * @return 票档列表
+     */
+    List<ShowTier> getTiersWithStock(Long showId);
+
+    /**
+     * 查询演出的某个票档（来自内存缓存）
+     * @param showId 演出ID
+     * @param tierId 票档ID
+     * @return 票档，不存在时返回 null
+     */
+    ShowTier getTier(Long showId, Long tierId);
+
+    /**
+     * 原子性扣减票档库存
+     * @return 成功返回 true，库存不足返回 false
+     */
+    boolean deductStock(Long showId, Long tierId, int quantity);
+
+    /**
+     * 返还票档库存
+     */
+    void returnStock(Long showId, Long tierId, int quantity);
+
+    /**
+     * 删除演出的票档（演出删除时调用）
+     * @param showId 演出ID
+     */
+    void deleteTiers(Long showId);
+}
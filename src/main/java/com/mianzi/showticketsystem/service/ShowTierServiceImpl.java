@@ -0,0 +1,143 @@
+package com.mianzi.showticketsystem.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mianzi.showticketsystem.mapper.ShowTierMapper;
+import com.mianzi.showticketsystem.model.entity.ShowTier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ShowTierService 接口的实现类
+ * 票档在发布后不再修改，缓存不需要失效（演出删除时移除）。
+ * 没有票档的演出只短暂缓存空结果：在票档写入的事务提交之前读到的空列表不能一直留在缓存中
+ */
+@Service
+public class ShowTierServiceImpl implements ShowTierService {
+
+    @Autowired
+    private ShowTierMapper showTierMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 票档结构缓存：showId -> 票档列表（不可修改）
+    private final Map<Long, List<ShowTier>> tierCache = new ConcurrentHashMap<>();
+
+    // 没有票档的演出：showId -> 查询时间（毫秒）
+    private final Map<Long, Long> noTierShows = new ConcurrentHashMap<>();
+
+    // 空票档列表的缓存时间（毫秒）
+    @Value("${show.cache.empty-list-ttl-ms:5000}")
+    private long emptyListTtlMs;
+
+    @Override
+    public List<ShowTier> parseTiers(String ticketTier, Integer totalTickets) {
+        if (!StringUtils.hasText(ticketTier)) {
+            return Collections.emptyList();
+        }
+        List<ShowTier> tiers;
+        try {
+            tiers = objectMapper.readValue(ticketTier, new TypeReference<List<ShowTier>>() {});
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        int sum = 0;
+        for (int i = 0; i < tiers.size(); i++) {
+            ShowTier tier = tiers.get(i);
+            if (!StringUtils.hasText(tier.getName()) || tier.getPrice() == null
+                    || tier.getPrice().compareTo(BigDecimal.ZERO) < 0
+                    || tier.getTotalTickets() == null || tier.getTotalTickets() <= 0) {
+                return null;
+            }
+            tier.setId(null)
+                    .setAvailableTickets(tier.getTotalTickets())
+                    .setSortOrder(i);
+            sum += tier.getTotalTickets();
+        }
+        if (totalTickets == null || sum != totalTickets) {
+            return null; // 票档票数之和必须等于总票数，演出总库存才能与票档库存一致
+        }
+        return tiers;
+    }
+
+    @Override
+    public void createTiers(Long showId, List<ShowTier> tiers) {
+        if (tiers == null || tiers.isEmpty()) {
+            return;
+        }
+        for (ShowTier tier : tiers) {
+            tier.setShowId(showId);
+        }
+        showTierMapper.insertTiers(tiers);
+        tierCache.remove(showId);
+        noTierShows.remove(showId);
+    }
+
+    @Override
+    public List<ShowTier> getTiers(Long showId) {
+        List<ShowTier> tiers = tierCache.get(showId);
+        if (tiers != null) {
+            return tiers;
+        }
+        long now = System.currentTimeMillis();
+        Long checkedAt = noTierShows.get(showId);
+        if (checkedAt != null && now - checkedAt < emptyListTtlMs) {
+            return Collections.emptyList();
+        }
+        List<ShowTier> loaded = showTierMapper.findByShowId(showId);
+        if (loaded.isEmpty()) {
+            noTierShows.put(showId, now);
+            return Collections.emptyList();
+        }
+        noTierShows.remove(showId);
+        tiers = Collections.unmodifiableList(new ArrayList<>(loaded));
+        List<ShowTier> existing = tierCache.putIfAbsent(showId, tiers);
+        return existing != null ? existing : tiers;
+    }
+
+    @Override
+    public List<ShowTier> getTiersWithStock(Long showId) {
+        return showTierMapper.findByShowId(showId);
+    }
+
+    @Override
+    public ShowTier getTier(Long showId, Long tierId) {
+        if (tierId == null) {
+            return null;
+        }
+        for (ShowTier tier : getTiers(showId)) {
+            if (tierId.equals(tier.getId())) {
+                return tier;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean deductStock(Long showId, Long tierId, int quantity) {
+        return showTierMapper.deductStock(showId, tierId, quantity) == 1;
+    }
+
+    @Override
+    public void returnStock(Long showId, Long tierId, int quantity) {
+        showTierMapper.addStock(showId, tierId, quantity);
+    }
+
+    @Override
+    public void deleteTiers(Long showId) {
+        showTierMapper.deleteByShowId(showId);
+        tierCache.remove(showId);
+        noTierShows.remove(showId);
+    }
+}
@@ -0,0 +1,99 @@
+package com.mianzi.showticketsystem.service;
+
+import java.util.Map;
+
+/**
+ * 演出库存业务逻辑接口
+ * 统一封装扣减/返还库存的操作，下单、取消订单、超时关单都通过这里修改库存
+ */
+public interface StockService {
+
+    /**
+     * 扣减演出库存
+     * 在事务中调用时，如果事务回滚，已扣减的库存会自动恢复
+     * @param showId 演出ID
+     * @param quantity 扣减数量
+     * @return 扣减成功返回 true，库存不足或演出不存在返回 false
+     */
+    boolean deductStock(Long showId, int quantity);
+
+    /**
+     * 返还演出库存（取消订单、超时关单时调用）
+     * @param showId 演出ID
+     * @param quantity 返还数量
+     * @return 成功返回 true，演出不存在或已下架返回 false
+     */
+    boolean returnStock(Long showId, int quantity);
+
+    /**
+     * 判断演出是否已售罄（只查询内存中的售罄标记，不访问数据库）
+     * 扣减库存失败且库存已为 0 时会标记售罄，返还库存时清除标记
+     * @param showId 演出ID
+     * @return 已售罄返回 true
+     */
+    boolean isSoldOut(Long showId);
+
+    /**
+     * 查询内存中维护的实时库存
+     * @param showId 演出ID
+     * @return 内存中的可用票数；如果该演出的库存不在内存中（例如 SQL 模式），返回 null
+     */
+    Integer getAvailableStock(Long showId);
+
+    /**
+     * 丢弃某个演出在内存中的库存数据（演出被修改或删除时调用），下次访问时重新从数据库加载
+     * @param showId 演出ID
+     */
+    void evict(Long showId);
+
+    /**
+     * 预热演出的库存数据（开售前调用）：memory 模式下把库存加载到内存账本，并加载分桶数量，清除售罄标记
+     * @param showId 演出ID
+     */
+    void prewarm(Long showId);
+
+    /**
+     * 把演出提升到内存库存（sql 模式下用于热门演出）：之后该演出的扣减/返还在内存账本中进行，由定时任务批量同步到数据库
+     * 注意：与 memory 模式一样只适用于单实例部署；提升时要锁定库存行，不能在下单等持有库存行锁的事务中调用
+     * @param showId 演出ID
+     * @return 提升成功返回 true；已经是内存库存、全局 memory 模式或演出不存在时返回 false
+     */
+    boolean promote(Long showId);
+
+    /**
+     * 把提升到内存库存的演出降级回 sql 模式：同步尚未写入数据库的变化并丢弃内存库存
+     * @param showId 演出ID
+     * @return 降级成功返回 true；演出没有被提升过时返回 false
+     */
+    boolean demote(Long showId);
+
+    /**
+     * 演出的库存当前是否在内存账本中（全局 memory 模式或已被提升）
+     * @param showId 演出ID
+     */
+    boolean isMemoryResident(Long showId);
+
+    /**
+     * 把内存中尚未写入数据库的库存变化同步到数据库
+     */
+    void reconcile();
+
+    /**
+     * 查询库存统计（内存库存的演出数、待同步的变化量、同步时发现的超卖次数和超卖票数）
+     */
+    Map<String, Object> getMetrics();
+
+    /**
+     * 把演出当前的可用库存拆分到 N 个分桶中，之后该演出的扣减/返还库存都在分桶上进行
+     * @param showId 演出ID
+     * @param bucketCount 分桶数量（至少为2）
+     * @return 成功返回 true，演出不存在、已下架或已经分过桶返回 false
+     */
+    boolean splitIntoBuckets(Long showId, int bucketCount);
+
+    /**
+     * 删除演出的全部库存数据（内存库存和分桶），演出被删除时调用
+     * @param showId 演出ID
+     */
+    void deleteStock(Long showId);
+}
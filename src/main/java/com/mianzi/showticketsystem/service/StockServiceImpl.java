@@ -0,0 +1,656 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.ShowMapper;
+import com.mianzi.showticketsystem.mapper.StockBucketMapper;
+import com.mianzi.showticketsystem.model.entity.StockBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StockService 接口的实现类
+ * 支持两种库存模式（配置项 stock.mode）：
+ * 1. sql（默认）：每次下单直接执行 UPDATE show SET available_tickets = available_tickets - ?，由数据库行锁保证原子性
+ * 2. memory：在 JVM 内为每个演出维护一个原子计数器（库存账本），下单时先在内存中预扣，
+ *    库存为 0 时立即拒绝，扣减结果由定时任务异步批量同步到 MySQL，避免抢票时所有请求排队等同一行锁
+ * 注意：memory 模式只适用于单实例部署，多实例部署时请使用 sql 模式
+ * sql 模式下也可以把单个热门演出提升到内存库存（promote），热度下降后再降级（demote）回 sql 模式
+ *
+ * 无论哪种模式，落库时如果演出的库存已拆分到分桶表（show_stock_bucket），
+ * 会随机选择一个分桶扣减，分桶库存不足时依次尝试其他分桶，让并发请求分散到不同的行锁上
+ *
+ * 演出售罄后会记录售罄标记，之后的下单请求在访问数据库之前就被拒绝；
+ * 标记在返还库存时清除，并且有有效期，多实例部署时其他实例返还的库存也能在有效期后被看到
+ */
+@Service
+public class StockServiceImpl implements StockService {
+
+    private static final String MODE_MEMORY = "memory";
+
+    @Autowired
+    private ShowMapper showMapper;
+
+    @Autowired
+    private StockBucketMapper stockBucketMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 提升到内存库存和超卖落库时锁定库存行用的独立事务
+    private TransactionTemplate lockTransaction;
+
+    // 库存模式：sql 或 memory
+    @Value("${stock.mode:sql}")
+    private String stockMode;
+
+    // 内存库存账本：showId -> 当前可用票数
+    private final Map<Long, AtomicInteger> ledger = new ConcurrentHashMap<>();
+
+    // 尚未同步到数据库的库存变化：showId -> 待扣减数量（负数表示待返还）
+    private final Map<Long, AtomicInteger> pendingDeltas = new ConcurrentHashMap<>();
+
+    // 售罄标记有效期（毫秒）
+    @Value("${stock.sold-out-ttl-ms:5000}")
+    private long soldOutTtlMs;
+
+    // 售罄标记：showId -> 标记时间（毫秒）
+    private final Map<Long, Long> soldOutMarks = new ConcurrentHashMap<>();
+
+    // 演出的分桶数量缓存：showId -> 分桶数量（0 表示未分桶，库存仍在 show 表中）
+    private final Map<Long, Integer> bucketCounts = new ConcurrentHashMap<>();
+
+    // sql 模式下被提升到内存库存的演出
+    private final Set<Long> memoryShows = ConcurrentHashMap.newKeySet();
+
+    // 正在数据库中扣减的库存：showId -> 数量（发出 UPDATE 之前登记，UPDATE 执行完后清除；提升到内存库存时等它归零）
+    private final Map<Long, AtomicInteger> inFlightDeductions = new ConcurrentHashMap<>();
+
+    // 正在提升到内存库存的演出：showId -> 加载完成的计数器（加载失败时为 null）
+    private final Map<Long, CompletableFuture<AtomicInteger>> seedings = new ConcurrentHashMap<>();
+
+    // 内存扣减请求等待提升完成的最长时间（毫秒），超时按库存不足拒绝
+    @Value("${stock.promote-wait-ms:3000}")
+    private long promoteWaitMs;
+
+    // 同步时数据库库存不足（内存账本已经超卖）的次数和超卖票数
+    private final LongAdder oversoldSyncs = new LongAdder();
+    private final LongAdder oversoldTickets = new LongAdder();
+    // 同步时演出已不存在或已下架、丢弃的变化次数
+    private final LongAdder droppedSyncs = new LongAdder();
+
+    /**
+     * 创建锁定库存行时使用的独立事务（不加入调用方的事务）
+     */
+    @PostConstruct
+    public void init() {
+        lockTransaction = new TransactionTemplate(transactionManager);
+        lockTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 扣减库存
+     */
+    @Override
+    public boolean deductStock(Long showId, int quantity) {
+        if (quantity <= 0) {
+            return false;
+        }
+        if (!isMemoryMode()) {
+            // 先登记再确认演出没有被提升到内存库存：提升时先切换模式，再等登记的扣减执行完（见 promote），
+            // 两边都是先写后读，不会出现提升没有等到、扣减也没有看到切换的情况
+            AtomicInteger inFlight = inFlightDeductions.computeIfAbsent(showId, k -> new AtomicInteger());
+            inFlight.addAndGet(quantity);
+            try {
+                if (!memoryShows.contains(showId)) {
+                    // SQL 模式：原子性减库存，库存不足或演出不存在时返回 false
+                    if (deductFromDatabase(showId, quantity)) {
+                        return true;
+                    }
+                    // 扣减失败时确认一下是否已经卖完（只在失败时多查一次，售罄后的请求都会被售罄标记拦截）
+                    Integer available = showMapper.getAvailableTickets(showId);
+                    if (available == null || available <= 0) {
+                        markSoldOut(showId);
+                    }
+                    return false;
+                }
+            } finally {
+                inFlight.addAndGet(-quantity);
+            }
+        }
+
+        AtomicInteger counter = loadCounter(showId);
+        if (counter == null) {
+            return false; // 演出不存在或已下架
+        }
+
+        // CAS 循环预扣库存，库存不足时立即拒绝，不访问数据库
+        while (true) {
+            int current = counter.get();
+            if (current < quantity) {
+                if (current <= 0) {
+                    markSoldOut(showId);
+                }
+                return false;
+            }
+            if (counter.compareAndSet(current, current - quantity)) {
+                if (current == quantity) {
+                    markSoldOut(showId); // 刚好卖完最后几张
+                }
+                break;
+            }
+        }
+        pendingDeltas.computeIfAbsent(showId, k -> new AtomicInteger()).addAndGet(quantity);
+
+        // 如果当前处于事务中（例如 createOrder），事务回滚时要把内存中预扣的库存加回来
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        counter.addAndGet(quantity);
+                        pendingDeltas.computeIfAbsent(showId, k -> new AtomicInteger()).addAndGet(-quantity);
+                        soldOutMarks.remove(showId);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * 返还库存
+     */
+    @Override
+    public boolean returnStock(Long showId, int quantity) {
+        if (quantity <= 0) {
+            return false;
+        }
+        // 有库存返还，清除售罄标记
+        soldOutMarks.remove(showId);
+
+        AtomicInteger counter = isMemoryMode(showId) ? ledger.get(showId) : null;
+        if (counter == null) {
+            // SQL 模式，或该演出的库存还不在内存中：直接写数据库
+            return returnToDatabase(showId, quantity);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 订单状态变更提交后再加回内存库存：事务回滚时订单仍待返还（会被重新返还），不能多返还一次
+            // （提交前演出被移出内存也没关系，待同步的变化会由定时同步写入数据库）
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counter.addAndGet(quantity);
+                    pendingDeltas.computeIfAbsent(showId, k -> new AtomicInteger()).addAndGet(-quantity);
+                    soldOutMarks.remove(showId);
+                }
+            });
+        } else {
+            counter.addAndGet(quantity);
+            pendingDeltas.computeIfAbsent(showId, k -> new AtomicInteger()).addAndGet(-quantity);
+        }
+        return true;
+    }
+
+    /**
+     * 判断演出是否已售罄
+     */
+    @Override
+    public boolean isSoldOut(Long showId) {
+        Long markedAt = soldOutMarks.get(showId);
+        if (markedAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - markedAt > soldOutTtlMs) {
+            // 标记过期，放行一次请求重新确认库存
+            soldOutMarks.remove(showId, markedAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 查询内存中的实时库存
+     */
+    @Override
+    public Integer getAvailableStock(Long showId) {
+        AtomicInteger counter = ledger.get(showId);
+        return counter == null ? null : counter.get();
+    }
+
+    /**
+     * 丢弃内存中的库存数据，丢弃前先把待同步的变化写入数据库
+     */
+    @Override
+    public void evict(Long showId) {
+        flush(showId);
+        ledger.remove(showId);
+        bucketCounts.remove(showId);
+        soldOutMarks.remove(showId);
+    }
+
+    /**
+     * 开售前预热，开售后的第一批请求不需要再从数据库加载库存和分桶数量
+     */
+    @Override
+    public void prewarm(Long showId) {
+        soldOutMarks.remove(showId);
+        getBucketCount(showId);
+        if (isMemoryMode(showId)) {
+            loadCounter(showId);
+        }
+    }
+
+    /**
+     * 提升到内存库存：先切换模式，等切换前已经进入 sql 扣减的请求执行完 UPDATE，
+     * 再在独立的短事务中锁定库存行读取库存（加锁会等这些请求所在的事务提交或回滚），得到准确的初始库存。
+     * 加载完成之前到达的内存扣减请求等待加载结果，不自己读数据库。
+     * 会等待数据库行锁，不能在下单等持有库存行锁的事务中调用
+     */
+    @Override
+    public boolean promote(Long showId) {
+        if (isMemoryMode() || memoryShows.contains(showId)) {
+            return false;
+        }
+        CompletableFuture<AtomicInteger> seeding = new CompletableFuture<>();
+        if (seedings.putIfAbsent(showId, seeding) != null) {
+            return false;
+        }
+        AtomicInteger counter = null;
+        boolean switched = false;
+        try {
+            switched = memoryShows.add(showId);
+            if (!switched) {
+                counter = ledger.get(showId); // 检查之后被其他线程提升完成
+                return false;
+            }
+            awaitInFlight(showId);
+            counter = seedCounter(showId);
+            return counter != null;
+        } finally {
+            if (switched && counter == null) {
+                memoryShows.remove(showId);
+            }
+            seeding.complete(counter);
+            seedings.remove(showId, seeding);
+        }
+    }
+
+    /**
+     * 降级回 sql 模式：切换模式前后各同步一次，切换后丢弃内存库存
+     * （切换瞬间仍在内存中扣减的请求留下的变化由定时同步写入数据库）
+     */
+    @Override
+    public boolean demote(Long showId) {
+        if (!memoryShows.contains(showId)) {
+            return false;
+        }
+        flush(showId);
+        memoryShows.remove(showId);
+        evict(showId);
+        return true;
+    }
+
+    @Override
+    public boolean isMemoryResident(Long showId) {
+        return isMemoryMode(showId) && ledger.containsKey(showId);
+    }
+
+    /**
+     * 定时把内存库存账本中的变化同步到数据库（默认每200毫秒一次）
+     * 每个演出每次同步只执行一条 UPDATE，而不是每张订单一条
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${stock.reconcile-interval-ms:200}")
+    public void reconcile() {
+        for (Long showId : pendingDeltas.keySet()) {
+            flush(showId);
+        }
+    }
+
+    /**
+     * 应用关闭前把尚未同步的库存变化全部写入数据库
+     */
+    @PreDestroy
+    public void shutdown() {
+        reconcile();
+    }
+
+    /**
+     * 把单个演出的待同步库存变化写入数据库
+     */
+    private void flush(Long showId) {
+        AtomicInteger pending = pendingDeltas.get(showId);
+        if (pending == null) {
+            return;
+        }
+        int delta = pending.getAndSet(0);
+        if (delta == 0) {
+            return;
+        }
+        try {
+            if (delta > 0) {
+                if (!deductFromDatabase(showId, delta)) {
+                    // 数据库库存不足（例如管理员手动修改过库存），这些票已经在内存中卖出，不能丢弃
+                    deductClamped(showId, delta);
+                }
+            } else if (!returnToDatabase(showId, -delta)) {
+                // 演出已下架或已删除，返还的库存无处可写
+                droppedSyncs.increment();
+                System.err.println("同步库存失败，演出不存在或已下架，演出ID: " + showId + "，返还数量: " + (-delta) + "，已丢弃内存库存");
+                ledger.remove(showId);
+            }
+        } catch (Exception e) {
+            // 数据库暂时不可用：把变化量加回去，下次再同步
+            pending.addAndGet(delta);
+            System.err.println("同步库存到数据库失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 数据库库存不足以扣减内存中已经卖出的票：锁定库存行，能扣多少扣多少（库存扣到 0 为止），
+     * 扣不掉的部分就是超卖的票数，记录超卖告警；然后丢弃内存库存，下次按数据库重新加载
+     */
+    private void deductClamped(Long showId, int quantity) {
+        Integer shortage = lockTransaction.execute(status -> {
+            if (getBucketCount(showId) > 0) {
+                int remaining = quantity;
+                for (StockBucket bucket : stockBucketMapper.lockByShowId(showId)) {
+                    int take = Math.min(bucket.getAvailableTickets(), remaining);
+                    if (take > 0 && stockBucketMapper.deductStock(showId, bucket.getBucketNo(), take) == 1) {
+                        remaining -= take;
+                    }
+                }
+                return remaining;
+            }
+            Integer available = showMapper.lockAvailableTickets(showId);
+            if (available == null) {
+                return null;
+            }
+            showMapper.deductStockClamped(showId, quantity);
+            return Math.max(quantity - available, 0);
+        });
+        ledger.remove(showId);
+        if (shortage == null) {
+            droppedSyncs.increment();
+            System.err.println("同步库存失败，演出不存在或已下架，演出ID: " + showId + "，扣减数量: " + quantity + "，已丢弃内存库存");
+        } else if (shortage > 0) {
+            oversoldSyncs.increment();
+            oversoldTickets.add(shortage);
+            System.err.println("【超卖告警】同步库存时数据库库存不足，演出ID: " + showId + "，扣减数量: " + quantity
+                    + "，超卖: " + shortage + " 张，库存已扣到 0，已丢弃内存库存");
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long pending = 0;
+        for (AtomicInteger delta : pendingDeltas.values()) {
+            pending += delta.get();
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("mode", stockMode);
+        metrics.put("memoryShows", memoryShows.size());
+        metrics.put("ledgerSize", ledger.size());
+        metrics.put("pendingDelta", pending);
+        metrics.put("oversoldSyncs", oversoldSyncs.sum());
+        metrics.put("oversoldTickets", oversoldTickets.sum());
+        metrics.put("droppedSyncs", droppedSyncs.sum());
+        return metrics;
+    }
+
+    /**
+     * 把演出的可用库存拆分到分桶表
+     */
+    @Override
+    @Transactional
+    public boolean splitIntoBuckets(Long showId, int bucketCount) {
+        if (bucketCount < 2 || getBucketCount(showId) > 0) {
+            return false;
+        }
+        // 先把内存中待同步的变化写入数据库，保证拆分的是最新库存
+        flush(showId);
+
+        // 锁定演出行，防止拆分过程中有其他请求修改 show 表中的库存
+        Integer available = showMapper.lockAvailableTickets(showId);
+        if (available == null) {
+            return false;
+        }
+
+        // 平均分配，余数分给前面的分桶
+        List<Integer> amounts = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            amounts.add(available / bucketCount + (i < available % bucketCount ? 1 : 0));
+        }
+        stockBucketMapper.insertBuckets(showId, amounts);
+
+        // 库存已全部转移到分桶表，show 表中的可用票数清零
+        if (available > 0) {
+            showMapper.updateStock(showId, available);
+        }
+
+        bucketCounts.put(showId, bucketCount);
+        return true;
+    }
+
+    /**
+     * 删除演出的全部库存数据
+     */
+    @Override
+    public void deleteStock(Long showId) {
+        memoryShows.remove(showId);
+        inFlightDeductions.remove(showId);
+        pendingDeltas.remove(showId);
+        ledger.remove(showId);
+        bucketCounts.remove(showId);
+        soldOutMarks.remove(showId);
+        stockBucketMapper.deleteByShowId(showId);
+    }
+
+    /**
+     * 在数据库中扣减库存：未分桶的演出扣减 show 表，已分桶的演出扣减分桶表
+     * 已分桶的演出按全局加锁顺序（分桶编号从小到大）扣减：从随机分桶开始向编号大的方向逐个尝试，
+     * 扣减失败的分桶在可重复读下仍被本事务锁住，但等待的锁编号总比已持有的大，不会与其他事务互相等待；
+     * 编号比起点小的分桶与这个顺序相反，只用 NOWAIT 加锁，被其他事务锁住时直接跳过，不等待
+     */
+    private boolean deductFromDatabase(Long showId, int quantity) {
+        int bucketCount = getBucketCount(showId);
+        if (bucketCount == 0) {
+            return showMapper.updateStock(showId, quantity) == 1;
+        }
+
+        int start = ThreadLocalRandom.current().nextInt(bucketCount);
+        for (int bucketNo = start; bucketNo < bucketCount; bucketNo++) {
+            if (stockBucketMapper.deductStock(showId, bucketNo, quantity) == 1) {
+                return true;
+            }
+        }
+
+        // 起点之后的分桶都已被本事务锁住，读取库存不会等待
+        List<StockBucket> locked = new ArrayList<>(bucketCount);
+        for (int bucketNo = start; bucketNo < bucketCount; bucketNo++) {
+            StockBucket bucket = stockBucketMapper.lockBucket(showId, bucketNo, false);
+            if (bucket != null) {
+                locked.add(bucket);
+            }
+        }
+        for (int bucketNo = 0; bucketNo < start; bucketNo++) {
+            StockBucket bucket;
+            try {
+                bucket = stockBucketMapper.lockBucket(showId, bucketNo, true);
+            } catch (PessimisticLockingFailureException e) {
+                continue; // 正在被其他事务扣减，跳过
+            }
+            if (bucket == null) {
+                continue;
+            }
+            if (bucket.getAvailableTickets() >= quantity) {
+                return stockBucketMapper.deductStock(showId, bucketNo, quantity) == 1;
+            }
+            locked.add(bucket);
+        }
+
+        // 没有任何一个分桶能单独满足购买数量（库存已经很少、分散在多个分桶中），在已锁定的分桶之间跨分桶扣减
+        return deductAcrossBuckets(showId, quantity, locked);
+    }
+
+    /**
+     * 跨多个已锁定的分桶扣减库存，库存合计不足时不扣减
+     */
+    private boolean deductAcrossBuckets(Long showId, int quantity, List<StockBucket> buckets) {
+        int total = 0;
+        for (StockBucket bucket : buckets) {
+            total += Math.max(0, bucket.getAvailableTickets());
+        }
+        if (total < quantity) {
+            return false;
+        }
+        int remaining = quantity;
+        for (StockBucket bucket : buckets) {
+            int take = Math.min(Math.max(0, bucket.getAvailableTickets()), remaining);
+            if (take > 0) {
+                stockBucketMapper.deductStock(showId, bucket.getBucketNo(), take);
+                remaining -= take;
+            }
+            if (remaining == 0) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在数据库中返还库存：已分桶的演出随机返还到任意一个分桶
+     */
+    private boolean returnToDatabase(Long showId, int quantity) {
+        int bucketCount = getBucketCount(showId);
+        if (bucketCount == 0) {
+            return showMapper.addStock(showId, quantity) > 0;
+        }
+        int bucketNo = ThreadLocalRandom.current().nextInt(bucketCount);
+        return stockBucketMapper.addStock(showId, bucketNo, quantity) > 0;
+    }
+
+    /**
+     * 获取演出的分桶数量（第一次访问时从数据库加载）
+     */
+    private int getBucketCount(Long showId) {
+        return bucketCounts.computeIfAbsent(showId, stockBucketMapper::countBuckets);
+    }
+
+    /**
+     * 记录演出的售罄标记
+     */
+    private void markSoldOut(Long showId) {
+        soldOutMarks.put(showId, System.currentTimeMillis());
+    }
+
+    /**
+     * 获取（必要时从数据库加载）演出的内存库存计数器
+     */
+    private AtomicInteger loadCounter(Long showId) {
+        AtomicInteger counter = ledger.get(showId);
+        if (counter != null) {
+            return counter;
+        }
+        // 正在提升到内存库存：等待加载结果，超时按库存不足拒绝（宁可少卖不超卖）
+        CompletableFuture<AtomicInteger> seeding = seedings.get(showId);
+        if (seeding != null) {
+            try {
+                return seeding.get(promoteWaitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | TimeoutException e) {
+                return null;
+            }
+        }
+        Integer available = showMapper.getAvailableTickets(showId);
+        if (available == null) {
+            return null;
+        }
+        // 并发加载时只保留第一个放进去的计数器
+        AtomicInteger loaded = new AtomicInteger(minusPending(showId, available));
+        AtomicInteger existing = ledger.putIfAbsent(showId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * 等待已经进入 sql 扣减的请求执行完 UPDATE（切换到内存库存之后不会再有新的请求进入）
+     */
+    private void awaitInFlight(Long showId) {
+        AtomicInteger inFlight = inFlightDeductions.get(showId);
+        while (inFlight != null && inFlight.get() > 0) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待数据库扣减完成时被中断, showId=" + showId);
+            }
+        }
+    }
+
+    /**
+     * 在独立事务中锁定演出行（已分桶时同时锁定分桶行）后读取库存，放入内存账本
+     * @return 计数器；演出不存在或已下架时返回 null
+     */
+    private AtomicInteger seedCounter(Long showId) {
+        Integer available = lockTransaction.execute(status -> {
+            if (showMapper.lockAvailableTickets(showId) == null) {
+                return null;
+            }
+            if (getBucketCount(showId) > 0) {
+                stockBucketMapper.lockByShowId(showId);
+            }
+            // 加锁之后才是事务中的第一次一致性读，能看到加锁时等到的所有提交
+            return showMapper.getAvailableTickets(showId);
+        });
+        if (available == null) {
+            return null;
+        }
+        // 覆盖上一次提升留下的计数器
+        AtomicInteger counter = new AtomicInteger(minusPending(showId, available));
+        ledger.put(showId, counter);
+        return counter;
+    }
+
+    /**
+     * 从数据库中读到的库存扣掉还没同步到数据库的变化（例如上一次降级时还在内存中扣减的请求留下的）
+     */
+    private int minusPending(Long showId, int available) {
+        AtomicInteger pending = pendingDeltas.get(showId);
+        return pending == null ? available : Math.max(available - pending.get(), 0);
+    }
+
+    private boolean isMemoryMode() {
+        return MODE_MEMORY.equalsIgnoreCase(stockMode);
+    }
+
+    private boolean isMemoryMode(Long showId) {
+        return isMemoryMode() || memoryShows.contains(showId);
+    }
+}
@@ -0,0 +1,58 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.dto.QueueStatus;
+
+import java.util.Map;
+
+/**
+ * 等候室业务逻辑接口
+ * 开售瞬间大量用户同时下单时，先让用户进入等候室领取排队凭证，再按实际的下单处理速度分批放行，
+ * 只有持有已放行凭证的用户才能下单，数据库连接池不会被瞬间的请求洪峰压垮
+ */
+public interface WaitingRoomService {
+
+    /**
+     * 等候室是否开启（未开启时下单不需要排队凭证）
+     */
+    boolean isEnabled();
+
+    /**
+     * 进入等候室，领取排队凭证；同一用户重复进入同一演出的等候室时保持原来的排队号
+     * @param userId 用户ID
+     * @param showId 演出ID
+     * @return 排队状态（包含排队凭证）
+     */
+    QueueStatus join(Long userId, Long showId);
+
+    /**
+     * 查询排队状态
+     * @param token 排队凭证
+     * @param userId 当前登录的用户ID
+     * @return 排队状态；凭证无效、已过期或不属于该用户时返回 null
+     */
+    QueueStatus getStatus(String token, Long userId);
+
+    /**
+     * 判断排队凭证是否已放行，可以下单
+     * @param token 排队凭证
+     * @param userId 当前登录的用户ID
+     * @param showId 下单的演出ID
+     * @return 已放行返回 true
+     */
+    boolean isAdmitted(String token, Long userId, Long showId);
+
+    /**
+     * 记录一次处理完成的下单请求（成功或失败），用于测量下单吞吐量并据此调整放行速度
+     */
+    void recordCompletion();
+
+    /**
+     * 按放行速度推进各演出的放行进度（定时调用）
+     */
+    void admit();
+
+    /**
+     * 查询等候室统计数据
+     */
+    Map<String, Object> getMetrics();
+}
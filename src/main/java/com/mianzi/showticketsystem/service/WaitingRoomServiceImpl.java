@@ -0,0 +1,232 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.model.dto.QueueStatus;
+import com.mianzi.showticketsystem.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WaitingRoomService 接口的实现类
+ *
+ * 每个演出的等候室只有两个计数器：tail 是已经发出的最大排队号，head 是已经放行的最大排队号。
+ * 排队号不超过 head 的凭证已放行，前面的人数就是 排队号 - head，查询排队位置不需要遍历队列。
+ *
+ * 放行速度跟随实际的下单吞吐量：每次放行时用指数加权移动平均计算最近每秒处理完成的下单请求数，
+ * 放行速度 = 吞吐量 × headroom，并限制在 [min-admit-rate, max-admit-rate] 之间。
+ * 数据库处理变慢时吞吐量下降，放行速度随之降低；处理能力有富余时放行速度逐步提高。
+ * 放行名额在有人排队的演出之间平均分配。
+ *
+ * 排队状态只保存在当前实例的内存中，凭证中记录了实例标识，实例重启后需要重新排队；
+ * 多实例部署时需要按用户或演出把请求固定路由到同一个实例
+ */
+@Service
+public class WaitingRoomServiceImpl implements WaitingRoomService {
+
+    // 吞吐量的指数加权移动平均系数
+    private static final double THROUGHPUT_EWMA_ALPHA = 0.2;
+
+    // 排完的等候室闲置多久后清理用户排队号（毫秒）
+    private static final long IDLE_QUEUE_MILLIS = 600_000;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    // 是否开启等候室
+    @Value("${waiting-room.enabled:false}")
+    private boolean enabled;
+
+    // 排队凭证有效期（毫秒）
+    @Value("${waiting-room.token-ttl-ms:1800000}")
+    private long tokenTtlMillis;
+
+    // 最低放行速度（人/秒），还没有测量到吞吐量时使用
+    @Value("${waiting-room.min-admit-rate:50}")
+    private double minAdmitRate;
+
+    // 最高放行速度（人/秒）
+    @Value("${waiting-room.max-admit-rate:2000}")
+    private double maxAdmitRate;
+
+    // 放行速度与下单吞吐量的比例（大于1时放行速度可以逐步提高）
+    @Value("${waiting-room.headroom:1.2}")
+    private double headroom;
+
+    // 当前实例的等候室标识，实例重启后旧凭证失效
+    private final String epoch = UUID.randomUUID().toString().replace("-", "");
+
+    // 各演出的等候室：showId -> 等候室
+    private final Map<Long, ShowQueue> queues = new ConcurrentHashMap<>();
+
+    // 上次放行后处理完成的下单请求数
+    private final LongAdder completions = new LongAdder();
+
+    private volatile double throughput; // 下单吞吐量（每秒）
+    private volatile double admitRate;  // 当前放行速度（每秒）
+    private double admitCredit;         // 累计的放行名额（只在放行线程中访问）
+    private long lastAdmitNanos = System.nanoTime();
+    private final AtomicLong totalAdmitted = new AtomicLong();
+
+    /**
+     * 一个演出的等候室
+     */
+    private static class ShowQueue {
+        final AtomicLong tail = new AtomicLong(); // 已发出的最大排队号
+        final AtomicLong head = new AtomicLong(); // 已放行的最大排队号
+        final Map<Long, Long> positions = new ConcurrentHashMap<>(); // userId -> 排队号
+        volatile long lastJoinMillis = System.currentTimeMillis();
+
+        long waiting() {
+            return tail.get() - head.get();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public QueueStatus join(Long userId, Long showId) {
+        ShowQueue queue = queues.computeIfAbsent(showId, k -> new ShowQueue());
+        queue.lastJoinMillis = System.currentTimeMillis();
+        long position = queue.positions.computeIfAbsent(userId, k -> queue.tail.incrementAndGet());
+        String token = jwtUtil.generateQueueToken(userId, showId, position, epoch, tokenTtlMillis);
+        return buildStatus(queue, showId, position).setToken(token);
+    }
+
+    @Override
+    public QueueStatus getStatus(String token, Long userId) {
+        Claims claims = parse(token, userId);
+        if (claims == null) {
+            return null;
+        }
+        Long showId = toLong(claims.get("showId"));
+        ShowQueue queue = queues.get(showId);
+        if (queue == null) {
+            return null;
+        }
+        return buildStatus(queue, showId, toLong(claims.get("position"))).setToken(token);
+    }
+
+    @Override
+    public boolean isAdmitted(String token, Long userId, Long showId) {
+        Claims claims = parse(token, userId);
+        if (claims == null || showId == null || !showId.equals(toLong(claims.get("showId")))) {
+            return false;
+        }
+        ShowQueue queue = queues.get(showId);
+        return queue != null && toLong(claims.get("position")) <= queue.head.get();
+    }
+
+    @Override
+    public void recordCompletion() {
+        completions.increment();
+    }
+
+    /**
+     * 定时放行（默认每200毫秒一次）
+     */
+    @Override
+    @Scheduled(fixedRateString = "${waiting-room.admit-interval-ms:200}")
+    public synchronized void admit() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        double seconds = Math.max((now - lastAdmitNanos) / 1e9, 0.001);
+        lastAdmitNanos = now;
+
+        // 测量下单吞吐量并计算放行速度
+        double measured = completions.sumThenReset() / seconds;
+        throughput = throughput == 0 ? measured : throughput + THROUGHPUT_EWMA_ALPHA * (measured - throughput);
+        admitRate = Math.min(maxAdmitRate, Math.max(minAdmitRate, throughput * headroom));
+
+        List<ShowQueue> waitingQueues = new ArrayList<>();
+        long nowMillis = System.currentTimeMillis();
+        for (ShowQueue queue : queues.values()) {
+            if (queue.waiting() > 0) {
+                waitingQueues.add(queue);
+            } else if (nowMillis - queue.lastJoinMillis > IDLE_QUEUE_MILLIS && !queue.positions.isEmpty()) {
+                // 已经排完且长时间没有人进入，清理用户排队号（计数器保留，已发出的凭证仍然有效）
+                queue.positions.clear();
+            }
+        }
+        // 没有人排队时最多积累1秒的名额，避免空闲后一次放行过多
+        admitCredit = Math.min(admitCredit + admitRate * seconds, Math.max(admitRate, 1));
+        if (waitingQueues.isEmpty() || admitCredit < 1) {
+            return;
+        }
+
+        // 放行名额在有人排队的演出之间平均分配，名额不够分时每个演出至少放行1人
+        long budget = (long) admitCredit;
+        long share = Math.max(budget / waitingQueues.size(), 1);
+        for (ShowQueue queue : waitingQueues) {
+            if (budget <= 0) {
+                break;
+            }
+            long admitted = Math.min(Math.min(share, budget), queue.waiting());
+            queue.head.addAndGet(admitted);
+            budget -= admitted;
+            admitCredit -= admitted;
+            totalAdmitted.addAndGet(admitted);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        long waiting = 0;
+        for (ShowQueue queue : queues.values()) {
+            waiting += queue.waiting();
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("queueCount", queues.size());
+        metrics.put("waitingUsers", waiting);
+        metrics.put("totalAdmitted", totalAdmitted.get());
+        metrics.put("orderThroughput", Math.round(throughput * 100) / 100.0);
+        metrics.put("admitRate", Math.round(admitRate * 100) / 100.0);
+        return metrics;
+    }
+
+    private QueueStatus buildStatus(ShowQueue queue, Long showId, long position) {
+        long ahead = Math.max(position - queue.head.get(), 0);
+        // 预计等待时间按当前放行速度在有人排队的演出之间平均分配估算
+        double rate = Math.max(admitRate > 0 ? admitRate : minAdmitRate, 1);
+        return new QueueStatus()
+                .setShowId(showId)
+                .setPosition(ahead)
+                .setAdmitted(ahead == 0)
+                .setEstimatedWaitSeconds((long) Math.ceil(ahead / rate));
+    }
+
+    /**
+     * 解析并校验排队凭证：签名正确、未过期、由当前实例发出、属于当前用户，并且带有演出ID和排队号
+     */
+    private Claims parse(String token, Long userId) {
+        if (token == null || userId == null) {
+            return null;
+        }
+        Claims claims = jwtUtil.getQueueTokenClaims(token);
+        if (claims == null || !epoch.equals(claims.get("epoch")) || !userId.equals(toLong(claims.get("userId")))
+                || toLong(claims.get("showId")) == null || toLong(claims.get("position")) == null) {
+            return null;
+        }
+        return claims;
+    }
+
+    private static Long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+}
@@ -0,0 +1,346 @@
+package com.mianzi.showticketsystem.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 基于二元分词（bigram）的内存倒排索引
+ * 中文没有空格分词，按相邻两个字切分：「周杰伦演唱会」切为「周杰」「杰伦」「伦演」「演唱」「唱会」，
+ * 英文和数字同样按相邻两个字符切分，查询词的所有二元词都出现的文档才是候选，再校验字段中确实包含查询词，
+ * 结果与 LIKE '%关键词%' 一致（匹配任一字段）。
+ * 文本先做 NFKC 规范化（全角字母数字转半角）并转小写；查询按空格分成多个词，每个词都要匹配。
+ * 每个文档有多个字段，字段权重用于排序：包含查询词的字段权重之和，字段以查询词开头或完全相等时额外加分。
+ * 读多写少，查询加读锁，增删文档加写锁
+ *
+ * @param <T> 文档附带的数据（用于过滤和同分时排序）
+ */
+public class BigramSearchIndex<T> {
+
+    private final int[] fieldWeights;
+    private final Comparator<T> tieBreaker;
+
+    // 二元词 -> 包含该词的文档ID（升序）
+    private final Map<String, Postings> postings = new HashMap<>();
+    // 文档ID -> 文档
+    private final Map<Long, Document<T>> documents = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 文档：规范化后的字段和附带的数据
+     */
+    private static class Document<T> {
+        final String[] fields;
+        final T payload;
+
+        Document(String[] fields, T payload) {
+            this.fields = fields;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * 倒排列表：升序的文档ID数组，按ID递增加入时直接追加（全量重建时）
+     */
+    private static class Postings {
+        long[] ids = new long[4];
+        int size;
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int pos = Arrays.binarySearch(ids, 0, size, id);
+                if (pos >= 0) {
+                    return;
+                }
+                insertAt(-pos - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        void insertAt(int index, long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        void remove(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * 查询结果中的一个文档
+     */
+    private static class Hit<T> {
+        final long id;
+        final int score;
+        final T payload;
+
+        Hit(long id, int score, T payload) {
+            this.id = id;
+            this.score = score;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * @param fieldWeights 各字段的权重（字段顺序与 put 时一致）
+     * @param tieBreaker 得分相同时的排序（为 null 时按文档ID排序）
+     */
+    public BigramSearchIndex(int[] fieldWeights, Comparator<T> tieBreaker) {
+        this.fieldWeights = fieldWeights.clone();
+        this.tieBreaker = tieBreaker;
+    }
+
+    /**
+     * 加入或替换文档
+     * @param id 文档ID
+     * @param fields 字段（null 视为空字符串）
+     * @param payload 附带的数据
+     */
+    public void put(long id, String[] fields, T payload) {
+        String[] normalized = new String[fieldWeights.length];
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] = i < fields.length ? normalize(fields[i]) : "";
+        }
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            documents.put(id, new Document<>(normalized, payload));
+            for (String gram : bigrams(normalized)) {
+                postings.computeIfAbsent(gram, k -> new Postings()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档
+     * @return 文档存在时返回 true
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            return removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询文档附带的数据
+     * @return 文档不存在时返回 null
+     */
+    public T getPayload(long id) {
+        lock.readLock().lock();
+        try {
+            Document<T> document = documents.get(id);
+            return document != null ? document.payload : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询
+     * @param query 查询词（多个词用空格分隔，每个词都要匹配）
+     * @param filter 按附带的数据过滤（为 null 时不过滤）
+     * @return 匹配的文档ID，按得分从高到低排序
+     */
+    public List<Long> search(String query, Predicate<T> filter) {
+        List<String> terms = new ArrayList<>();
+        for (String term : normalize(query).split("\\s+")) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        List<Hit<T>> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            long[] candidates = candidates(terms);
+            if (candidates == null) {
+                // 所有查询词都只有一个字，没有二元词可用，逐个文档校验
+                for (Map.Entry<Long, Document<T>> entry : documents.entrySet()) {
+                    addIfMatched(hits, entry.getKey(), entry.getValue(), terms, filter);
+                }
+            } else {
+                for (long id : candidates) {
+                    addIfMatched(hits, id, documents.get(id), terms, filter);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        hits.sort((a, b) -> {
+            if (a.score != b.score) {
+                return Integer.compare(b.score, a.score);
+            }
+            if (tieBreaker != null) {
+                int c = tieBreaker.compare(a.payload, b.payload);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return Long.compare(a.id, b.id);
+        });
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (Hit<T> hit : hits) {
+            ids.add(hit.id);
+        }
+        return ids;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 二元词的数量
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * NFKC 规范化并转小写
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 切分二元词（不跨越空白字符）
+     */
+    private static Set<String> bigrams(String... texts) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String text : texts) {
+            for (int i = 0; i + 1 < text.length(); i++) {
+                char a = text.charAt(i);
+                char b = text.charAt(i + 1);
+                if (!Character.isWhitespace(a) && !Character.isWhitespace(b)) {
+                    grams.add(text.substring(i, i + 2));
+                }
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 求所有查询词的二元词倒排列表的交集（从最短的列表开始）
+     * @return 候选文档ID；没有二元词时返回 null
+     */
+    private long[] candidates(List<String> terms) {
+        List<Postings> lists = new ArrayList<>();
+        for (String gram : bigrams(terms.toArray(new String[0]))) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return new long[0];
+            }
+            lists.add(list);
+        }
+        if (lists.isEmpty()) {
+            return null;
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        long[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int size = result.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            Postings other = lists.get(i);
+            int kept = 0;
+            int j = 0;
+            for (int k = 0; k < size && j < other.size; k++) {
+                while (j < other.size && other.ids[j] < result[k]) {
+                    j++;
+                }
+                if (j < other.size && other.ids[j] == result[k]) {
+                    result[kept++] = result[k];
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 校验文档的字段包含每个查询词，并计算得分
+     */
+    private void addIfMatched(List<Hit<T>> hits, long id, Document<T> document, List<String> terms, Predicate<T> filter) {
+        if (filter != null && !filter.test(document.payload)) {
+            return;
+        }
+        int score = 0;
+        for (String term : terms) {
+            int termScore = 0;
+            for (int i = 0; i < document.fields.length; i++) {
+                String field = document.fields[i];
+                if (field.contains(term)) {
+                    termScore += fieldWeights[i];
+                    if (field.equals(term)) {
+                        termScore += fieldWeights[i] * 2;
+                    } else if (field.startsWith(term)) {
+                        termScore += fieldWeights[i];
+                    }
+                }
+            }
+            if (termScore == 0) {
+                return;
+            }
+            score += termScore;
+        }
+        hits.add(new Hit<>(id, score, document.payload));
+    }
+
+    private boolean removeInternal(long id) {
+        Document<T> old = documents.remove(id);
+        if (old == null) {
+            return false;
+        }
+        for (String gram : bigrams(old.fields)) {
+            Postings list = postings.get(gram);
+            if (list != null) {
+                list.remove(id);
+                if (list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+package com.mianzi.showticketsystem.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min Sketch：用固定大小的计数器矩阵估计每个 key 出现的次数
+ * depth 行、每行 width 个计数器，每个 key 在每一行用不同的哈希落到一个计数器上，估计值取各行计数器的最小值。
+ * 估计值只会偏大不会偏小，偏大的部分不超过 总次数 × e / width（以 1 - e^-depth 的概率）；
+ * 不管有多少个不同的 key，占用的内存都是 depth × width 个 long。
+ *
+ * 计数器是 AtomicLongArray，多线程同时计数不需要加锁
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters; // 第 row 行第 col 列的计数器下标为 row * width + col
+
+    /**
+     * @param depth 行数（哈希函数个数）
+     * @param width 每行的计数器个数（会向上取整为2的幂）
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException("行数和每行计数器个数必须大于0");
+        }
+        int roundedWidth = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.depth = depth;
+        this.mask = roundedWidth - 1;
+        this.counters = new AtomicLongArray(depth * roundedWidth);
+    }
+
+    /**
+     * 计数一次
+     * @return 计数后 key 的估计次数
+     */
+    public long add(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, key)));
+        }
+        return estimate;
+    }
+
+    /**
+     * 查询 key 的估计次数
+     */
+    public long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, key)));
+        }
+        return estimate;
+    }
+
+    /**
+     * 清空所有计数
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int index(int row, long key) {
+        // 每行使用不同的种子，再用 murmur3 的 fmix64 打散
+        long h = key * 0x9E3779B97F4A7C15L + (row + 1) * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return row * (mask + 1) + (int) (h & mask);
+    }
+}
@@ -0,0 +1,269 @@
+package com.mianzi.showticketsystem.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分层时间轮定时器
+ * 用于管理大量"在某个时间点触发"的任务（例如订单超时关闭），添加和取消任务都是 O(1)
+ *
+ * 第一层时间轮每格 tickMs 毫秒，共 wheelSize 格；超出当前层范围的任务放到上一层（每格等于下一层一整圈），
+ * 上层的格子到期时把其中的任务重新放入下层，直到落在第一层的格子中并在到期时执行。
+ * 上层按格子的起点提前降级，第一层按触发时间向上取整到格子，任务不会早于触发时间执行（最多晚一格）。
+ * 只有"有任务的格子"会进入 DelayQueue，驱动线程在没有任务到期时处于等待状态，不会空转。
+ */
+public class HierarchicalTimingWheel implements AutoCloseable {
+
+    private final DelayQueue<Bucket> delayQueue = new DelayQueue<>();
+    private final Map<Object, TimerEntry> entries = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Wheel wheel;
+    private final Executor executor;
+    private final Thread driver;
+    private volatile boolean running = true;
+
+    /**
+     * @param name 驱动线程名称
+     * @param tickMs 第一层时间轮每格的时长（毫秒），即触发精度
+     * @param wheelSize 每层时间轮的格数
+     * @param executor 执行到期任务的线程池
+     */
+    public HierarchicalTimingWheel(String name, long tickMs, int wheelSize, Executor executor) {
+        this.wheel = new Wheel(tickMs, wheelSize, System.currentTimeMillis(), true);
+        this.executor = executor;
+        this.driver = new Thread(this::drive, name);
+        this.driver.setDaemon(true);
+        this.driver.start();
+    }
+
+    /**
+     * 添加定时任务，同一个 key 已有任务时替换原任务
+     * @param key 任务标识（例如订单ID），用于取消任务
+     * @param deadlineMs 触发时间（毫秒时间戳），已经过期的任务会立即执行
+     * @param task 任务
+     */
+    public void schedule(Object key, long deadlineMs, Runnable task) {
+        TimerEntry entry = new TimerEntry(key, deadlineMs, task);
+        TimerEntry previous = entries.put(key, entry);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        lock.readLock().lock();
+        try {
+            addOrRun(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取消定时任务
+     * @param key 任务标识
+     * @return 任务存在且尚未执行时返回 true
+     */
+    public boolean cancel(Object key) {
+        TimerEntry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        entry.cancelled = true;
+        return true;
+    }
+
+    /**
+     * 当前等待触发的任务数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        driver.interrupt();
+    }
+
+    /**
+     * 放入时间轮；如果已经到期则提交执行
+     */
+    private void addOrRun(TimerEntry entry) {
+        if (entry.cancelled) {
+            return;
+        }
+        if (!wheel.add(entry)) {
+            if (entries.remove(entry.key, entry)) {
+                executor.execute(entry.task);
+            }
+        }
+    }
+
+    /**
+     * 驱动线程：等待最近一个到期的格子，推进时间轮并处理格子中的任务
+     */
+    private void drive() {
+        while (running) {
+            try {
+                Bucket bucket = delayQueue.poll(200, TimeUnit.MILLISECONDS);
+                if (bucket == null) {
+                    continue;
+                }
+                lock.writeLock().lock();
+                try {
+                    while (bucket != null) {
+                        wheel.advanceClock(bucket.getExpiration());
+                        for (TimerEntry entry : bucket.flush()) {
+                            addOrRun(entry);
+                        }
+                        bucket = delayQueue.poll();
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("时间轮处理到期任务失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 定时任务
+     */
+    private static class TimerEntry {
+        final Object key;
+        final long deadlineMs;
+        final Runnable task;
+        volatile boolean cancelled;
+
+        TimerEntry(Object key, long deadlineMs, Runnable task) {
+            this.key = key;
+            this.deadlineMs = deadlineMs;
+            this.task = task;
+        }
+    }
+
+    /**
+     * 时间轮的一个格子，保存到期时间落在同一格内的任务
+     */
+    private static class Bucket implements Delayed {
+        private final AtomicLong expiration = new AtomicLong(-1);
+        private List<TimerEntry> items = new ArrayList<>();
+
+        synchronized void add(TimerEntry entry) {
+            items.add(entry);
+        }
+
+        /**
+         * 取出格子中的全部任务并重置格子
+         */
+        synchronized List<TimerEntry> flush() {
+            List<TimerEntry> flushed = items;
+            items = new ArrayList<>();
+            expiration.set(-1);
+            return flushed;
+        }
+
+        /**
+         * 设置格子的到期时间，返回是否发生变化（变化时需要重新放入 DelayQueue）
+         */
+        boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        long getExpiration() {
+            return expiration.get();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getExpiration(), ((Bucket) other).getExpiration());
+        }
+    }
+
+    /**
+     * 单层时间轮
+     */
+    private class Wheel {
+        private final long tickMs;
+        private final int wheelSize;
+        private final long interval;
+        private final Bucket[] buckets;
+        // 是否是第一层（到期后直接执行任务，而不是降级到下层）
+        private final boolean bottom;
+        private volatile long currentTime;
+        private volatile Wheel overflowWheel;
+
+        Wheel(long tickMs, int wheelSize, long startMs, boolean bottom) {
+            this.tickMs = tickMs;
+            this.bottom = bottom;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            // 第一层向上取整后最远落在一整圈之后的那一格，与当前格（可能还有没处理的任务）同时存在，多留一格
+            this.buckets = new Bucket[bottom ? wheelSize + 1 : wheelSize];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new Bucket();
+            }
+            this.currentTime = startMs - (startMs % tickMs);
+        }
+
+        /**
+         * 放入任务，已经到期时返回 false
+         * 第一层放入起点不早于触发时间的格子（向上取整），上层放入触发时间所在的格子，到期时降级到下层
+         */
+        boolean add(TimerEntry entry) {
+            long expiration = entry.deadlineMs;
+            if (bottom ? expiration <= currentTime : expiration < currentTime + tickMs) {
+                return false;
+            }
+            long virtualId = bottom ? (expiration + tickMs - 1) / tickMs : expiration / tickMs;
+            if (bottom ? virtualId * tickMs <= currentTime + interval : virtualId * tickMs < currentTime + interval) {
+                Bucket bucket = buckets[(int) (virtualId % buckets.length)];
+                bucket.add(entry);
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    delayQueue.offer(bucket);
+                }
+                return true;
+            }
+            return overflow().add(entry);
+        }
+
+        /**
+         * 推进时间轮的当前时间（上层时间轮一起推进）
+         */
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                Wheel overflow = overflowWheel;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+
+        private Wheel overflow() {
+            if (overflowWheel == null) {
+                synchronized (this) {
+                    if (overflowWheel == null) {
+                        overflowWheel = new Wheel(interval, wheelSize, currentTime, false);
+                    }
+                }
+            }
+            return overflowWheel;
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.util.Map;
 /**
  * JWT工具类
  * 用于生成和解析JWT Token
+ * 登录Token和排队凭证用不同的密钥签名，并且都带有类型声明（typ），排队凭证不能当作登录Token使用，反之亦然
  */
 @Component
 public class JwtUtil {
@@ -25,6 +26,18 @@ public class JwtUtil {
     @Value("${jwt.expiration:86400000}") // 默认24小时（毫秒）
     private Long expiration;
 
+    // 排队凭证的签名密钥，没有配置时由 jwt.secret 派生（与登录Token的密钥不同）
+    @Value("${jwt.queue-secret:}")
+    private String queueSecret;
+
+    // 排队凭证的 subject
+    private static final String QUEUE_TOKEN_SUBJECT = "waiting-room";
+
+    // Token类型声明：登录Token为 access，排队凭证为 queue
+    private static final String TYPE_CLAIM = "typ";
+    private static final String ACCESS_TOKEN_TYPE = "access";
+    private static final String QUEUE_TOKEN_TYPE = "queue";
+
     /**
      * 生成JWT Token
      * @param userId 用户ID
@@ -37,6 +50,7 @@ public class JwtUtil {
         claims.put("userId", userId);
         claims.put("username", username);
         claims.put("role", role);
+        claims.put(TYPE_CLAIM, ACCESS_TOKEN_TYPE);
         
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration);
@@ -52,6 +66,44 @@ public class JwtUtil {
                 .compact();
     }
 
+    /**
+     * 生成排队凭证（等候室）
+     * @param userId 用户ID
+     * @param showId 演出ID
+     * @param position 排队号
+     * @param epoch 等候室实例标识（实例重启后旧凭证失效）
+     * @param ttlMillis 有效期（毫秒）
+     * @return 排队凭证字符串
+     */
+    public String generateQueueToken(Long userId, Long showId, long position, String epoch, long ttlMillis) {
+        Date now = new Date();
+        return Jwts.builder()
+                .subject(QUEUE_TOKEN_SUBJECT)
+                .claim(TYPE_CLAIM, QUEUE_TOKEN_TYPE)
+                .claim("userId", userId)
+                .claim("showId", showId)
+                .claim("position", position)
+                .claim("epoch", epoch)
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + ttlMillis))
+                .signWith(queueKey())
+                .compact();
+    }
+
+    /**
+     * 解析排队凭证
+     * @param token 排队凭证
+     * @return Claims对象；签名错误、已过期或不是排队凭证时返回 null
+     */
+    public Claims getQueueTokenClaims(String token) {
+        Claims claims = parseClaims(token, queueKey());
+        if (claims == null || !QUEUE_TOKEN_TYPE.equals(claims.get(TYPE_CLAIM))
+                || !QUEUE_TOKEN_SUBJECT.equals(claims.getSubject())) {
+            return null;
+        }
+        return claims;
+    }
+
     /**
      * 从Token中获取用户ID
      * @param token JWT Token
@@ -99,13 +151,22 @@ public class JwtUtil {
     }
 
     /**
-     * 从Token中解析Claims
+     * 从登录Token中解析Claims
      * @param token JWT Token
-     * @return Claims对象
+     * @return Claims对象；签名错误、已过期或不是登录Token时返回 null
      */
     private Claims getClaimsFromToken(String token) {
+        Claims claims = parseClaims(token, Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)));
+        if (claims == null) {
+            return null;
+        }
+        // 升级前签发的登录Token没有类型声明，仍然有效；带有其他类型声明的Token一律拒绝
+        Object type = claims.get(TYPE_CLAIM);
+        return type == null || ACCESS_TOKEN_TYPE.equals(type) ? claims : null;
+    }
+
+    private Claims parseClaims(String token, SecretKey key) {
         try {
-            SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
             return Jwts.parser()
                     .verifyWith(key)
                     .build()
@@ -117,7 +178,15 @@ public class JwtUtil {
     }
 
     /**
-     * 验证Token是否有效
+     * 排队凭证的签名密钥
+     */
+    private SecretKey queueKey() {
+        String key = queueSecret != null && !queueSecret.isEmpty() ? queueSecret : secret + "#" + QUEUE_TOKEN_SUBJECT;
+        return Keys.hmacShaKeyFor(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 验证登录Token是否有效（排队凭证不是登录Token，返回 false）
      * @param token JWT Token
      * @return 是否有效
      */
@@ -0,0 +1,355 @@
+package com.mianzi.showticketsystem.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 有容量上限和有效期的 LRU 缓存
+ * 按 key 的哈希分成多个段，每段是一个按访问顺序排列的 LinkedHashMap，段内加锁，不同段互不竞争；
+ * 段满时淘汰该段最久没有访问的条目，条目超过有效期后在下次访问时失效。
+ * 不缓存 null 值
+ *
+ * 通过 get(key, loader) 查询时：
+ * 1. 同一个 key 同时只有一个线程执行 loader，其他同时未命中的线程等待并共享它的结果，避免缓存失效瞬间的请求全部打到数据库；
+ * 2. 配置了过期宽限期（staleMillis）和后台刷新线程池时，条目过期后的宽限期内直接返回旧值，同时在后台刷新一次
+ */
+public class LruTtlCache<K, V> {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final Executor refreshExecutor;
+
+    // 正在加载的 key -> 加载结果，同一个 key 的并发加载共享同一个结果
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();   // 因容量淘汰的条目数
+    private final LongAdder expirations = new LongAdder(); // 因过期失效的条目数
+    private final LongAdder staleHits = new LongAdder();   // 过期宽限期内返回旧值的次数
+    private final LongAdder loads = new LongAdder();       // 执行 loader 的次数（含后台刷新）
+    private final LongAdder coalesced = new LongAdder();   // 等待其他线程加载结果的次数
+    private final LongAdder refreshFailures = new LongAdder(); // 后台刷新失败的次数
+
+    /**
+     * 缓存条目
+     */
+    private static class Entry<V> {
+        final V value;
+        final long expireAtMillis;
+
+        Entry(V value, long expireAtMillis) {
+            this.value = value;
+            this.expireAtMillis = expireAtMillis;
+        }
+    }
+
+    /**
+     * 缓存段：按访问顺序排列，超过容量时淘汰最久没有访问的条目
+     */
+    private static class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param maxSize 最多缓存的条目数
+     * @param ttlMillis 条目有效期（毫秒）
+     */
+    public LruTtlCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, 0, null);
+    }
+
+    /**
+     * @param maxSize 最多缓存的条目数
+     * @param ttlMillis 条目有效期（毫秒）
+     * @param staleMillis 过期宽限期（毫秒），宽限期内 get(key, loader) 返回旧值并在后台刷新；0 表示不返回过期的值
+     * @param refreshExecutor 后台刷新使用的线程池，为 null 时不做后台刷新
+     */
+    @SuppressWarnings("unchecked")
+    public LruTtlCache(int maxSize, long ttlMillis, long staleMillis, Executor refreshExecutor) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("缓存容量和有效期必须大于0");
+        }
+        if (staleMillis < 0) {
+            throw new IllegalArgumentException("过期宽限期不能小于0");
+        }
+        this.ttlMillis = ttlMillis;
+        this.staleMillis = refreshExecutor != null ? staleMillis : 0;
+        this.refreshExecutor = refreshExecutor;
+        int segmentCount = Math.min(SEGMENT_COUNT, maxSize);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // 容量平均分到各段，余数分给前面的段
+            segments[i] = new Segment<>(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0), evictions);
+        }
+    }
+
+    /**
+     * 查询缓存
+     * @return 缓存的值；不存在或已过期时返回 null
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= entry.expireAtMillis) {
+                // 宽限期内的条目留给 get(key, loader) 返回旧值
+                if (now >= entry.expireAtMillis + staleMillis) {
+                    segment.remove(key);
+                    expirations.increment();
+                }
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * 查询缓存，未命中时加载
+     * 同一个 key 同时只有一个线程执行 loader，其他线程等待并共享结果；
+     * 条目过期但还在宽限期内时直接返回旧值，并在后台刷新（同一个 key 同时只有一个刷新任务）。
+     * loader 返回 null 时不缓存，并丢弃旧值
+     * @param key 缓存的 key
+     * @param loader 加载函数（如查询数据库），抛出的异常会传给所有等待的线程
+     * @return 缓存或加载的值
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Entry<V> entry;
+        Segment<K, V> segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && now >= entry.expireAtMillis + staleMillis) {
+                segment.remove(key);
+                expirations.increment();
+                entry = null;
+            }
+        }
+        if (entry != null && now < entry.expireAtMillis) {
+            hits.increment();
+            return entry.value;
+        }
+        if (entry != null) {
+            staleHits.increment();
+            refreshAsync(key, loader);
+            return entry.value;
+        }
+        misses.increment();
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        return load(key, loader, future);
+    }
+
+    /**
+     * 放入缓存（value 为 null 时不缓存）
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * 使某个 key 的缓存失效（正在进行的加载结果不会再放入缓存）
+     */
+    public void invalidate(K key) {
+        loading.remove(key);
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * 清空缓存（正在进行的加载结果不会再放入缓存）
+     */
+    public void clear() {
+        loading.clear();
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * 清除已过期的条目（可以定时调用，避免过期条目长期占用内存）
+     * 宽限期内的条目保留
+     * @return 清除的条目数
+     */
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                Iterator<Entry<V>> iterator = segment.values().iterator();
+                while (iterator.hasNext()) {
+                    if (now >= iterator.next().expireAtMillis + staleMillis) {
+                        iterator.remove();
+                        purged++;
+                    }
+                }
+            }
+        }
+        expirations.add(purged);
+        return purged;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long expirationCount() {
+        return expirations.sum();
+    }
+
+    public long staleHitCount() {
+        return staleHits.sum();
+    }
+
+    public long loadCount() {
+        return loads.sum();
+    }
+
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long refreshFailureCount() {
+        return refreshFailures.sum();
+    }
+
+    /**
+     * 执行 loader 并把结果交给等待的线程
+     * 只有加载期间没有被 invalidate/clear 时才放入缓存，避免把写操作之前读到的旧数据放回缓存
+     */
+    private V load(K key, Function<? super K, ? extends V> loader, CompletableFuture<V> future) {
+        V value;
+        try {
+            loads.increment();
+            value = loader.apply(key);
+        } catch (RuntimeException e) {
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        if (loading.remove(key, future)) {
+            if (value != null) {
+                put(key, value);
+            } else {
+                // 数据已经不存在（如演出下架），丢弃宽限期内的旧值
+                Segment<K, V> segment = segmentFor(key);
+                synchronized (segment) {
+                    segment.remove(key);
+                }
+            }
+        }
+        future.complete(value);
+        return value;
+    }
+
+    /**
+     * 在后台刷新过期的条目，同一个 key 已经在加载时不再重复提交
+     */
+    private void refreshAsync(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        if (loading.putIfAbsent(key, future) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, loader, future);
+                } catch (RuntimeException e) {
+                    // 刷新失败时保留旧值，宽限期结束后由下一次查询重新加载
+                    refreshFailures.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已满或已关闭，在当前线程刷新（可能已有线程在等待这次加载的结果）
+            try {
+                load(key, loader, future);
+            } catch (RuntimeException ex) {
+                refreshFailures.increment();
+            }
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[(h & Integer.MAX_VALUE) % segments.length];
+    }
+}
@@ -0,0 +1,71 @@
+package com.mianzi.showticketsystem.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * 汉字拼音首字母
+ * GB2312 一级汉字（3755 个常用字，区号 16~55）按拼音排序，根据区位码落在哪个拼音首字母的区间即可得到首字母，
+ * 不需要拼音字库。二级汉字按部首排序，无法这样计算，直接跳过；多音字只能得到 GB2312 排序时使用的读音
+ */
+public final class PinyinInitials {
+
+    private static final Charset GB2312 = Charset.forName("GB2312");
+
+    // 各拼音首字母第一个字的区位码（区号 * 100 + 位号），最后一个是一级汉字的结束位置
+    private static final int[] BOUNDARIES = {
+            1601, 1637, 1833, 2078, 2274, 2302, 2433, 2594, 2787, 3106, 3212, 3472,
+            3635, 3722, 3730, 3858, 4027, 4086, 4390, 4558, 4684, 4925, 5249, 5590
+    };
+
+    // 与 BOUNDARIES 对应的首字母（没有以 i、u、v 开头的拼音）
+    private static final char[] LETTERS = "abcdefghjklmnopqrstwxyz".toCharArray();
+
+    private PinyinInitials() {
+    }
+
+    /**
+     * 转换为拼音首字母：汉字转为首字母，英文字母和数字转为小写保留，其他字符跳过
+     * 例如「周杰伦2025演唱会」转为「zjl2025ych」
+     */
+    public static String of(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder initials = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128) {
+                if (Character.isLetterOrDigit(c)) {
+                    initials.append(Character.toLowerCase(c));
+                }
+                continue;
+            }
+            char initial = initialOf(c);
+            if (initial != 0) {
+                initials.append(initial);
+            }
+        }
+        return initials.toString();
+    }
+
+    /**
+     * 单个汉字的拼音首字母
+     * @return 首字母；不是 GB2312 一级汉字时返回 0
+     */
+    public static char initialOf(char c) {
+        byte[] bytes = String.valueOf(c).getBytes(GB2312);
+        if (bytes.length != 2) {
+            return 0;
+        }
+        int code = ((bytes[0] & 0xff) - 160) * 100 + ((bytes[1] & 0xff) - 160);
+        if (code < BOUNDARIES[0] || code >= BOUNDARIES[BOUNDARIES.length - 1]) {
+            return 0;
+        }
+        for (int i = LETTERS.length - 1; i >= 0; i--) {
+            if (code >= BOUNDARIES[i]) {
+                return LETTERS[i];
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,259 @@
+package com.mianzi.showticketsystem.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 座位位图
+ * 每个座位占1位（1 表示已售出/已锁定，0 表示空闲），5万座的体育场只需要约6KB。
+ * 座位按排连续编号：第0排的座位编号为 0 ~ rowLengths[0]-1，第1排紧接其后，依此类推；
+ * 排的顺序就是选座的优先顺序（靠前的排优先分配）。
+ *
+ * 占座和释放都是对所在 long 的 CAS，不需要加锁；一次占多个座位时如果其中任何一个已被占用，
+ * 会撤销本次已占的座位并返回失败，保证多座位占座的原子性。
+ */
+public class SeatBitmap {
+
+    private final AtomicLongArray words;
+    private final int capacity;
+    private final int[] rowStarts;  // 每排第一个座位的编号
+    private final int[] rowLengths; // 每排的座位数
+    private final int[] rowTiers;   // 每排所属的票档（-1 表示未划分票档）
+
+    /**
+     * @param rowLengths 每排的座位数（按选座优先顺序排列）
+     * @param rowTiers 每排所属的票档，与 rowLengths 一一对应
+     */
+    public SeatBitmap(int[] rowLengths, int[] rowTiers) {
+        if (rowLengths.length == 0 || rowLengths.length != rowTiers.length) {
+            throw new IllegalArgumentException("座位排数必须大于0，且与票档数量一致");
+        }
+        this.rowLengths = rowLengths.clone();
+        this.rowTiers = rowTiers.clone();
+        this.rowStarts = new int[rowLengths.length];
+        int total = 0;
+        for (int row = 0; row < rowLengths.length; row++) {
+            if (rowLengths[row] <= 0) {
+                throw new IllegalArgumentException("每排座位数必须大于0");
+            }
+            rowStarts[row] = total;
+            total += rowLengths[row];
+        }
+        this.capacity = total;
+        this.words = new AtomicLongArray((total + 63) >>> 6);
+    }
+
+    /**
+     * 座位总数
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 排数
+     */
+    public int rowCount() {
+        return rowLengths.length;
+    }
+
+    /**
+     * 座位所在的排
+     */
+    public int rowOf(int seatNo) {
+        checkSeat(seatNo);
+        int index = Arrays.binarySearch(rowStarts, seatNo);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * 某一排第一个座位的编号
+     */
+    public int rowStart(int row) {
+        return rowStarts[row];
+    }
+
+    /**
+     * 某一排所属的票档
+     */
+    public int rowTier(int row) {
+        return rowTiers[row];
+    }
+
+    /**
+     * 座位是否已被占用
+     */
+    public boolean isReserved(int seatNo) {
+        checkSeat(seatNo);
+        return (words.get(seatNo >>> 6) & (1L << seatNo)) != 0;
+    }
+
+    /**
+     * 空闲座位数
+     */
+    public int availableCount() {
+        int reserved = 0;
+        for (int i = 0; i < words.length(); i++) {
+            reserved += Long.bitCount(words.get(i));
+        }
+        return capacity - reserved;
+    }
+
+    /**
+     * 原子地占用多个座位：全部空闲时全部占用并返回 true，否则不占用任何座位并返回 false
+     * @param seatNos 座位编号
+     * @return 是否占用成功
+     */
+    public boolean reserve(int[] seatNos) {
+        for (int seatNo : seatNos) {
+            checkSeat(seatNo);
+        }
+        for (int i = 0; i < seatNos.length; i++) {
+            if (!setBit(seatNos[i])) {
+                // 有座位已被占用（或参数中有重复座位），撤销本次已占用的座位
+                for (int j = 0; j < i; j++) {
+                    clearBit(seatNos[j]);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 释放座位
+     * @param seatNos 座位编号
+     */
+    public void release(int[] seatNos) {
+        for (int seatNo : seatNos) {
+            checkSeat(seatNo);
+            clearBit(seatNo);
+        }
+    }
+
+    /**
+     * 查找最佳的 count 个相邻空闲座位：按排的优先顺序，找到第一排能容纳 count 个相邻座位的，
+     * 在这一排中选择最靠近中间的位置（只查找，不占用）
+     * @param count 座位数
+     * @param tier 票档，小于0表示不限票档
+     * @return 座位编号，没有满足条件的座位时返回 null
+     */
+    public int[] findBestAvailable(int count, int tier) {
+        if (count <= 0) {
+            return null;
+        }
+        for (int row = 0; row < rowLengths.length; row++) {
+            int length = rowLengths[row];
+            if (length < count || (tier >= 0 && rowTiers[row] != tier)) {
+                continue;
+            }
+            int start = rowStarts[row];
+            int end = start + length;
+            // 让座位块中心最接近排中心的起始位置；距离用两倍坐标计算，避免小数
+            int idealStart = start + (length - count) / 2;
+            int bestStart = -1;
+            long bestDistance = Long.MAX_VALUE;
+            int position = start;
+            while (position < end) {
+                int freeFrom = nextClearBit(position, end);
+                if (freeFrom >= end) {
+                    break;
+                }
+                int freeTo = nextSetBit(freeFrom, end);
+                if (freeTo - freeFrom >= count) {
+                    int candidate = Math.max(freeFrom, Math.min(idealStart, freeTo - count));
+                    long distance = Math.abs(2L * candidate + count - (2L * start + length));
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        bestStart = candidate;
+                    }
+                }
+                position = freeTo;
+            }
+            if (bestStart >= 0) {
+                int[] seats = new int[count];
+                for (int i = 0; i < count; i++) {
+                    seats[i] = bestStart + i;
+                }
+                return seats;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 导出位图（第 i 个座位对应第 i/8 个字节的第 i%8 位），用于返回给前端绘制座位图
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[(capacity + 7) >>> 3];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (words.get(i >>> 3) >>> ((i & 7) << 3));
+        }
+        return bytes;
+    }
+
+    private void checkSeat(int seatNo) {
+        if (seatNo < 0 || seatNo >= capacity) {
+            throw new IllegalArgumentException("座位编号超出范围: " + seatNo);
+        }
+    }
+
+    private boolean setBit(int seatNo) {
+        int index = seatNo >>> 6;
+        long mask = 1L << seatNo;
+        while (true) {
+            long current = words.get(index);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    private void clearBit(int seatNo) {
+        int index = seatNo >>> 6;
+        long mask = 1L << seatNo;
+        while (true) {
+            long current = words.get(index);
+            if ((current & mask) == 0 || words.compareAndSet(index, current, current & ~mask)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * [from, end) 中第一个空闲座位，没有时返回 end
+     */
+    private int nextClearBit(int from, int end) {
+        int index = from >>> 6;
+        long word = ~words.get(index) & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return Math.min((index << 6) + Long.numberOfTrailingZeros(word), end);
+            }
+            if (++index << 6 >= end) {
+                return end;
+            }
+            word = ~words.get(index);
+        }
+    }
+
+    /**
+     * [from, end) 中第一个已占用座位，没有时返回 end
+     */
+    private int nextSetBit(int from, int end) {
+        int index = from >>> 6;
+        long word = words.get(index) & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return Math.min((index << 6) + Long.numberOfTrailingZeros(word), end);
+            }
+            if (++index << 6 >= end) {
+                return end;
+            }
+            word = words.get(index);
+        }
+    }
+}
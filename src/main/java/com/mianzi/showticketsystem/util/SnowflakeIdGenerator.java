@@ -0,0 +1,78 @@
+package com.mianzi.showticketsystem.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法ID生成器
+ * 用于生成全局唯一、趋势递增的商户订单号
+ * ID 结构（64位）：1位符号位(0) + 41位毫秒时间戳 + 10位节点ID + 12位毫秒内序列号
+ * 每个节点每毫秒最多生成 4096 个ID，同一毫秒内的序列号用完时借用下一毫秒
+ */
+@Component
+public class SnowflakeIdGenerator {
+
+    // 起始时间：2024-01-01 00:00:00 UTC
+    private static final long EPOCH = 1704067200000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // 允许的最大时钟回拨（毫秒），回拨不超过这个值时继续使用上一次的时间戳，超过则报错
+    private static final long MAX_BACKWARD_MILLIS = 5000;
+
+    private final long nodeId;
+
+    // 上一次生成的 (时间戳 << 12 | 序列号)，通过 CAS 更新，不需要加锁
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(@Value("${order.node-id:1}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点ID必须在 0~" + MAX_NODE_ID + " 之间: " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * 生成下一个ID（线程安全，无锁，不创建任何对象）
+     * @return 唯一ID
+     */
+    public long nextId() {
+        while (true) {
+            long now = System.currentTimeMillis() - EPOCH;
+            long last = lastState.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+
+            long next;
+            if (now > lastTimestamp) {
+                // 进入新的毫秒，序列号从0开始
+                next = now << SEQUENCE_BITS;
+            } else {
+                // 同一毫秒内（或时钟回拨）：在上一次的基础上加1，序列号用完时自动进位到下一毫秒
+                if (lastTimestamp - now > MAX_BACKWARD_MILLIS) {
+                    throw new IllegalStateException("系统时钟回拨 " + (lastTimestamp - now) + " 毫秒，拒绝生成ID");
+                }
+                next = last + 1;
+            }
+
+            if (lastState.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & SEQUENCE_MASK;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    /**
+     * 生成商户订单号（格式：ORD + 雪花ID）
+     * @return 商户订单号
+     */
+    public String nextOutTradeNo() {
+        return "ORD" + nextId();
+    }
+}
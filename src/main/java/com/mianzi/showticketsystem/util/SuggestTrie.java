@@ -0,0 +1,264 @@
+package com.mianzi.showticketsystem.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * 前缀联想用的压缩前缀树（只读）
+ * 路径压缩（radix）：只有一个子节点且不是词尾的节点合并到边上，节点数不超过词数的两倍；
+ * 所有节点存放在数组中：子节点连续存放并按边的首字符排序，查找子节点用二分查找，不需要为每个节点创建对象。
+ * 每个节点预先计算子树中权重最高的前 K 个条目（同一个条目只出现一次），
+ * 查询时沿前缀走到对应节点后直接返回，耗时只与前缀长度有关，与条目总数无关。
+ * 一个条目（如演出）可以有多个词（名称、场馆、拼音首字母等）。
+ * 通过 Builder 一次性建立，建立后不能修改，可以被多个线程同时查询
+ */
+public final class SuggestTrie {
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final char[] labels;      // 所有边的字符拼接在一起
+    private final int[] labelStart;   // 节点入边在 labels 中的起点
+    private final int[] labelLength;  // 节点入边的长度
+    private final int[] firstChild;   // 第一个子节点
+    private final int[] childCount;   // 子节点数
+    private final int[] topStart;     // 节点的前 K 个条目在 tops 中的起点
+    private final int[] topCount;     // 节点的前 K 个条目数
+    private final int[] tops;         // 条目下标，每个节点一段，按权重从高到低排列
+    private final long[] itemIds;
+    private final float[] itemWeights;
+    private final int nodeCount;
+
+    private SuggestTrie(Builder builder, int topK) {
+        int keyCount = builder.keys.size();
+        int maxNodes = keyCount * 2 + 1;
+        this.itemIds = builder.itemIds.stream().mapToLong(Long::longValue).toArray();
+        this.itemWeights = new float[builder.itemWeights.size()];
+        for (int i = 0; i < itemWeights.length; i++) {
+            itemWeights[i] = builder.itemWeights.get(i);
+        }
+        this.labelStart = new int[maxNodes];
+        this.labelLength = new int[maxNodes];
+        this.firstChild = new int[maxNodes];
+        this.childCount = new int[maxNodes];
+        this.topStart = new int[maxNodes];
+        this.topCount = new int[maxNodes];
+
+        Integer[] order = new Integer[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> builder.keys.get(a).compareTo(builder.keys.get(b)));
+
+        BuildState state = new BuildState(builder, order, topK);
+        state.nodeCount = 1;
+        state.build(0, keyCount, 0, 0);
+        this.nodeCount = state.nodeCount;
+        this.labels = state.labels.toString().toCharArray();
+        this.tops = Arrays.copyOf(state.tops, state.topSize);
+    }
+
+    /**
+     * 建立前缀树时的临时状态
+     */
+    private class BuildState {
+        final List<String> keys;
+        final List<Integer> keyItems;
+        final Integer[] order;
+        final int topK;
+        final StringBuilder labels = new StringBuilder();
+        int[] tops = new int[1024];
+        int topSize;
+        int nodeCount;
+
+        BuildState(Builder builder, Integer[] order, int topK) {
+            this.keys = builder.keys;
+            this.keyItems = builder.keyItems;
+            this.order = order;
+            this.topK = topK;
+        }
+
+        /**
+         * 建立节点：order[lo, hi) 中的词有长度为 depth 的公共前缀
+         */
+        void build(int lo, int hi, int depth, int node) {
+            List<Integer> candidates = new ArrayList<>();
+            // 排序后刚好在 depth 处结束的词排在最前面
+            while (lo < hi && key(lo).length() == depth) {
+                candidates.add(keyItems.get(order[lo]));
+                lo++;
+            }
+
+            // 按 depth 处的字符分组，每组一个子节点
+            List<int[]> groups = new ArrayList<>();
+            for (int i = lo; i < hi; ) {
+                char c = key(i).charAt(depth);
+                int j = i + 1;
+                while (j < hi && key(j).charAt(depth) == c) {
+                    j++;
+                }
+                groups.add(new int[]{i, j});
+                i = j;
+            }
+            int first = nodeCount;
+            nodeCount += groups.size();
+            firstChild[node] = first;
+            childCount[node] = groups.size();
+
+            for (int g = 0; g < groups.size(); g++) {
+                int a = groups.get(g)[0];
+                int b = groups.get(g)[1];
+                // 有序数组中第一个和最后一个词的公共前缀就是整组的公共前缀
+                String firstKey = key(a);
+                String lastKey = key(b - 1);
+                int end = depth + 1;
+                int limit = Math.min(firstKey.length(), lastKey.length());
+                while (end < limit && firstKey.charAt(end) == lastKey.charAt(end)) {
+                    end++;
+                }
+                int child = first + g;
+                labelStart[child] = labels.length();
+                labelLength[child] = end - depth;
+                labels.append(firstKey, depth, end);
+                build(a, b, end, child);
+                for (int t = 0; t < topCount[child]; t++) {
+                    candidates.add(tops[topStart[child] + t]);
+                }
+            }
+
+            // 合并词尾条目和子节点的前 K 个条目，去重后取权重最高的前 K 个
+            List<Integer> top = new ArrayList<>(new LinkedHashSet<>(candidates));
+            top.sort(SuggestTrie.this::compareItems);
+            int count = Math.min(topK, top.size());
+            if (topSize + count > tops.length) {
+                tops = Arrays.copyOf(tops, Math.max(tops.length * 2, topSize + count));
+            }
+            topStart[node] = topSize;
+            topCount[node] = count;
+            for (int t = 0; t < count; t++) {
+                tops[topSize++] = top.get(t);
+            }
+        }
+
+        String key(int index) {
+            return keys.get(order[index]);
+        }
+    }
+
+    /**
+     * 查询以 prefix 开头的词对应的条目
+     * @param prefix 前缀
+     * @param limit 最多返回的条目数（不超过建立时的 topK）
+     * @param exclude 需要跳过的条目（为 null 时不跳过）
+     * @return 条目ID，按权重从高到低排列
+     */
+    public List<Long> lookup(String prefix, int limit, LongPredicate exclude) {
+        int node = 0;
+        int pos = 0;
+        while (pos < prefix.length()) {
+            int child = findChild(node, prefix.charAt(pos));
+            if (child < 0) {
+                return List.of();
+            }
+            int start = labelStart[child];
+            for (int j = 0; j < labelLength[child] && pos < prefix.length(); j++, pos++) {
+                if (labels[start + j] != prefix.charAt(pos)) {
+                    return List.of();
+                }
+            }
+            node = child;
+        }
+        List<Long> result = new ArrayList<>(Math.min(limit, topCount[node]));
+        for (int t = 0; t < topCount[node] && result.size() < limit; t++) {
+            long id = itemIds[tops[topStart[node] + t]];
+            if (exclude == null || !exclude.test(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int itemCount() {
+        return itemIds.length;
+    }
+
+    /**
+     * 二分查找边的首字符为 c 的子节点
+     * @return 子节点；不存在时返回 -1
+     */
+    private int findChild(int node, char c) {
+        int lo = firstChild[node];
+        int hi = lo + childCount[node] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = labels[labelStart[mid]];
+            if (m < c) {
+                lo = mid + 1;
+            } else if (m > c) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareItems(int a, int b) {
+        int c = Float.compare(itemWeights[b], itemWeights[a]);
+        return c != 0 ? c : Long.compare(itemIds[a], itemIds[b]);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 前缀树构建器（非线程安全）
+     */
+    public static class Builder {
+        private final List<String> keys = new ArrayList<>();
+        private final List<Integer> keyItems = new ArrayList<>();
+        private final List<Long> itemIds = new ArrayList<>();
+        private final List<Float> itemWeights = new ArrayList<>();
+        private final Map<Long, Integer> itemIndex = new HashMap<>();
+
+        /**
+         * 加入一个词（同一个条目多次加入时权重以最后一次为准）
+         * @param key 词（超过64个字符的部分截断，空字符串忽略）
+         * @param id 条目ID
+         * @param weight 条目权重，越大越靠前
+         */
+        public Builder add(String key, long id, float weight) {
+            if (key == null || key.isEmpty()) {
+                return this;
+            }
+            Integer item = itemIndex.get(id);
+            if (item == null) {
+                item = itemIds.size();
+                itemIndex.put(id, item);
+                itemIds.add(id);
+                itemWeights.add(weight);
+            } else {
+                itemWeights.set(item, weight);
+            }
+            keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+            keyItems.add(item);
+            return this;
+        }
+
+        /**
+         * @param topK 每个节点保存的条目数（查询时最多返回这么多）
+         */
+        public SuggestTrie build(int topK) {
+            return new SuggestTrie(this, topK);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 -- 票务系统数据库初始化脚本
 -- 执行前请确保已创建数据库：CREATE DATABASE show_ticket_system;
+-- 已有数据库升级时先执行 upgrade.sql 补齐已有表的新增列和索引
 
 USE show_ticket_system;
 
@@ -32,6 +33,11 @@ CREATE TABLE IF NOT EXISTS `show` (
     `session_info` TEXT,
     `ticket_tier` TEXT,
     `is_on_sale` INT DEFAULT 0 COMMENT '1:已开票, 0:未开票',
+    `sale_start_time` DATETIME COMMENT '开售时间（不为空时到点自动开票，开售前不能下单）',
+    `max_per_user` INT DEFAULT 0 COMMENT '每个用户最多购买的票数，0表示不限购',
+    `ballot_start_time` DATETIME COMMENT '抽签报名开始时间（为空表示发布后即可报名）',
+    `ballot_end_time` DATETIME COMMENT '抽签报名截止时间（不为空表示抽签购票模式）',
+    `ballot_status` INT DEFAULT 0 COMMENT '抽签状态 0:未抽签, 1:抽签中, 2:已抽签',
     `status` INT DEFAULT 1 COMMENT '1:正常, 0:已取消',
     `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
     `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
@@ -42,11 +48,15 @@ CREATE TABLE IF NOT EXISTS `order` (
     `id` BIGINT AUTO_INCREMENT PRIMARY KEY,
     `user_id` BIGINT NOT NULL,
     `show_id` BIGINT NOT NULL,
+    `session_id` BIGINT COMMENT '场次ID（无场次的演出为空）',
+    `tier_id` BIGINT COMMENT '票档ID（无票档的演出为空）',
     `out_trade_no` VARCHAR(64) UNIQUE,
     `alipay_trade_no` VARCHAR(64),
+    `idempotency_key` VARCHAR(64) COMMENT '下单幂等键（客户端 Idempotency-Key 请求头）',
     `quantity` INT NOT NULL,
     `total_price` DECIMAL(10,2) NOT NULL,
     `status` INT DEFAULT 1 COMMENT '1:待支付, 2:已支付, 3:已取消, 4:已退款',
+    `stock_returned` TINYINT DEFAULT 1 COMMENT '取消/关闭后库存是否已返还 0:待返还（合并返还队列中）, 1:已返还或无需返还',
     `order_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
     `pay_time` DATETIME,
     `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
@@ -71,14 +81,101 @@ CREATE TABLE IF NOT EXISTS `address` (
     FOREIGN KEY (`user_id`) REFERENCES `user`(`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- 演出库存分桶表（把热门演出的库存拆分到多行，减少抢票时对 show 表同一行的锁竞争）
+CREATE TABLE IF NOT EXISTS `show_stock_bucket` (
+    `show_id` BIGINT NOT NULL,
+    `bucket_no` INT NOT NULL,
+    `available_tickets` INT DEFAULT 0,
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (`show_id`, `bucket_no`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 演出座位图表（对号入座的演出才有座位图，布局为JSON：分区、每排座位数、所属票档）
+CREATE TABLE IF NOT EXISTS `show_seat_map` (
+    `show_id` BIGINT PRIMARY KEY,
+    `layout` MEDIUMTEXT NOT NULL,
+    `total_seats` INT NOT NULL,
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 订单座位表（每个已售座位一行，订单取消或超时关闭时删除；show_id + session_id + seat_no 唯一，防止同一场次的一个座位卖给两个订单）
+CREATE TABLE IF NOT EXISTS `order_seat` (
+    `id` BIGINT AUTO_INCREMENT PRIMARY KEY,
+    `order_id` BIGINT NOT NULL,
+    `show_id` BIGINT NOT NULL,
+    `session_id` BIGINT NOT NULL DEFAULT 0 COMMENT '场次ID（无场次的演出为0）',
+    `seat_no` INT NOT NULL COMMENT '座位编号（按布局顺序从0开始）',
+    `section_name` VARCHAR(50),
+    `row_no` INT NOT NULL COMMENT '排号（分区内从1开始）',
+    `seat_in_row` INT NOT NULL COMMENT '座位号（排内从1开始）',
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY `uk_order_seat_show_session_seat` (`show_id`, `session_id`, `seat_no`),
+    KEY `idx_order_seat_order_id` (`order_id`),
+    FOREIGN KEY (`order_id`) REFERENCES `order`(`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 演出票档表（发布演出时由 ticket_tier JSON 拆分而来，每个票档单独计算库存和价格）
+CREATE TABLE IF NOT EXISTS `show_tier` (
+    `id` BIGINT AUTO_INCREMENT PRIMARY KEY,
+    `show_id` BIGINT NOT NULL,
+    `name` VARCHAR(50) NOT NULL COMMENT '票档名称（如：VIP、看台）',
+    `price` DECIMAL(10,2) NOT NULL,
+    `total_tickets` INT NOT NULL,
+    `available_tickets` INT NOT NULL,
+    `sort_order` INT DEFAULT 0,
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    KEY `idx_show_tier_show_id` (`show_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 演出场次表（发布演出时由 session_info JSON 拆分而来，每个场次单独计算库存）
+CREATE TABLE IF NOT EXISTS `show_session` (
+    `id` BIGINT AUTO_INCREMENT PRIMARY KEY,
+    `show_id` BIGINT NOT NULL,
+    `name` VARCHAR(100) COMMENT '场次名称（如：6月1日 19:30）',
+    `start_time` DATETIME NOT NULL,
+    `end_time` DATETIME,
+    `total_tickets` INT NOT NULL,
+    `available_tickets` INT NOT NULL,
+    `sort_order` INT DEFAULT 0,
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    KEY `idx_show_session_show_start` (`show_id`, `start_time`),
+    KEY `idx_show_session_start` (`start_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 抽签报名表（抽签购票模式的演出，报名期间只记录购买意向，截止后统一抽签并创建订单）
+CREATE TABLE IF NOT EXISTS `ballot_entry` (
+    `id` BIGINT AUTO_INCREMENT PRIMARY KEY,
+    `show_id` BIGINT NOT NULL,
+    `user_id` BIGINT NOT NULL,
+    `session_id` BIGINT COMMENT '场次ID（无场次的演出为空）',
+    `tier_id` BIGINT COMMENT '票档ID（无票档的演出为空）',
+    `quantity` INT NOT NULL,
+    `status` INT DEFAULT 0 COMMENT '0:待抽签, 1:中签, 2:未中签',
+    `order_id` BIGINT COMMENT '中签后创建的订单ID',
+    `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP,
+    `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY `uk_ballot_show_user` (`show_id`, `user_id`),
+    KEY `idx_ballot_show_status` (`show_id`, `status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- 创建索引
 CREATE INDEX IF NOT EXISTS idx_user_username ON `user`(`username`);
 CREATE INDEX IF NOT EXISTS idx_user_email ON `user`(`email`);
 CREATE INDEX IF NOT EXISTS idx_show_region ON `show`(`region`);
 CREATE INDEX IF NOT EXISTS idx_show_category ON `show`(`category`);
+CREATE INDEX IF NOT EXISTS idx_show_status_start ON `show`(`status`, `start_time`);
+CREATE INDEX IF NOT EXISTS idx_show_status_region_start ON `show`(`status`, `region`, `start_time`);
+CREATE INDEX IF NOT EXISTS idx_show_status_region_category_start ON `show`(`status`, `region`, `category`, `start_time`);
+CREATE INDEX IF NOT EXISTS idx_show_sale_start ON `show`(`is_on_sale`, `sale_start_time`);
 CREATE INDEX IF NOT EXISTS idx_order_user_id ON `order`(`user_id`);
 CREATE INDEX IF NOT EXISTS idx_order_show_id ON `order`(`show_id`);
 CREATE INDEX IF NOT EXISTS idx_order_out_trade_no ON `order`(`out_trade_no`);
+CREATE INDEX IF NOT EXISTS idx_order_status_time ON `order`(`status`, `order_time`, `id`);
+CREATE INDEX IF NOT EXISTS idx_order_stock_returned ON `order`(`stock_returned`, `id`);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_order_user_idempotency ON `order`(`user_id`, `idempotency_key`);
 CREATE INDEX IF NOT EXISTS idx_address_user_id ON `address`(`user_id`);
 
 -- 插入测试管理员账号（可选）
@@ -0,0 +1,85 @@
+-- 票务系统数据库升级脚本（已有数据库补齐新增的列和索引，可重复执行）
+-- init.sql / init_complete.sql 使用 CREATE TABLE IF NOT EXISTS，表已存在时不会补列，老库需要先执行本脚本
+-- 执行方式: mysql -u root -p show_ticket_system < upgrade.sql
+-- 新增的表（show_stock_bucket、show_seat_map、order_seat、show_tier、show_session、ballot_entry）执行本脚本后再执行 init.sql 创建
+
+USE show_ticket_system;
+
+DROP PROCEDURE IF EXISTS upgrade_add_column;
+DROP PROCEDURE IF EXISTS upgrade_add_index;
+DROP PROCEDURE IF EXISTS upgrade_drop_index;
+
+DELIMITER $$
+
+-- 表存在且列不存在时添加列
+CREATE PROCEDURE upgrade_add_column(IN p_table VARCHAR(64), IN p_column VARCHAR(64), IN p_definition VARCHAR(500))
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.TABLES
+               WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = p_table)
+       AND NOT EXISTS (SELECT 1 FROM information_schema.COLUMNS
+                       WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = p_table AND COLUMN_NAME = p_column) THEN
+        SET @upgrade_sql = CONCAT('ALTER TABLE `', p_table, '` ADD COLUMN `', p_column, '` ', p_definition);
+        PREPARE stmt FROM @upgrade_sql;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END IF;
+END$$
+
+-- 表存在且索引不存在时创建索引（p_unique 为 1 时创建唯一索引）
+CREATE PROCEDURE upgrade_add_index(IN p_table VARCHAR(64), IN p_index VARCHAR(64), IN p_columns VARCHAR(500), IN p_unique TINYINT)
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.TABLES
+               WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = p_table)
+       AND NOT EXISTS (SELECT 1 FROM information_schema.STATISTICS
+                       WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = p_table AND INDEX_NAME = p_index) THEN
+        SET @upgrade_sql = CONCAT('CREATE ', IF(p_unique = 1, 'UNIQUE ', ''), 'INDEX `', p_index, '` ON `', p_table, '`(', p_columns, ')');
+        PREPARE stmt FROM @upgrade_sql;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END IF;
+END$$
+
+-- 索引存在时删除索引
+CREATE PROCEDURE upgrade_drop_index(IN p_table VARCHAR(64), IN p_index VARCHAR(64))
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.STATISTICS
+               WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = p_table AND INDEX_NAME = p_index) THEN
+        SET @upgrade_sql = CONCAT('DROP INDEX `', p_index, '` ON `', p_table, '`');
+        PREPARE stmt FROM @upgrade_sql;
+        EXECUTE stmt;
+        DEALLOCATE PREPARE stmt;
+    END IF;
+END$$
+
+DELIMITER ;
+
+-- 演出表：开售时间、限购、抽签
+CALL upgrade_add_column('show', 'sale_start_time', 'DATETIME COMMENT ''开售时间（不为空时到点自动开票，开售前不能下单）'' AFTER `is_on_sale`');
+CALL upgrade_add_column('show', 'max_per_user', 'INT DEFAULT 0 COMMENT ''每个用户最多购买的票数，0表示不限购'' AFTER `sale_start_time`');
+CALL upgrade_add_column('show', 'ballot_start_time', 'DATETIME COMMENT ''抽签报名开始时间（为空表示发布后即可报名）'' AFTER `max_per_user`');
+CALL upgrade_add_column('show', 'ballot_end_time', 'DATETIME COMMENT ''抽签报名截止时间（不为空表示抽签购票模式）'' AFTER `ballot_start_time`');
+CALL upgrade_add_column('show', 'ballot_status', 'INT DEFAULT 0 COMMENT ''抽签状态 0:未抽签, 1:抽签中, 2:已抽签'' AFTER `ballot_end_time`');
+
+-- 订单表：场次、票档、幂等键、库存返还标记
+CALL upgrade_add_column('order', 'session_id', 'BIGINT COMMENT ''场次ID（无场次的演出为空）'' AFTER `show_id`');
+CALL upgrade_add_column('order', 'tier_id', 'BIGINT COMMENT ''票档ID（无票档的演出为空）'' AFTER `session_id`');
+CALL upgrade_add_column('order', 'idempotency_key', 'VARCHAR(64) COMMENT ''下单幂等键（客户端 Idempotency-Key 请求头）'' AFTER `alipay_trade_no`');
+CALL upgrade_add_column('order', 'stock_returned', 'TINYINT DEFAULT 1 COMMENT ''取消/关闭后库存是否已返还 0:待返还（合并返还队列中）, 1:已返还或无需返还'' AFTER `status`');
+
+-- 订单座位表：按场次区分座位（老数据都属于无场次的演出，session_id 取默认值0），唯一键改为 show_id + session_id + seat_no
+CALL upgrade_add_column('order_seat', 'session_id', 'BIGINT NOT NULL DEFAULT 0 COMMENT ''场次ID（无场次的演出为0）'' AFTER `show_id`');
+CALL upgrade_add_index('order_seat', 'uk_order_seat_show_session_seat', '`show_id`, `session_id`, `seat_no`', 1);
+CALL upgrade_drop_index('order_seat', 'uk_order_seat_show_seat');
+
+-- 索引
+CALL upgrade_add_index('show', 'idx_show_status_start', '`status`, `start_time`', 0);
+CALL upgrade_add_index('show', 'idx_show_status_region_start', '`status`, `region`, `start_time`', 0);
+CALL upgrade_add_index('show', 'idx_show_status_region_category_start', '`status`, `region`, `category`, `start_time`', 0);
+CALL upgrade_add_index('show', 'idx_show_sale_start', '`is_on_sale`, `sale_start_time`', 0);
+CALL upgrade_add_index('order', 'idx_order_status_time', '`status`, `order_time`, `id`', 0);
+CALL upgrade_add_index('order', 'idx_order_stock_returned', '`stock_returned`, `id`', 0);
+CALL upgrade_add_index('order', 'uk_order_user_idempotency', '`user_id`, `idempotency_key`', 1);
+
+DROP PROCEDURE IF EXISTS upgrade_add_column;
+DROP PROCEDURE IF EXISTS upgrade_add_index;
+DROP PROCEDURE IF EXISTS upgrade_drop_index;
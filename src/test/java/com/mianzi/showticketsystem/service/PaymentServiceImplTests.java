@@ -0,0 +1,140 @@
+package com.mianzi.showticketsystem.service;
+
+import com.mianzi.showticketsystem.mapper.OrderMapper;
+import com.mianzi.showticketsystem.mapper.ShowMapper;
+import com.mianzi.showticketsystem.mapper.UserMapper;
+import com.mianzi.showticketsystem.model.entity.Order;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PaymentServiceImplTests {
+
+    private final OrderMapper orderMapper = mock(OrderMapper.class);
+    private final StockService stockService = mock(StockService.class);
+    private final MockPaymentGateway paymentGateway = new MockPaymentGateway();
+    private final PaymentServiceImpl paymentService = new PaymentServiceImpl();
+
+    @BeforeEach
+    void setUp() {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        ReflectionTestUtils.setField(paymentService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(paymentService, "emailService", mock(EmailService.class));
+        ReflectionTestUtils.setField(paymentService, "showMapper", mock(ShowMapper.class));
+        ReflectionTestUtils.setField(paymentService, "userMapper", mock(UserMapper.class));
+        ReflectionTestUtils.setField(paymentService, "stockService", stockService);
+        ReflectionTestUtils.setField(paymentService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(paymentService, "restockService", mock(RestockService.class));
+        ReflectionTestUtils.setField(paymentService, "paymentGateway", paymentGateway);
+        ReflectionTestUtils.setField(paymentService, "purchaseLimitService", mock(PurchaseLimitService.class));
+        ReflectionTestUtils.setField(paymentService, "seatService", mock(SeatService.class));
+        ReflectionTestUtils.setField(paymentService, "showTierService", mock(ShowTierService.class));
+        ReflectionTestUtils.setField(paymentService, "showSessionService", mock(ShowSessionService.class));
+        ReflectionTestUtils.setField(paymentService, "payTimeoutMinutes", 30L);
+        ReflectionTestUtils.setField(paymentService, "closeChunkSize", 500);
+        ReflectionTestUtils.setField(paymentService, "compensateParallelism", 2);
+        paymentService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentService.stop();
+    }
+
+    @Test
+    void batchCloseRecordsPaidOrdersInsteadOfClosingThem() {
+        // 订单1已付款但支付回调丢失，订单2没有付款
+        Order paid = pendingOrder(1L, "T1");
+        Order unpaid = pendingOrder(2L, "T2");
+        paymentGateway.markPaid("T1", "ALI1");
+        when(orderMapper.findPendingOrdersAfter(any(), any(), any(), anyInt())).thenReturn(List.of(paid, unpaid));
+        when(orderMapper.lockPendingOrdersByIds(List.of(2L))).thenReturn(List.of(unpaid));
+        when(orderMapper.getByOutTradeNo("T1")).thenReturn(paid);
+        when(orderMapper.updateStatusByIds(anyList(), anyInt(), anyInt())).thenReturn(1);
+
+        paymentService.closeTimeoutOrders();
+
+        verify(orderMapper).updateStatusAndPayTime(1L, 100L, 2, 1);
+        verify(orderMapper).updateAlipayTradeNo(1L, "ALI1");
+        verify(orderMapper).updateStatusByIds(List.of(2L), 3, 1);
+        verify(stockService).returnStock(10L, 2);
+        assertEquals(1L, paymentService.getCloseMetrics().get("totalClosedOrders"));
+        assertEquals(1L, paymentService.getCloseMetrics().get("totalPaidOnClose"));
+    }
+
+    @Test
+    void batchClosePagesPastOrdersWhoseQueryFailed() {
+        // 支付渠道持续查询失败：跳过这一页继续读取下一页，不会反复读取同一批订单
+        ReflectionTestUtils.setField(paymentService, "closeChunkSize", 1);
+        ReflectionTestUtils.setField(paymentService, "paymentGateway", (PaymentGateway) outTradeNo -> {
+            throw new IllegalStateException("gateway timeout");
+        });
+        Order first = pendingOrder(1L, "T1");
+        when(orderMapper.findPendingOrdersAfter(any(), any(), any(), anyInt())).thenReturn(List.of(first));
+        when(orderMapper.findPendingOrdersAfter(any(), eq(first.getOrderTime()), eq(1L), anyInt())).thenReturn(List.of());
+
+        paymentService.closeTimeoutOrders();
+
+        verify(orderMapper, times(2)).findPendingOrdersAfter(any(), any(), any(), anyInt());
+        verify(orderMapper, never()).lockPendingOrdersByIds(anyList());
+        assertEquals(0L, paymentService.getCloseMetrics().get("totalClosedOrders"));
+    }
+
+    @Test
+    void singleCloseRecordsOrderPaidJustBeforeDeadline() {
+        Order paid = pendingOrder(1L, "T1");
+        paymentGateway.markPaid("T1", "ALI1");
+        when(orderMapper.getById(1L)).thenReturn(paid);
+        when(orderMapper.getByOutTradeNo("T1")).thenReturn(paid);
+
+        assertFalse(paymentService.closeOrderIfUnpaid(1L));
+
+        verify(orderMapper).updateStatusAndPayTime(1L, 100L, 2, 1);
+        verify(orderMapper, never()).updateStatus(any(), any(), eq(3), eq(1));
+        verify(stockService, never()).returnStock(any(), anyInt());
+    }
+
+    @Test
+    void singleCloseClosesUnpaidOrder() {
+        Order unpaid = pendingOrder(2L, "T2");
+        when(orderMapper.getById(2L)).thenReturn(unpaid);
+        when(orderMapper.updateStatus(2L, 100L, 3, 1)).thenReturn(1);
+
+        assertTrue(paymentService.closeOrderIfUnpaid(2L));
+
+        verify(stockService).returnStock(10L, 2);
+    }
+
+    private static Order pendingOrder(Long id, String outTradeNo) {
+        return new Order()
+                .setId(id)
+                .setUserId(100L)
+                .setShowId(10L)
+                .setOutTradeNo(outTradeNo)
+                .setQuantity(2)
+                .setStatus(1)
+                .setOrderTime(LocalDateTime.now().minusHours(1));
+    }
+}
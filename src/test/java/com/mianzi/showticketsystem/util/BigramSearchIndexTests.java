@@ -0,0 +1,111 @@
+package com.mianzi.showticketsystem.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BigramSearchIndexTests {
+
+    private static final int[] WEIGHTS = {8, 4, 2, 1};
+
+    @Test
+    void matchesSubstringsAndRanksByField() {
+        BigramSearchIndex<Integer> index = new BigramSearchIndex<>(WEIGHTS, Integer::compare);
+        index.put(1, new String[]{"周杰伦嘉年华演唱会", "国家体育场", "演唱会", "北京"}, 2);
+        index.put(2, new String[]{"话剧 茶馆", "首都剧场", "话剧", "北京"}, 1);
+        index.put(3, new String[]{"杰伦之夜音乐会", "梅赛德斯奔驰文化中心", "音乐会", "上海"}, 3);
+        index.put(4, new String[]{"ＡＢＣ Live", "周杰伦主题馆", "演唱会", "上海"}, 4);
+
+        // 名称命中的排在场馆命中的前面
+        assertEquals(List.of(1L, 4L), index.search("周杰伦", null));
+        // 二元词「杰伦」「伦演」都出现但不连续，不算命中
+        index.put(5, new String[]{"杰伦 伦演", "", "", ""}, 5);
+        assertEquals(List.of(), index.search("杰伦演", null));
+        assertTrue(index.remove(5));
+        // 多个词都要匹配，全角字母规范化为半角小写
+        assertEquals(List.of(4L), index.search("abc 上海", null));
+        // 单字查询逐个文档校验，同分按附带的数据排序
+        assertEquals(List.of(2L, 1L), index.search("京", null));
+        // 过滤附带的数据
+        assertEquals(List.of(3L), index.search("会", payload -> payload == 3));
+        assertEquals(List.of(), index.search("不存在", null));
+    }
+
+    @Test
+    void updatesAndRemovesDocuments() {
+        BigramSearchIndex<Integer> index = new BigramSearchIndex<>(WEIGHTS, null);
+        index.put(5, new String[]{"天鹅湖", "国家大剧院", "舞蹈", "北京"}, 0);
+        index.put(2, new String[]{"天鹅湖", "上海大剧院", "舞蹈", "上海"}, 0);
+        assertEquals(List.of(2L, 5L), index.search("天鹅", null));
+
+        index.put(5, new String[]{"胡桃夹子", "国家大剧院", "舞蹈", "北京"}, 0);
+        assertEquals(List.of(2L), index.search("天鹅", null));
+        assertEquals(List.of(5L), index.search("胡桃", null));
+
+        assertTrue(index.remove(2));
+        assertEquals(List.of(), index.search("天鹅", null));
+        assertEquals(1, index.size());
+    }
+
+    /**
+     * 10万个演出时与 LIKE '%关键词%' 逐行匹配的对比（内存中逐行 contains，不含数据库的 IO，是 LIKE 查询耗时的下限）
+     * 运行：mvn test -Dtest=BigramSearchIndexTests -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAgainstLikeScan() {
+        String[] artists = {"周杰伦", "五月天", "陈奕迅", "林俊杰", "薛之谦", "张学友", "邓紫棋", "李荣浩", "毛不易", "华晨宇"};
+        String[] kinds = {"演唱会", "巡回演唱会", "音乐节", "话剧", "音乐剧", "脱口秀", "相声专场", "芭蕾舞剧"};
+        String[] venues = {"国家体育场", "工人体育馆", "梅赛德斯奔驰文化中心", "首都剧场", "国家大剧院", "深圳湾体育中心"};
+        String[] regions = {"北京", "上海", "广州", "深圳", "成都", "杭州", "南京", "武汉"};
+        Random random = new Random(42);
+        List<String[]> rows = new ArrayList<>();
+        BigramSearchIndex<Integer> index = new BigramSearchIndex<>(WEIGHTS, Integer::compare);
+        long buildStart = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) {
+            String region = regions[random.nextInt(regions.length)];
+            String[] row = {
+                    artists[random.nextInt(artists.length)] + region + "站" + kinds[random.nextInt(kinds.length)] + " 第" + i + "场",
+                    region + venues[random.nextInt(venues.length)],
+                    kinds[random.nextInt(kinds.length)],
+                    region
+            };
+            rows.add(row);
+            index.put(i, row, i);
+        }
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        String[] keywords = {"周杰伦", "上海站话剧", "第4242场", "奔驰", "不存在的演出"};
+        int rounds = 20;
+        for (String keyword : keywords) {
+            int indexHits = 0;
+            int likeHits = 0;
+            long indexNanos = 0;
+            long likeNanos = 0;
+            for (int round = 0; round < rounds; round++) {
+                long t0 = System.nanoTime();
+                indexHits = index.search(keyword, null).size();
+                long t1 = System.nanoTime();
+                likeHits = 0;
+                for (String[] row : rows) {
+                    if (row[0].contains(keyword) || row[1].contains(keyword) || row[2].contains(keyword) || row[3].contains(keyword)) {
+                        likeHits++;
+                    }
+                }
+                long t2 = System.nanoTime();
+                indexNanos += t1 - t0;
+                likeNanos += t2 - t1;
+            }
+            assertEquals(likeHits, indexHits);
+            System.out.printf("keyword=%s hits=%d index=%.3fms likeScan=%.3fms%n",
+                    keyword, indexHits, indexNanos / 1e6 / rounds, likeNanos / 1e6 / rounds);
+        }
+        System.out.println("build 100000 documents: " + buildMillis + "ms, terms: " + index.termCount());
+    }
+}
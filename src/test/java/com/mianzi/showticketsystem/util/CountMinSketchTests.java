@@ -0,0 +1,40 @@
+package com.mianzi.showticketsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTests {
+
+    @Test
+    void estimatesNeverUndercount() {
+        CountMinSketch sketch = new CountMinSketch(4, 256);
+        for (long key = 0; key < 1000; key++) {
+            for (int i = 0; i <= key % 5; i++) {
+                sketch.add(key);
+            }
+        }
+        for (long key = 0; key < 1000; key++) {
+            assertTrue(sketch.estimate(key) >= key % 5 + 1);
+        }
+    }
+
+    @Test
+    void heavyHitterStandsOutFromBackground() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        for (long key = 0; key < 5000; key++) {
+            sketch.add(key);
+        }
+        long estimate = 0;
+        for (int i = 0; i < 2000; i++) {
+            estimate = sketch.add(42L);
+        }
+        // 总计数 7000，误差上限约 7000 × e / 1024 ≈ 19
+        assertTrue(estimate >= 2001 && estimate < 2001 + 20);
+        assertTrue(sketch.estimate(4999L) < 20);
+
+        sketch.clear();
+        assertEquals(0, sketch.estimate(42L));
+    }
+}
@@ -0,0 +1,81 @@
+package com.mianzi.showticketsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HierarchicalTimingWheelTests {
+
+    @Test
+    void firesNoEarlierThanDeadlineAcrossLevels() throws InterruptedException {
+        // 每格10毫秒、每层4格：第一层40毫秒，第二层160毫秒，第三层640毫秒
+        try (HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 10, 4, Runnable::run)) {
+            long now = System.currentTimeMillis();
+            long[] delays = {0, 5, 15, 39, 41, 95, 161, 330, 700};
+            Map<Integer, Long> firedAt = new ConcurrentHashMap<>();
+            CountDownLatch fired = new CountDownLatch(delays.length);
+            for (int i = 0; i < delays.length; i++) {
+                int index = i;
+                wheel.schedule(i, now + delays[i], () -> {
+                    firedAt.put(index, System.currentTimeMillis());
+                    fired.countDown();
+                });
+            }
+
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < delays.length; i++) {
+                assertTrue(firedAt.get(i) >= now + delays[i], "任务 " + i + " 提前触发");
+            }
+            assertEquals(0, wheel.size());
+        }
+    }
+
+    @Test
+    void firesDeadlineBeyondTopLevel() throws InterruptedException {
+        // 第一层只有20毫秒，800毫秒后的任务需要逐层创建上层时间轮，再逐层降级到第一层
+        try (HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 10, 2, Runnable::run)) {
+            long deadline = System.currentTimeMillis() + 800;
+            CountDownLatch fired = new CountDownLatch(1);
+            long[] firedAt = new long[1];
+            wheel.schedule("late", deadline, () -> {
+                firedAt[0] = System.currentTimeMillis();
+                fired.countDown();
+            });
+
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            assertTrue(firedAt[0] >= deadline);
+        }
+    }
+
+    @Test
+    void cancelledAndReplacedTasksDoNotFire() throws InterruptedException {
+        try (HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 10, 4, Runnable::run)) {
+            long now = System.currentTimeMillis();
+            AtomicBoolean cancelledFired = new AtomicBoolean();
+            AtomicBoolean replacedFired = new AtomicBoolean();
+            CountDownLatch fired = new CountDownLatch(1);
+
+            wheel.schedule("cancelled", now + 50, () -> cancelledFired.set(true));
+            assertTrue(wheel.cancel("cancelled"));
+            assertFalse(wheel.cancel("cancelled"));
+
+            // 同一个 key 重新添加时替换原任务
+            wheel.schedule("order", now + 30, () -> replacedFired.set(true));
+            wheel.schedule("order", now + 120, fired::countDown);
+
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertFalse(cancelledFired.get());
+            assertFalse(replacedFired.get());
+            assertEquals(0, wheel.size());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mianzi.showticketsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LruTtlCacheTests {
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        // 容量1只有一个段，淘汰顺序是确定的
+        LruTtlCache<Long, String> cache = new LruTtlCache<>(1, 60_000);
+        cache.put(1L, "a");
+        assertEquals("a", cache.get(1L));
+        cache.put(2L, "b");
+        assertNull(cache.get(1L));
+        assertEquals("b", cache.get(2L));
+        assertEquals(1, cache.evictionCount());
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() throws InterruptedException {
+        LruTtlCache<Long, String> cache = new LruTtlCache<>(100, 20);
+        cache.put(1L, "a");
+        cache.put(2L, "b");
+        assertEquals("a", cache.get(1L));
+        Thread.sleep(40);
+        assertNull(cache.get(1L));
+        assertEquals(1, cache.purgeExpired());
+        assertEquals(2, cache.expirationCount());
+        assertEquals(0, cache.size());
+
+        cache.put(3L, "c");
+        cache.invalidate(3L);
+        assertNull(cache.get(3L));
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        LruTtlCache<Long, String> cache = new LruTtlCache<>(100, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.get(1L, key -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "a";
+                })));
+            }
+            // 等其他线程都在等待第一个线程的加载结果后再放行加载
+            while (cache.coalescedCount() < 7) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("a", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(7, cache.coalescedCount());
+        assertEquals("a", cache.get(1L));
+    }
+
+    @Test
+    void servesStaleValueWhileRefreshing() throws InterruptedException {
+        // 刷新任务在调用线程执行，结果是确定的
+        LruTtlCache<Long, String> cache = new LruTtlCache<>(100, 20, 60_000, Runnable::run);
+        assertEquals("a", cache.get(1L, key -> "a"));
+        Thread.sleep(40);
+        assertNull(cache.get(1L));
+        assertEquals("a", cache.get(1L, key -> "b"));
+        assertEquals("b", cache.get(1L, key -> "c"));
+        assertEquals(1, cache.staleHitCount());
+        assertEquals(2, cache.loadCount());
+
+        // 刷新时数据已经不存在，丢弃旧值
+        Thread.sleep(40);
+        assertEquals("b", cache.get(1L, key -> null));
+        assertEquals(0, cache.size());
+    }
+}
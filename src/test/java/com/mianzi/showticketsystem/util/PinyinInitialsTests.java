@@ -0,0 +1,17 @@
+package com.mianzi.showticketsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PinyinInitialsTests {
+
+    @Test
+    void convertsChineseToInitials() {
+        assertEquals("zjlych", PinyinInitials.of("周杰伦演唱会"));
+        assertEquals("gjtyc", PinyinInitials.of("国家体育场"));
+        // 英文字母和数字保留并转小写，其他字符跳过
+        assertEquals("mayday2025bj", PinyinInitials.of("Mayday 2025·北京"));
+        assertEquals("", PinyinInitials.of(null));
+    }
+}
@@ -0,0 +1,91 @@
+package com.mianzi.showticketsystem.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatBitmapTests {
+
+    @Test
+    void reserveIsAllOrNothing() {
+        SeatBitmap bitmap = new SeatBitmap(new int[]{10, 10}, new int[]{0, 1});
+        assertTrue(bitmap.reserve(new int[]{3, 4}));
+        assertFalse(bitmap.reserve(new int[]{1, 2, 4}));
+        assertFalse(bitmap.isReserved(1));
+        assertFalse(bitmap.isReserved(2));
+        assertEquals(18, bitmap.availableCount());
+
+        bitmap.release(new int[]{3, 4});
+        assertEquals(20, bitmap.availableCount());
+    }
+
+    @Test
+    void findsCenteredSeatsInFirstRowThatFits() {
+        SeatBitmap bitmap = new SeatBitmap(new int[]{10, 10}, new int[]{0, 1});
+        assertArrayEquals(new int[]{4, 5}, bitmap.findBestAvailable(2, -1));
+
+        // 第一排中间被占用，只剩两边的空位
+        assertTrue(bitmap.reserve(new int[]{2, 3, 4, 5, 6, 7}));
+        assertArrayEquals(new int[]{0, 1}, bitmap.findBestAvailable(2, -1));
+        assertArrayEquals(new int[]{13, 14, 15}, bitmap.findBestAvailable(3, -1));
+        assertArrayEquals(new int[]{14, 15}, bitmap.findBestAvailable(2, 1));
+        assertNull(bitmap.findBestAvailable(11, -1));
+    }
+
+    @Test
+    void sellsOutStadiumInGroupsOfFour() {
+        SeatBitmap bitmap = stadium();
+        int sold = sellOutInGroupsOfFour(bitmap);
+
+        assertEquals(50_000, sold);
+        assertEquals(0, bitmap.availableCount());
+        assertNotNull(bitmap.toByteArray());
+    }
+
+    /**
+     * 5万座体育场按4座一组售完时的平均选座耗时
+     * 运行：mvn test -Dtest=SeatBitmapTests -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkStadiumSearchLatency() {
+        SeatBitmap bitmap = stadium();
+        long start = System.nanoTime();
+        int sold = sellOutInGroupsOfFour(bitmap);
+        long elapsedNanos = System.nanoTime() - start;
+
+        assertEquals(50_000, sold);
+        System.out.printf("座位位图：5万座按4座一组售完，共 %d 次选座，平均每次 %.2f 微秒%n",
+                sold / 4, elapsedNanos / 1e3 / (sold / 4));
+    }
+
+    /**
+     * 5万座：500排，每排100座
+     */
+    private static SeatBitmap stadium() {
+        int[] rows = new int[500];
+        int[] tiers = new int[500];
+        Arrays.fill(rows, 100);
+        return new SeatBitmap(rows, tiers);
+    }
+
+    private static int sellOutInGroupsOfFour(SeatBitmap bitmap) {
+        int sold = 0;
+        while (true) {
+            int[] seats = bitmap.findBestAvailable(4, -1);
+            if (seats == null) {
+                return sold;
+            }
+            assertTrue(bitmap.reserve(seats));
+            sold += seats.length;
+        }
+    }
+}
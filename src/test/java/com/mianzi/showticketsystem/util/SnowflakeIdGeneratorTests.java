@@ -0,0 +1,84 @@
+package com.mianzi.showticketsystem.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTests {
+
+    @Test
+    void idsAreIncreasingInOneThread() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        long previous = generator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            long current = generator.nextId();
+            assertTrue(current > previous);
+            previous = current;
+        }
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws InterruptedException {
+        int threads = 8;
+        int perThread = 50_000;
+        Set<Long> ids = generateConcurrently(new SnowflakeIdGenerator(1), threads, perThread);
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    /**
+     * 多线程并发生成ID的吞吐量
+     * 运行：mvn test -Dtest=SnowflakeIdGeneratorTests -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkConcurrentThroughput() throws InterruptedException {
+        int threads = 8;
+        int perThread = 50_000;
+        long start = System.nanoTime();
+        Set<Long> ids = generateConcurrently(new SnowflakeIdGenerator(1), threads, perThread);
+        long elapsedNanos = System.nanoTime() - start;
+
+        assertEquals(threads * perThread, ids.size());
+        System.out.printf("雪花ID生成：%d 线程共 %d 个ID，耗时 %.1f ms，约 %.0f 万个/秒%n",
+                threads, threads * perThread, elapsedNanos / 1e6,
+                threads * perThread / (elapsedNanos / 1e9) / 10_000);
+    }
+
+    @Test
+    void rejectsInvalidNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+
+    private static Set<Long> generateConcurrently(SnowflakeIdGenerator generator, int threads, int perThread)
+            throws InterruptedException {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                long[] local = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    local[i] = generator.nextId();
+                }
+                for (long id : local) {
+                    ids.add(id);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+        return ids;
+    }
+}
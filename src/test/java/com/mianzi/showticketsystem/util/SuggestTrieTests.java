@@ -0,0 +1,90 @@
+package com.mianzi.showticketsystem.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestTrieTests {
+
+    @Test
+    void returnsTopWeightedItemsForPrefix() {
+        SuggestTrie trie = SuggestTrie.builder()
+                .add("周杰伦演唱会", 1, 5f)
+                .add("zjlych", 1, 5f)
+                .add("周杰伦嘉年华", 2, 9f)
+                .add("zjljnh", 2, 9f)
+                .add("周深音乐会", 3, 7f)
+                .add("国家体育场", 3, 7f)
+                .add("周", 4, 1f)
+                .build(10);
+
+        assertEquals(List.of(2L, 3L, 1L, 4L), trie.lookup("周", 10, null));
+        // 前缀结束在压缩的边中间
+        assertEquals(List.of(2L, 1L), trie.lookup("周杰", 10, null));
+        assertEquals(List.of(1L), trie.lookup("周杰伦演", 10, null));
+        assertEquals(List.of(2L, 1L), trie.lookup("zjl", 10, null));
+        assertEquals(List.of(3L), trie.lookup("国家", 10, null));
+        assertEquals(List.of(2L), trie.lookup("周", 1, null));
+        assertEquals(List.of(3L, 1L), trie.lookup("周", 2, id -> id == 2));
+        assertEquals(List.of(), trie.lookup("周杰伦x", 10, null));
+        assertEquals(List.of(), trie.lookup("五月天", 10, null));
+        assertEquals(4, trie.itemCount());
+    }
+
+    @Test
+    void keepsOnlyTopKPerNode() {
+        SuggestTrie.Builder builder = SuggestTrie.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add("演出" + i, i, i);
+        }
+        SuggestTrie trie = builder.build(3);
+        assertEquals(List.of(99L, 98L, 97L), trie.lookup("演", 10, null));
+        assertEquals(List.of(19L, 18L, 17L), trie.lookup("演出1", 10, null));
+        assertTrue(trie.nodeCount() <= 201);
+    }
+
+    /**
+     * 10万个演出（名称、场馆、拼音首字母共约40万个词）时的建立和查询耗时
+     * 运行：mvn test -Dtest=SuggestTrieTests -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkLookupLatency() {
+        String[] artists = {"周杰伦", "五月天", "陈奕迅", "林俊杰", "薛之谦", "张学友", "邓紫棋", "李荣浩", "毛不易", "华晨宇"};
+        String[] kinds = {"演唱会", "巡回演唱会", "音乐节", "话剧", "音乐剧", "脱口秀", "相声专场", "芭蕾舞剧"};
+        String[] venues = {"国家体育场", "工人体育馆", "梅赛德斯奔驰文化中心", "首都剧场", "国家大剧院", "深圳湾体育中心"};
+        Random random = new Random(42);
+        SuggestTrie.Builder builder = SuggestTrie.builder();
+        long buildStart = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) {
+            String name = artists[random.nextInt(artists.length)] + kinds[random.nextInt(kinds.length)] + "第" + i + "场";
+            String venue = venues[random.nextInt(venues.length)];
+            float weight = random.nextFloat() * 10;
+            builder.add(name, i, weight).add(venue, i, weight)
+                    .add(PinyinInitials.of(name), i, weight).add(PinyinInitials.of(venue), i, weight);
+        }
+        SuggestTrie trie = builder.build(20);
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        String[] prefixes = {"周", "周杰伦演", "zjl", "gjt", "五月天演唱会第4", "不存在"};
+        int rounds = 100_000;
+        for (String prefix : prefixes) {
+            for (int i = 0; i < 10_000; i++) {
+                trie.lookup(prefix, 10, null);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                trie.lookup(prefix, 10, null);
+            }
+            double micros = (System.nanoTime() - start) / 1000.0 / rounds;
+            System.out.printf("prefix=%s results=%d lookup=%.2fus%n", prefix, trie.lookup(prefix, 10, null).size(), micros);
+            assertTrue(micros < 1000);
+        }
+        System.out.println("build 100000 shows: " + buildMillis + "ms, nodes: " + trie.nodeCount());
+    }
+}